@@ -0,0 +1,132 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out each attempt's read timeout from how quickly its node has recently responded: a
+ * percentile of the node's response times, times a multiplier, kept between a floor and the static
+ * timeout. A node that hangs then costs a request a little more than its usual latency, rather than
+ * the whole static timeout, before the next node is tried.
+ *
+ * <p>An attempt that times out is recorded at the timeout it hit, and raises the node's timeout by
+ * the multiplier at once, so a node whose latency rises past its learned timeout is soon given
+ * enough time to respond again rather than locked out until its samples decay. The raised timeout
+ * holds until the node next responds, and never exceeds the static one, so a hung node costs no
+ * more than it did without adaptive timeouts. Until a node has enough samples its last known
+ * timeout applies, starting at the static one. Timeouts are recalculated at most once per {@link
+ * #REFRESH_MILLIS}, so the request path normally reads a cached value.
+ */
+public class AdaptiveTimeouts {
+
+  public static final double DEFAULT_PERCENTILE = 0.99;
+  public static final double DEFAULT_MULTIPLIER = 2.0;
+  public static final long DEFAULT_MIN_MILLIS = 50;
+
+  /** enough responses for the percentile to mean something */
+  static final int MIN_SAMPLES = 100;
+
+  static final long REFRESH_MILLIS = 1000;
+
+  private final double percentile;
+  private final double multiplier;
+  private final int minMillis;
+  private final int maxMillis;
+
+  private final ConcurrentMap<HostAndPort, NodeLatency> nodes = new ConcurrentHashMap<>();
+
+  /**
+   * @param percentile of recent response times, e.g. 0.99
+   * @param multiplier applied to the percentile
+   * @param minMillis the shortest timeout ever used
+   * @param maxMillis the longest timeout ever used, normally the static read timeout
+   */
+  public AdaptiveTimeouts(double percentile, double multiplier, long minMillis, long maxMillis) {
+    Preconditions.checkArgument(percentile > 0 && percentile <= 1, "percentile must be in (0, 1]");
+    Preconditions.checkArgument(multiplier >= 1, "multiplier must be at least 1");
+    Preconditions.checkArgument(
+        minMillis > 0 && minMillis <= maxMillis,
+        "minMillis must be positive and at most maxMillis");
+    this.percentile = percentile;
+    this.multiplier = multiplier;
+    this.minMillis = (int) Math.min(minMillis, Integer.MAX_VALUE);
+    this.maxMillis = (int) Math.min(maxMillis, Integer.MAX_VALUE);
+  }
+
+  /** @return the read timeout for the next attempt on the node */
+  public int timeoutMillis(HostAndPort node) {
+    NodeLatency latency = nodes.get(node);
+    if (latency == null) {
+      return maxMillis;
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - latency.calculatedAt >= REFRESH_MILLIS) {
+      // racing requests may both recalculate, which is harmless
+      latency.calculatedAt = now;
+      if (latency.responseTimes.getCount() >= MIN_SAMPLES) {
+        double percentileNanos = latency.responseTimes.getSnapshot().getValue(percentile);
+        long millis = (long) Math.ceil(percentileNanos * multiplier / 1e6);
+        if (latency.raised) {
+          millis = Math.max(millis, latency.timeoutMillis);
+        }
+        latency.timeoutMillis = (int) Math.max(minMillis, Math.min(maxMillis, millis));
+      }
+    }
+    return latency.timeoutMillis;
+  }
+
+  /** Records how long the node took to respond to an attempt. */
+  public void responded(HostAndPort node, long elapsed, TimeUnit unit) {
+    NodeLatency latency = latency(node);
+    latency.responseTimes.update(unit.toNanos(elapsed));
+    latency.raised = false;
+  }
+
+  /**
+   * Records an attempt on the node that timed out, and raises the node's timeout for its next
+   * attempts.
+   *
+   * @param timeoutMillis the read timeout the attempt ran into
+   */
+  public void timedOut(HostAndPort node, int timeoutMillis) {
+    NodeLatency latency = latency(node);
+    latency.responseTimes.update(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    long raisedMillis = (long) Math.ceil(timeoutMillis * multiplier);
+    latency.timeoutMillis =
+        (int) Math.max(latency.timeoutMillis, Math.min(maxMillis, raisedMillis));
+    latency.raised = true;
+  }
+
+  private NodeLatency latency(HostAndPort node) {
+    NodeLatency latency = nodes.get(node);
+    if (latency == null) {
+      latency = new NodeLatency(maxMillis);
+      NodeLatency raced = nodes.putIfAbsent(node, latency);
+      if (raced != null) {
+        latency = raced;
+      }
+    }
+    return latency;
+  }
+
+  private static class NodeLatency {
+    /** biased towards the last few minutes, so the timeout follows the node as it changes */
+    final Histogram responseTimes = new Histogram(new ExponentiallyDecayingReservoir());
+
+    volatile long calculatedAt;
+    volatile int timeoutMillis;
+
+    /** timed out since it last responded, so its timeout may not drop back yet */
+    volatile boolean raised;
+
+    NodeLatency(int timeoutMillis) {
+      this.timeoutMillis = timeoutMillis;
+    }
+  }
+}
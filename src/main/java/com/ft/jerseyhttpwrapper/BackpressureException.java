@@ -0,0 +1,41 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.ClientHandlerException;
+
+/**
+ * Thrown instead of sending a request when every node has asked, with {@code Retry-After}, for no
+ * requests yet. Like {@link LoadSheddingException} it carries no stack trace, as it is thrown for
+ * every request until a node's time is up.
+ */
+public class BackpressureException extends ClientHandlerException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final HostAndPort node;
+  private final long retryAfterMillis;
+
+  public BackpressureException(String shortName, HostAndPort node, long retryAfterMillis) {
+    super(
+        String.format(
+            "%s has no node taking requests, %s asked for %dms more",
+            shortName, node, retryAfterMillis));
+    this.node = node;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /** @return the node the request would have gone to */
+  public HostAndPort getNode() {
+    return node;
+  }
+
+  /** @return how much longer that node asked to be left alone for */
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
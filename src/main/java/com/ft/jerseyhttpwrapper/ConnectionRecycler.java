@@ -0,0 +1,159 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Gives each pooled connection a maximum lifetime, so that clients spread out over nodes added
+ * after they connected instead of keeping their persistent connections to the old ones for hours.
+ *
+ * <p>The lifetime of each connection is shortened by a random amount, up to a fraction set by the
+ * jitter, so that connections made together do not all reconnect together. A connection past its
+ * lifetime is not reused once its current response is complete, so no request is ever interrupted;
+ * the next request opens a fresh connection, to whichever node it is routed to.
+ *
+ * <p>Wraps the client's existing reuse strategy, which still has the final say on keeping a
+ * connection.
+ */
+public class ConnectionRecycler implements ConnectionReuseStrategy {
+
+  public static final double DEFAULT_JITTER = 0.2;
+
+  /** how many new connections between sweeps for the records of closed ones */
+  private static final int SWEEP_INTERVAL = 256;
+
+  private final ConnectionReuseStrategy delegate;
+  private final long lifetimeNanos;
+  private final double jitter;
+  private final Random random;
+  private final Ticker ticker;
+
+  /** the time each connection is due to be recycled, by its local and remote address */
+  private final ConcurrentMap<String, Long> deadlines = new ConcurrentHashMap<>();
+
+  private final AtomicInteger untilSweep = new AtomicInteger(SWEEP_INTERVAL);
+  private final AtomicLong recycled = new AtomicLong();
+
+  /**
+   * @param delegate the reuse strategy to defer to before a connection's lifetime is up
+   * @param lifetimeMillis the longest a connection is reused for
+   * @param jitter the largest fraction, in [0, 1), by which a connection's lifetime is shortened
+   */
+  public ConnectionRecycler(ConnectionReuseStrategy delegate, long lifetimeMillis, double jitter) {
+    this(delegate, lifetimeMillis, jitter, new Random(), Ticker.systemTicker());
+  }
+
+  ConnectionRecycler(
+      ConnectionReuseStrategy delegate,
+      long lifetimeMillis,
+      double jitter,
+      Random random,
+      Ticker ticker) {
+    Preconditions.checkArgument(lifetimeMillis > 0, "lifetimeMillis must be positive");
+    Preconditions.checkArgument(jitter >= 0 && jitter < 1, "jitter must be in [0, 1)");
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.lifetimeNanos = TimeUnit.MILLISECONDS.toNanos(lifetimeMillis);
+    this.jitter = jitter;
+    this.random = random;
+    this.ticker = ticker;
+  }
+
+  @Override
+  public boolean keepAlive(HttpResponse response, HttpContext context) {
+    if (!delegate.keepAlive(response, context)) {
+      forget(context);
+      return false;
+    }
+
+    String connection = identify(context);
+    if (connection == null) {
+      return true;
+    }
+
+    long now = ticker.read();
+    Long deadline = deadlines.get(connection);
+    if (deadline == null) {
+      long lifetime = (long) (lifetimeNanos * (1 - jitter * random.nextDouble()));
+      deadlines.put(connection, now + lifetime);
+      if (untilSweep.decrementAndGet() <= 0) {
+        untilSweep.set(SWEEP_INTERVAL);
+        sweep(now);
+      }
+      return true;
+    }
+
+    if (now - deadline < 0) {
+      return true;
+    }
+
+    deadlines.remove(connection);
+    recycled.incrementAndGet();
+    return false;
+  }
+
+  /** @return how many connections have been closed for outliving their lifetime */
+  public long getRecycled() {
+    return recycled.get();
+  }
+
+  private void forget(HttpContext context) {
+    String connection = identify(context);
+    if (connection != null) {
+      deadlines.remove(connection);
+    }
+  }
+
+  /**
+   * Drops the records of connections that have been closed by other means, e.g. by the server or
+   * for being idle. Any connection still open a whole lifetime after it was due to be recycled has
+   * not been used since, and is treated as new if it ever is.
+   */
+  private void sweep(long now) {
+    Iterator<Map.Entry<String, Long>> entries = deadlines.entrySet().iterator();
+    while (entries.hasNext()) {
+      if (now - entries.next().getValue() > lifetimeNanos) {
+        entries.remove();
+      }
+    }
+  }
+
+  /**
+   * Pooled connections are wrapped afresh for every request, so a connection is known by its
+   * socket's addresses, which are unique while it is open.
+   */
+  private static String identify(HttpContext context) {
+    Object connection = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+    if (!(connection instanceof HttpInetConnection)) {
+      return null;
+    }
+    HttpInetConnection inet = (HttpInetConnection) connection;
+    try {
+      if (inet.getLocalAddress() == null || inet.getRemoteAddress() == null) {
+        return null;
+      }
+      return inet.getLocalAddress().getHostAddress()
+          + ":"
+          + inet.getLocalPort()
+          + ">"
+          + inet.getRemoteAddress().getHostAddress()
+          + ":"
+          + inet.getRemotePort();
+    } catch (RuntimeException e) {
+      // already released or shut down
+      return null;
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.ft.jerseyhttpwrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes response entities sent with one {@code Content-Encoding}, e.g. {@code br} or {@code zstd}
+ * backed by a library of the application's choosing. Registered decoders are advertised in {@code
+ * Accept-Encoding}, alongside the built-in gzip.
+ *
+ * @see ResilientClientBuilder#decodingWith(ContentDecoder)
+ */
+public interface ContentDecoder {
+
+  /** @return the content coding this decodes, as it appears in {@code Content-Encoding} */
+  String getEncoding();
+
+  /**
+   * @param encoded the response entity as received
+   * @return a stream of the decoded entity, which closes {@code encoded} when it is closed
+   */
+  InputStream decode(InputStream encoded) throws IOException;
+}
@@ -0,0 +1,224 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * A replacement for Jersey's {@code GZIPContentEncodingFilter} that is cheaper for small entities.
+ * Deflaters and inflaters are pooled per thread (see {@link PooledGzip}) rather than created for
+ * every request, and request entities are only compressed when there is something to gain: not
+ * below a size threshold, where the gzip framing outweighs the saving, and not when their content
+ * type is already compressed, e.g. images or zip files.
+ *
+ * <p>An entity {@link ResilientClient} has already replayed is measured as it is. Any other entity
+ * that is neither streamed nor already bytes is serialized in memory up to the threshold: one that
+ * fits is sent as those bytes, and one that does not is abandoned there and serialized again
+ * through gzip as it is sent. Entities streamed from an {@code InputStream}, {@code Reader} or
+ * {@code StreamingOutput} are of unknown size, so are always compressed.
+ *
+ * <p>Responses are decoded if they are gzipped or use the coding of a registered {@link
+ * ContentDecoder}, all of which are offered in {@code Accept-Encoding}.
+ */
+public class ContentEncodingFilter extends ClientFilter {
+
+  /** Entities smaller than this rarely shrink by more than the gzip header and trailer add. */
+  public static final int DEFAULT_THRESHOLD_BYTES = 1024;
+
+  private static final Set<String> COMPRESSED_TYPES = ImmutableSet.of("image", "audio", "video");
+  private static final Set<String> COMPRESSED_SUBTYPES =
+      ImmutableSet.of(
+          "zip",
+          "gzip",
+          "x-gzip",
+          "x-bzip2",
+          "x-xz",
+          "x-7z-compressed",
+          "x-rar-compressed",
+          "zstd",
+          "pdf",
+          "woff",
+          "woff2",
+          "font-woff");
+
+  private final boolean compressRequests;
+  private final int thresholdBytes;
+  private final MessageBodyWorkers workers;
+  private final Map<String, ContentDecoder> decoders = new LinkedHashMap<>();
+  private final String acceptEncoding;
+
+  /**
+   * @param compressRequests whether to compress request entities at all
+   * @param thresholdBytes the smallest request entity to compress
+   * @param workers the client's message body workers, to serialize entities of unknown size
+   * @param decoders decoders for codings other than gzip
+   */
+  public ContentEncodingFilter(
+      boolean compressRequests,
+      int thresholdBytes,
+      MessageBodyWorkers workers,
+      List<ContentDecoder> decoders) {
+    this.compressRequests = compressRequests;
+    this.thresholdBytes = thresholdBytes;
+    this.workers = workers;
+
+    this.decoders.put(PooledGzip.ENCODING, PooledGzip.DECODER);
+    this.decoders.put("x-gzip", PooledGzip.DECODER);
+    List<String> accepted = new ArrayList<>();
+    for (ContentDecoder decoder : decoders) {
+      String encoding = decoder.getEncoding().toLowerCase(Locale.ENGLISH);
+      this.decoders.put(encoding, decoder);
+      if (!encoding.equals(PooledGzip.ENCODING)) {
+        accepted.add(encoding);
+      }
+    }
+    accepted.add(PooledGzip.ENCODING);
+    this.acceptEncoding = Joiner.on(", ").join(accepted);
+  }
+
+  @Override
+  public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+    MultivaluedMap<String, Object> headers = request.getHeaders();
+    if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+      headers.add(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+    }
+
+    ReplayableEntity serialized = null;
+    try {
+      Object entity = request.getEntity();
+      if (entity != null) {
+        Object contentEncoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null) {
+          // as Jersey's filter, an entity declared as gzip is compressed here
+          if (PooledGzip.ENCODING.equalsIgnoreCase(contentEncoding.toString())) {
+            compress(request);
+          }
+        } else if (compressRequests && !isCompressed(headers.getFirst(HttpHeaders.CONTENT_TYPE))) {
+          if (thresholdBytes > 0 && sizeOf(entity) < 0 && !isStreamed(entity)) {
+            serialized = ReplayableEntity.within(request, workers, thresholdBytes);
+            if (serialized != null) {
+              request.setEntity(serialized);
+              headers.putSingle(HttpHeaders.CONTENT_TYPE, serialized.getContentType());
+              entity = serialized;
+            }
+          }
+
+          long size = sizeOf(entity);
+          if ((size < 0 || size >= thresholdBytes)
+              && !isCompressed(headers.getFirst(HttpHeaders.CONTENT_TYPE))) {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, PooledGzip.ENCODING);
+            compress(request);
+          }
+        }
+      }
+
+      return decode(getNext().handle(request));
+    } finally {
+      // the entity has been sent by the time the response arrives
+      if (serialized != null) {
+        serialized.close();
+      }
+    }
+  }
+
+  private ClientResponse decode(ClientResponse response) {
+    if (!response.hasEntity()) {
+      return response;
+    }
+    String contentEncoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (contentEncoding == null) {
+      return response;
+    }
+    ContentDecoder decoder = decoders.get(contentEncoding.trim().toLowerCase(Locale.ENGLISH));
+    if (decoder == null) {
+      return response;
+    }
+
+    response.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+    InputStream encoded = response.getEntityInputStream();
+    try {
+      response.setEntityInputStream(decoder.decode(encoded));
+    } catch (IOException e) {
+      try {
+        encoded.close();
+      } catch (IOException ignored) {
+        // already failing
+      }
+      throw new ClientHandlerException(e);
+    }
+    return response;
+  }
+
+  private static void compress(ClientRequest request) {
+    request.setAdapter(
+        new AbstractClientRequestAdapter(request.getAdapter()) {
+          @Override
+          public OutputStream adapt(ClientRequest request, OutputStream out) throws IOException {
+            return PooledGzip.compress(getAdapter().adapt(request, out));
+          }
+        });
+  }
+
+  /** @return the entity's size in bytes, or -1 if it is not known without serializing it */
+  private static long sizeOf(Object entity) {
+    if (entity instanceof byte[]) {
+      return ((byte[]) entity).length;
+    } else if (entity instanceof String) {
+      // chars rather than bytes, which is close enough for a threshold
+      return ((String) entity).length();
+    } else if (entity instanceof ReplayableEntity) {
+      return ((ReplayableEntity) entity).size();
+    } else if (entity instanceof File) {
+      return ((File) entity).length();
+    }
+    return -1;
+  }
+
+  private static boolean isStreamed(Object entity) {
+    return entity instanceof InputStream
+        || entity instanceof Reader
+        || entity instanceof StreamingOutput;
+  }
+
+  private static boolean isCompressed(Object contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    MediaType mediaType;
+    try {
+      mediaType =
+          contentType instanceof MediaType
+              ? (MediaType) contentType
+              : MediaType.valueOf(contentType.toString());
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    String type = mediaType.getType().toLowerCase(Locale.ENGLISH);
+    String subtype = mediaType.getSubtype().toLowerCase(Locale.ENGLISH);
+    if (COMPRESSED_TYPES.contains(type)) {
+      // svg is text
+      return !subtype.startsWith("svg");
+    }
+    return COMPRESSED_SUBTYPES.contains(subtype);
+  }
+}
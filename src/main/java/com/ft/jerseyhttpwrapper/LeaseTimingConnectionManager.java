@@ -0,0 +1,70 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.httpclient.InstrumentedClientConnManager;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+
+/**
+ * Times how long each attempt waits to lease a connection from the pool, which is otherwise hidden
+ * in the attempt's latency. A wait that runs into the lease timeout is timed too, so a route whose
+ * connections are all in use shows up as a spike in the lease waits rather than in the nodes'
+ * response times.
+ */
+public class LeaseTimingConnectionManager extends InstrumentedClientConnManager {
+
+  private volatile Timer leaseWaits;
+
+  public LeaseTimingConnectionManager(
+      MetricRegistry metricRegistry,
+      SchemeRegistry schemeRegistry,
+      long connTTL,
+      TimeUnit connTTLTimeUnit,
+      DnsResolver dnsResolver,
+      String name) {
+    super(metricRegistry, schemeRegistry, connTTL, connTTLTimeUnit, dnsResolver, name);
+  }
+
+  /** @param leaseWaits the timer to record each lease wait in, or null to stop recording */
+  public void setLeaseWaits(Timer leaseWaits) {
+    this.leaseWaits = leaseWaits;
+  }
+
+  @Override
+  public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+    final ClientConnectionRequest request = super.requestConnection(route, state);
+    final Timer leaseWaits = this.leaseWaits;
+    if (leaseWaits == null) {
+      return request;
+    }
+
+    return new ClientConnectionRequest() {
+      @Override
+      public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+          throws InterruptedException, ConnectionPoolTimeoutException {
+        Timer.Context wait = leaseWaits.time();
+        try {
+          return request.getConnection(timeout, tunit);
+        } finally {
+          wait.stop();
+        }
+      }
+
+      @Override
+      public void abortRequest() {
+        request.abortRequest();
+      }
+    };
+  }
+
+  /** Leases a connection without recording the wait, for housekeeping rather than attempts. */
+  ClientConnectionRequest requestUntimedConnection(HttpRoute route, Object state) {
+    return super.requestConnection(route, state);
+  }
+}
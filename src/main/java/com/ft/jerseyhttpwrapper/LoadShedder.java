@@ -0,0 +1,64 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the requests a client has in flight, shedding low priority work first so that higher
+ * priority work keeps its latency while the client is saturated.
+ *
+ * <p>{@link RequestPriority#LOW} requests are shed once half the limit is in flight, {@link
+ * RequestPriority#NORMAL} ones once all of it is, and {@link RequestPriority#HIGH} ones never.
+ * Admission is a single compare-and-set, without locking.
+ */
+public class LoadShedder {
+
+  private final int maxInFlight;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** @param maxInFlight the number of requests in flight at which normal priority work is shed */
+  public LoadShedder(int maxInFlight) {
+    Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * @param priority the priority of the request wanting to start
+   * @return true if it may start, in which case it must {@link #release()} when done
+   */
+  public boolean tryAcquire(RequestPriority priority) {
+    int limit = limit(priority);
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  private int limit(RequestPriority priority) {
+    switch (priority) {
+      case HIGH:
+        return Integer.MAX_VALUE;
+      case LOW:
+        return Math.max(maxInFlight / 2, 1);
+      default:
+        return maxInFlight;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+
+/**
+ * Thrown instead of sending a request the client is too busy to take. It carries no stack trace, so
+ * that rejecting work costs next to nothing while the client is already saturated.
+ */
+public class LoadSheddingException extends ClientHandlerException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final RequestPriority priority;
+
+  public LoadSheddingException(String shortName, RequestPriority priority) {
+    super(String.format("%s is saturated, shed %s priority request", shortName, priority));
+    this.priority = priority;
+  }
+
+  public RequestPriority getPriority() {
+    return priority;
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,176 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+
+/**
+ * Sizes the connection pool to the nodes a client is actually using. Every node is a separate route
+ * in the pool, so a fixed per-route limit either starves the survivors when nodes go away, or lets
+ * one slow node hold most of the pool when there are many. Instead each route may use up to {@link
+ * #HEADROOM} times its fair share of the pool's total.
+ *
+ * <p>A node counts as in use until it has had no attempts for {@link #STALE_MILLIS}, e.g. because
+ * its IP dropped out of DNS or it left service discovery. Its pooled connections are then closed,
+ * rather than lingering until they time out.
+ *
+ * <p>Call {@link #refresh()} periodically to apply changes.
+ */
+public class PoolTopology {
+
+  public static final long STALE_MILLIS = 60000;
+  public static final long REFRESH_MILLIS = 10000;
+
+  /** how many times its fair share of the pool one route may use */
+  static final int HEADROOM = 2;
+
+  private static final String SCHEME = "http";
+  private static final int DEFAULT_PORT = 8080;
+
+  private final PoolingClientConnectionManager connectionManager;
+  private final Ticker ticker;
+
+  private final ConcurrentMap<HostAndPort, Long> lastUsed = new ConcurrentHashMap<>();
+
+  /** stale routes that still had connections leased when last evicted; only used by refresh */
+  private final Set<HttpRoute> departed = new HashSet<>();
+
+  public PoolTopology(PoolingClientConnectionManager connectionManager) {
+    this(connectionManager, Ticker.systemTicker());
+  }
+
+  PoolTopology(PoolingClientConnectionManager connectionManager, Ticker ticker) {
+    this.connectionManager = Preconditions.checkNotNull(connectionManager);
+    this.ticker = ticker;
+  }
+
+  /** Records an attempt on the node. */
+  public void used(HostAndPort node) {
+    lastUsed.put(node, ticker.read());
+  }
+
+  /** @return how many nodes are in use */
+  public int getNodeCount() {
+    return lastUsed.size();
+  }
+
+  /** Resizes the per-route limit to the nodes in use, and closes connections to stale nodes. */
+  public synchronized void refresh() {
+    long staleBefore = ticker.read() - TimeUnit.MILLISECONDS.toNanos(STALE_MILLIS);
+    List<HostAndPort> stale = new ArrayList<>();
+    for (Map.Entry<HostAndPort, Long> entry : lastUsed.entrySet()) {
+      if (entry.getValue() - staleBefore < 0) {
+        stale.add(entry.getKey());
+      }
+    }
+    for (HostAndPort node : stale) {
+      // only if no attempt has touched it meanwhile
+      Long at = lastUsed.get(node);
+      if (at != null && at - staleBefore < 0 && lastUsed.remove(node, at)) {
+        departed.add(route(node));
+      }
+    }
+
+    int maxTotal = connectionManager.getMaxTotal();
+    int nodes = Math.max(lastUsed.size(), 1);
+    int maxPerRoute = (int) Math.max(1, Math.min(maxTotal, (long) maxTotal * HEADROOM / nodes));
+    if (maxPerRoute != connectionManager.getDefaultMaxPerRoute()) {
+      connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    }
+
+    int evicted = 0;
+    for (HttpRoute route : new ArrayList<>(departed)) {
+      if (lastUsed.containsKey(node(route))) {
+        // back in use
+        departed.remove(route);
+        continue;
+      }
+      evicted += evict(route);
+      if (connectionManager.getStats(route).getLeased() == 0) {
+        departed.remove(route);
+      }
+    }
+
+    if (!stale.isEmpty() || evicted > 0) {
+      operation("refresh")
+          .jsonLayout()
+          .initiate(this)
+          .logIntermediate()
+          .yielding("nodes", lastUsed.size())
+          .yielding("maxPerRoute", maxPerRoute)
+          .yielding("evicted", evicted)
+          .logInfo();
+    }
+  }
+
+  /**
+   * Closes the route's idle connections. The pool has no way to do this directly, so as many
+   * connections as the route has idle are leased and closed. The pool hands out idle connections
+   * before it opens new ones, so leasing stops early if one comes back unopened, e.g. because a
+   * request took an idle connection meanwhile. The route's limit is left alone, so the pool keeps
+   * no setting for it once it is gone.
+   *
+   * @return how many connections were closed
+   */
+  private int evict(HttpRoute route) {
+    int available = connectionManager.getStats(route).getAvailable();
+    int evicted = 0;
+    try {
+      while (evicted < available) {
+        ManagedClientConnection connection = lease(route).getConnection(1, TimeUnit.MILLISECONDS);
+        boolean wasOpen = connection.isOpen();
+        try {
+          connection.shutdown();
+        } catch (IOException e) {
+          // closing it is all that matters
+        }
+        connectionManager.releaseConnection(connection, 0, TimeUnit.MILLISECONDS);
+        if (!wasOpen) {
+          break;
+        }
+        evicted++;
+      }
+    } catch (ConnectionPoolTimeoutException e) {
+      // none left
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return evicted;
+  }
+
+  /** leases from the pool without counting as an attempt's lease wait */
+  private ClientConnectionRequest lease(HttpRoute route) {
+    if (connectionManager instanceof LeaseTimingConnectionManager) {
+      return ((LeaseTimingConnectionManager) connectionManager)
+          .requestUntimedConnection(route, null);
+    }
+    return connectionManager.requestConnection(route, null);
+  }
+
+  static HttpRoute route(HostAndPort node) {
+    return new HttpRoute(
+        new HttpHost(node.getHostText(), node.getPortOrDefault(DEFAULT_PORT), SCHEME));
+  }
+
+  private static HostAndPort node(HttpRoute route) {
+    HttpHost target = route.getTargetHost();
+    return HostAndPort.fromParts(target.getHostName(), target.getPort());
+  }
+}
@@ -0,0 +1,59 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.ft.jerseyhttpwrapper.providers.WarmConnections;
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+
+/**
+ * Tells which nodes have idle connections from a snapshot of the client's connection pool. Reading
+ * the pool's stats takes its global lock, so it is only done by {@link #refresh()}, off the request
+ * path; the request path reads the snapshot.
+ *
+ * <p>Only nodes that have been asked about since the previous refresh are looked up, so the
+ * snapshot follows the nodes in use as they change.
+ */
+public class PooledConnections implements WarmConnections {
+
+  public static final long REFRESH_MILLIS = 100;
+
+  private final ConnPoolControl<HttpRoute> pool;
+
+  /** nodes asked about since the last refresh */
+  private volatile ConcurrentMap<HostAndPort, Boolean> asked = new ConcurrentHashMap<>();
+
+  private volatile Set<HostAndPort> idle = Collections.emptySet();
+
+  public PooledConnections(ConnPoolControl<HttpRoute> pool) {
+    this.pool = Preconditions.checkNotNull(pool);
+  }
+
+  @Override
+  public boolean hasIdleConnection(HostAndPort node) {
+    ConcurrentMap<HostAndPort, Boolean> asked = this.asked;
+    if (!asked.containsKey(node)) {
+      asked.putIfAbsent(node, Boolean.TRUE);
+    }
+    return idle.contains(node);
+  }
+
+  /** Takes a fresh snapshot of which of the nodes asked about have idle connections. */
+  public synchronized void refresh() {
+    ConcurrentMap<HostAndPort, Boolean> nodes = asked;
+    asked = new ConcurrentHashMap<>();
+
+    Set<HostAndPort> nowIdle = new HashSet<>();
+    for (HostAndPort node : nodes.keySet()) {
+      if (pool.getStats(PoolTopology.route(node)).getAvailable() > 0) {
+        nowIdle.add(node);
+      }
+    }
+    idle = nowIdle;
+  }
+}
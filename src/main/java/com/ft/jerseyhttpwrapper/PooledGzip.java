@@ -0,0 +1,343 @@
+package com.ft.jerseyhttpwrapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * GZIP streams that borrow their {@link Deflater} or {@link Inflater} from a small shared pool
+ * rather than creating one each time, as {@code GZIPOutputStream} and {@code GZIPInputStream} do.
+ * Each one holds tens of kilobytes of native zlib state, which is a large part of the cost of
+ * compressing a small entity. The pool is shared rather than per-thread so that it is still reused
+ * when every request runs on a fresh virtual thread, and bounded so that a burst of concurrent
+ * requests does not leave native memory behind.
+ *
+ * <p>A stream returns what it borrowed when it is closed; anything the pool has no room for is
+ * ended. One that is never closed just leaves the pool to create another.
+ *
+ * <p>As with {@code GZIPInputStream}, a body of several concatenated gzip members decodes to their
+ * concatenation, and anything after the last member that is not another gzip header is ignored.
+ */
+final class PooledGzip {
+
+  static final String ENCODING = "gzip";
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int HEADER_LENGTH = 10;
+  private static final int BUFFER_SIZE = 512;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private static final byte[] HEADER = {
+    (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  private static final int POOL_SIZE = 16;
+
+  private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+  private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  /** Decodes gzip responses with a pooled {@link Inflater}. */
+  static final ContentDecoder DECODER =
+      new ContentDecoder() {
+        @Override
+        public String getEncoding() {
+          return ENCODING;
+        }
+
+        @Override
+        public InputStream decode(InputStream encoded) throws IOException {
+          return new GzipInputStream(encoded);
+        }
+      };
+
+  private PooledGzip() {}
+
+  /** @return a stream that compresses what is written to it onto {@code out} */
+  static OutputStream compress(OutputStream out) throws IOException {
+    return new GzipOutputStream(out);
+  }
+
+  private static Deflater borrowDeflater() {
+    Deflater pooled = DEFLATERS.poll();
+    return pooled != null ? pooled : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  }
+
+  private static Inflater borrowInflater() {
+    Inflater pooled = INFLATERS.poll();
+    return pooled != null ? pooled : new Inflater(true);
+  }
+
+  private static void returnDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!DEFLATERS.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  private static void returnInflater(Inflater inflater) {
+    inflater.reset();
+    if (!INFLATERS.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  private static void writeInt(OutputStream out, int value) throws IOException {
+    out.write(value & 0xff);
+    out.write((value >> 8) & 0xff);
+    out.write((value >> 16) & 0xff);
+    out.write((value >> 24) & 0xff);
+  }
+
+  private static class GzipOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private Deflater deflater;
+
+    GzipOutputStream(OutputStream out) throws IOException {
+      this.out = out;
+      this.deflater = borrowDeflater();
+      out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (deflater == null) {
+        throw new IOException("Stream closed");
+      }
+      if (length == 0) {
+        return;
+      }
+      crc.update(bytes, offset, length);
+      deflater.setInput(bytes, offset, length);
+      while (!deflater.needsInput()) {
+        deflate();
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (deflater == null) {
+        return;
+      }
+      try {
+        deflater.finish();
+        while (!deflater.finished()) {
+          deflate();
+        }
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, (int) deflater.getBytesRead());
+        out.close();
+      } finally {
+        returnDeflater(deflater);
+        deflater = null;
+      }
+    }
+
+    private void deflate() throws IOException {
+      int length = deflater.deflate(buffer, 0, buffer.length);
+      if (length > 0) {
+        out.write(buffer, 0, length);
+      }
+    }
+  }
+
+  private static class GzipInputStream extends InputStream {
+
+    private final PushbackInputStream in;
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private Inflater inflater;
+    private int filled;
+    private boolean finished;
+
+    GzipInputStream(InputStream in) throws IOException {
+      this.in = new PushbackInputStream(in, BUFFER_SIZE);
+      this.inflater = borrowInflater();
+      try {
+        readHeader();
+      } catch (IOException e) {
+        release();
+        throw e;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (inflater == null) {
+        throw new IOException("Stream closed");
+      }
+      if (finished) {
+        return -1;
+      }
+      if (length == 0) {
+        return 0;
+      }
+      try {
+        int inflated;
+        while ((inflated = inflater.inflate(bytes, offset, length)) == 0) {
+          if (inflater.finished()) {
+            readTrailer();
+            if (!startNextMember()) {
+              finished = true;
+              return -1;
+            }
+          } else if (inflater.needsDictionary()) {
+            throw new ZipException("Unexpected preset dictionary");
+          } else if (inflater.needsInput()) {
+            fill();
+          }
+        }
+        crc.update(bytes, offset, inflated);
+        return inflated;
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid gzip data");
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      return finished ? 0 : 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (inflater != null) {
+        release();
+        in.close();
+      }
+    }
+
+    private void release() {
+      returnInflater(inflater);
+      inflater = null;
+    }
+
+    private void fill() throws IOException {
+      filled = in.read(buffer, 0, buffer.length);
+      if (filled == -1) {
+        throw new EOFException("Unexpected end of gzip stream");
+      }
+      inflater.setInput(buffer, 0, filled);
+    }
+
+    private void readHeader() throws IOException {
+      if (readShort() != GZIP_MAGIC) {
+        throw new ZipException("Not in gzip format");
+      }
+      if (readByte() != Deflater.DEFLATED) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readByte();
+      skip(HEADER_LENGTH - 4);
+      if ((flags & FEXTRA) != 0) {
+        skip(readShort());
+      }
+      if ((flags & FNAME) != 0) {
+        skipString();
+      }
+      if ((flags & FCOMMENT) != 0) {
+        skipString();
+      }
+      if ((flags & FHCRC) != 0) {
+        skip(2);
+      }
+    }
+
+    private void readTrailer() throws IOException {
+      // hand back what the inflater read past the end of the compressed data
+      int remaining = inflater.getRemaining();
+      if (remaining > 0) {
+        in.unread(buffer, filled - remaining, remaining);
+      }
+      long expectedCrc = readInt();
+      long expectedSize = readInt();
+      if (expectedCrc != crc.getValue()
+          || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+        throw new ZipException("Corrupt gzip trailer");
+      }
+    }
+
+    /** @return whether another member follows, in which case its header has been read */
+    private boolean startNextMember() throws IOException {
+      int first = in.read();
+      if (first == -1) {
+        return false;
+      }
+      int second = in.read();
+      if ((first | (second << 8)) != GZIP_MAGIC) {
+        if (second != -1) {
+          in.unread(second);
+        }
+        in.unread(first);
+        return false;
+      }
+      in.unread(second);
+      in.unread(first);
+      readHeader();
+      inflater.reset();
+      crc.reset();
+      return true;
+    }
+
+    private long readInt() throws IOException {
+      return readShort() | ((long) readShort() << 16);
+    }
+
+    private int readShort() throws IOException {
+      return readByte() | (readByte() << 8);
+    }
+
+    private int readByte() throws IOException {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of gzip stream");
+      }
+      return b;
+    }
+
+    private void skip(int length) throws IOException {
+      for (int i = 0; i < length; i++) {
+        readByte();
+      }
+    }
+
+    private void skipString() throws IOException {
+      while (readByte() != 0) {
+        // up to and including the terminating zero
+      }
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+/**
+ * A request entity serialized once, up front, so that every attempt replays the same bytes instead
+ * of running the {@link MessageBodyWriter} (e.g. Jackson) again. This also makes {@code
+ * InputStream} entities safe to retry, since the stream is only read once.
+ *
+ * <p>Small entities are held in a buffer taken from a small shared pool, so that buffers are reused
+ * even when each request runs on a fresh virtual thread. Only a bounded number of modestly sized
+ * buffers are kept; larger ones are left to the garbage collector. Entities larger than the spool
+ * threshold are written to a temporary file and replayed from a memory mapping of it. Either way
+ * {@link #close()} must be called once the request is finished.
+ */
+final class ReplayableEntity implements StreamingOutput, Closeable {
+
+  /** Entities larger than this are spooled to disk rather than held on the heap. */
+  static final int DEFAULT_SPOOL_THRESHOLD_BYTES = 1024 * 1024;
+
+  private static final Annotation[] EMPTY_ANNOTATIONS = new Annotation[0];
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+
+  private static final int POOLED_BUFFER_COUNT = 16;
+  private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+  private static final BlockingQueue<byte[]> POOLED_BUFFERS =
+      new ArrayBlockingQueue<>(POOLED_BUFFER_COUNT);
+
+  private final SpoolingOutputStream spool;
+  private final Object contentType;
+
+  private ReplayableEntity(SpoolingOutputStream spool, Object contentType) {
+    this.spool = spool;
+    this.contentType = contentType;
+  }
+
+  /**
+   * Serializes the request's entity, using the same writer and media type Jersey would. The request
+   * itself is left as it was; the {@code Content-Type} to send the entity with is {@link
+   * #getContentType()}.
+   *
+   * @return the serialized entity, or {@code null} if the request has no entity worth replaying
+   */
+  static ReplayableEntity of(
+      ClientRequest request, MessageBodyWorkers workers, int spoolThresholdBytes) {
+    return serialize(request, workers, new SpoolingOutputStream(spoolThresholdBytes, true));
+  }
+
+  /**
+   * Serializes the request's entity as {@link #of} does, but only as far as a limit, and only in
+   * memory. Serialization is abandoned as soon as the entity proves larger.
+   *
+   * @return the serialized entity, or {@code null} if it is larger than {@code maxBytes} or the
+   *     request has no entity worth replaying
+   */
+  static ReplayableEntity within(ClientRequest request, MessageBodyWorkers workers, int maxBytes) {
+    return serialize(request, workers, new SpoolingOutputStream(maxBytes, false));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ReplayableEntity serialize(
+      ClientRequest request, MessageBodyWorkers workers, SpoolingOutputStream spool) {
+    Object entity = request.getEntity();
+    if (entity == null || entity instanceof byte[] || entity instanceof String) {
+      // already replayable and cheap to write
+      return null;
+    }
+
+    Type entityType;
+    if (entity instanceof GenericEntity) {
+      GenericEntity<?> genericEntity = (GenericEntity<?>) entity;
+      entityType = genericEntity.getType();
+      entity = genericEntity.getEntity();
+    } else {
+      entityType = entity.getClass();
+    }
+    Class<?> entityClass = entity.getClass();
+
+    // a copy, since writers may set headers of their own, e.g. a multipart boundary
+    MultivaluedMap<String, Object> headers = copyOf(request.getHeaders());
+    MediaType mediaType = mediaType(workers, entityClass, entityType, headers);
+    headers.putSingle("Content-Type", mediaType);
+
+    MessageBodyWriter<Object> writer =
+        (MessageBodyWriter<Object>)
+            workers.getMessageBodyWriter(entityClass, entityType, EMPTY_ANNOTATIONS, mediaType);
+    if (writer == null) {
+      spool.release();
+      throw new ClientHandlerException(
+          "A message body writer for Java type, "
+              + entityClass
+              + ", and MIME media type, "
+              + mediaType
+              + ", was not found");
+    }
+
+    try {
+      writer.writeTo(entity, entityClass, entityType, EMPTY_ANNOTATIONS, mediaType, headers, spool);
+      spool.close();
+    } catch (IOException | RuntimeException e) {
+      spool.release();
+      if (spool.exceeded) {
+        // the writer may have wrapped the exception that stopped it
+        return null;
+      }
+      throw new ClientHandlerException("Unable to serialize request entity", e);
+    }
+    if (spool.exceeded) {
+      spool.release();
+      return null;
+    }
+    return new ReplayableEntity(spool, headers.getFirst("Content-Type"));
+  }
+
+  /** @return the {@code Content-Type} the entity was serialized as */
+  Object getContentType() {
+    return contentType;
+  }
+
+  /** @return the length of the serialized entity in bytes */
+  long size() {
+    return spool.size;
+  }
+
+  @Override
+  public void write(OutputStream out) throws IOException, WebApplicationException {
+    spool.replayTo(out);
+  }
+
+  @Override
+  public void close() {
+    spool.release();
+  }
+
+  private static MultivaluedMap<String, Object> copyOf(MultivaluedMap<String, Object> headers) {
+    MultivaluedMap<String, Object> copy = new OutBoundHeaders();
+    for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+      copy.put(header.getKey(), new ArrayList<>(header.getValue()));
+    }
+    return copy;
+  }
+
+  private static MediaType mediaType(
+      MessageBodyWorkers workers,
+      Class<?> entityClass,
+      Type entityType,
+      MultivaluedMap<String, Object> headers) {
+    Object contentType = headers.getFirst("Content-Type");
+    if (contentType instanceof MediaType) {
+      return (MediaType) contentType;
+    } else if (contentType != null) {
+      return MediaType.valueOf(contentType.toString());
+    }
+
+    // as Jersey's RequestWriter does when no Content-Type is set
+    List<MediaType> mediaTypes =
+        workers.getMessageBodyWriterMediaTypes(entityClass, entityType, EMPTY_ANNOTATIONS);
+    MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
+    if (!mediaTypes.isEmpty()
+        && !mediaTypes.get(0).isWildcardType()
+        && !mediaTypes.get(0).isWildcardSubtype()) {
+      mediaType = mediaTypes.get(0);
+    }
+    return mediaType;
+  }
+
+  /**
+   * Buffers in memory up to a threshold, then spools everything to a temporary file, or if not
+   * spooling, fails.
+   */
+  private static class SpoolingOutputStream extends OutputStream {
+
+    private final int thresholdBytes;
+    private final boolean spooling;
+
+    private boolean exceeded;
+    private byte[] buffer;
+    private long size;
+    private File file;
+    private FileOutputStream fileOut;
+    private MappedByteBuffer mapped;
+
+    SpoolingOutputStream(int thresholdBytes, boolean spooling) {
+      this.thresholdBytes = thresholdBytes;
+      this.spooling = spooling;
+      // a limited buffer is small, and kept by the entity, so is not worth pooling
+      this.buffer =
+          spooling ? borrowBuffer() : new byte[Math.min(thresholdBytes, INITIAL_BUFFER_SIZE)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (fileOut == null && size + length > thresholdBytes) {
+        if (!spooling) {
+          exceeded = true;
+          throw new IOException("Entity larger than " + thresholdBytes + " bytes");
+        }
+        spoolToFile();
+      }
+      if (fileOut != null) {
+        fileOut.write(bytes, offset, length);
+      } else {
+        ensureCapacity((int) size + length);
+        System.arraycopy(bytes, offset, buffer, (int) size, length);
+      }
+      size += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (fileOut != null) {
+        fileOut.close();
+        try (RandomAccessFile spooled = new RandomAccessFile(file, "r")) {
+          mapped = spooled.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+      }
+    }
+
+    void replayTo(OutputStream out) throws IOException {
+      if (mapped != null) {
+        WritableByteChannel channel = Channels.newChannel(out);
+        // duplicate so that concurrent and repeated replays each get their own position
+        ByteBuffer view = mapped.duplicate();
+        while (view.hasRemaining()) {
+          channel.write(view);
+        }
+      } else {
+        out.write(buffer, 0, (int) size);
+      }
+    }
+
+    void release() {
+      if (buffer != null) {
+        if (spooling) {
+          returnBuffer(buffer);
+        }
+        buffer = null;
+      }
+      if (fileOut != null) {
+        try {
+          fileOut.close();
+        } catch (IOException e) {
+          // nothing more to be done, the file is deleted below
+        }
+      }
+      mapped = null;
+      if (file != null && !file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+
+    private void spoolToFile() throws IOException {
+      file = File.createTempFile("resilient-client-entity", ".tmp");
+      fileOut = new FileOutputStream(file);
+      fileOut.write(buffer, 0, (int) size);
+      returnBuffer(buffer);
+      buffer = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+      }
+    }
+
+    private static byte[] borrowBuffer() {
+      byte[] pooled = POOLED_BUFFERS.poll();
+      return pooled != null ? pooled : new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    private void returnBuffer(byte[] used) {
+      if (used.length <= Math.min(thresholdBytes, MAX_POOLED_BUFFER_SIZE)) {
+        POOLED_BUFFERS.offer(used);
+      }
+    }
+  }
+}
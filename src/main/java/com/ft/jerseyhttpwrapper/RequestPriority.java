@@ -0,0 +1,50 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.sun.jersey.api.client.ClientRequest;
+import java.util.Locale;
+
+/**
+ * How important a request is, and so how early it is shed when the client is saturated. Set it as
+ * the {@link #PROPERTY} request property, e.g. {@code
+ * resource.setProperty(RequestPriority.PROPERTY, RequestPriority.LOW)}.
+ *
+ * @see LoadShedder
+ */
+public enum RequestPriority {
+  /** never shed, e.g. health checks or writes that must not be lost */
+  HIGH,
+  /** user-facing work; the default */
+  NORMAL,
+  /** background work that can be retried later, shed first */
+  LOW;
+
+  public static final String PROPERTY = "com.ft.jerseyhttpwrapper.priority";
+
+  /**
+   * @param request the request as supplied by the application
+   * @return the priority set on the request, by value or name, or {@link #NORMAL} if none is, or it
+   *     names no priority; a mistyped priority should not fail the request
+   */
+  public static RequestPriority of(ClientRequest request) {
+    Object value = request.getProperties().get(PROPERTY);
+    if (value instanceof RequestPriority) {
+      return (RequestPriority) value;
+    }
+    if (value != null) {
+      try {
+        return valueOf(value.toString().toUpperCase(Locale.ENGLISH));
+      } catch (IllegalArgumentException e) {
+        operation("priority")
+            .with("argument", value.toString())
+            .jsonLayout()
+            .initiate(NORMAL)
+            .logIntermediate()
+            .yielding("msg", "Unrecognised request priority, using " + NORMAL)
+            .logWarn();
+      }
+    }
+    return NORMAL;
+  }
+}
@@ -7,7 +7,11 @@ public enum ResilienceStrategy {
   SIMPLE_FAILOVER_STRATEGY("Tries in fixed sequence."),
   LOAD_BALANCED_STRATEGY("Tries using random host."),
   LOAD_BALANCED_IP_STRATEGY("Resolves host names to IPs, then tries using a random IP."),
-  DYNAMIC_RANDOM_IP_STRATEGY("Resolves host names to IPs on any feasible route.");
+  DYNAMIC_RANDOM_IP_STRATEGY("Resolves host names to IPs on any feasible route."),
+  CONSISTENT_HASH_STRATEGY(
+      "Routes by request key around a hash ring, failing over to the next node."),
+  DNS_SRV_STRATEGY(
+      "Looks up DNS SRV records for any requested host, then tries by priority and weight.");
 
   private final String description;
 
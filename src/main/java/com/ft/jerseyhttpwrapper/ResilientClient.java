@@ -1,11 +1,20 @@
 package com.ft.jerseyhttpwrapper;
 
-import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ft.jerseyhttpwrapper.continuation.ContinuationPolicy;
 import com.ft.jerseyhttpwrapper.continuation.ContinuationSession;
+import com.ft.jerseyhttpwrapper.health.ActiveHealthChecker;
+import com.ft.jerseyhttpwrapper.jackson.JsonStreamIterator;
+import com.ft.jerseyhttpwrapper.metrics.LatencyRecording;
+import com.ft.jerseyhttpwrapper.metrics.ResilientClientMetrics;
+import com.ft.jerseyhttpwrapper.providers.AvailabilityFilteringHostAndPortProvider;
 import com.ft.jerseyhttpwrapper.providers.HostAndPortProvider;
+import com.ft.jerseyhttpwrapper.providers.KeyedHostAndPortProvider;
+import com.ft.jerseyhttpwrapper.providers.NodeAvailability;
+import com.ft.jerseyhttpwrapper.tracing.RequestTrace;
+import com.ft.jerseyhttpwrapper.tracing.Tracer;
 import com.ft.membership.logging.Operation;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
@@ -22,9 +31,15 @@ import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.UriBuilder;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.slf4j.MDC;
 
 public class ResilientClient extends Client {
@@ -37,14 +52,20 @@ public class ResilientClient extends Client {
       "/META-INF/maven/com.ft.resilient-jersey-wrapper/resilient-jersey-wrapper/pom.properties";
 
   private static final List<Integer> RECOVERABLE_STATUSES = Arrays.asList(500, 503, 504);
+  // only retried by clients that honour backpressure, which park the node that sent it
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final List<Integer> BACKPRESSURE_STATUSES = Arrays.asList(429, 503);
+
+  /** The longest a node is parked for, however long it asks for. */
+  public static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
   private static final List<String> NON_IDEMPOTENT_METHODS = Arrays.asList("POST", "PATCH");
 
   private static final String TX_ID = "transaction_id";
+  private static final String RETRY_AFTER = "Retry-After";
 
   private String shortName;
 
-  private ContinuationPolicy continuationPolicy;
-
   private String protocol;
 
   private Supplier<String> userAgentSupplier =
@@ -70,6 +91,32 @@ public class ResilientClient extends Client {
 
   private String txPropagationHeader;
 
+  private RoutingKey routingKey;
+
+  private ActiveHealthChecker healthChecker;
+
+  private boolean replayingEntities;
+
+  private int entitySpoolThresholdBytes = ReplayableEntity.DEFAULT_SPOOL_THRESHOLD_BYTES;
+
+  private ResponseDrainer responseDrainer = new ResponseDrainer();
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  private LoadShedder loadShedder;
+
+  private AdaptiveTimeouts adaptiveTimeouts;
+
+  private Tracer tracer;
+
+  private Future<?> traceFlushes;
+
+  private PoolTopology poolTopology;
+
+  private Future<?> poolTopologyRefreshes;
+
+  private Future<?> pooledConnectionRefreshes;
+
   public ResilientClient(
       String shortName,
       ClientHandler root,
@@ -78,32 +125,45 @@ public class ResilientClient extends Client {
       ContinuationPolicy continuationPolicy,
       boolean retryNonIdempotentMethods,
       MetricRegistry appMetrics) {
+    this(
+        shortName,
+        root,
+        config,
+        provider,
+        continuationPolicy,
+        retryNonIdempotentMethods,
+        appMetrics,
+        LatencyRecording.EXPONENTIALLY_DECAYING);
+  }
+
+  public ResilientClient(
+      String shortName,
+      ClientHandler root,
+      ClientConfig config,
+      HostAndPortProvider provider,
+      ContinuationPolicy continuationPolicy,
+      boolean retryNonIdempotentMethods,
+      MetricRegistry appMetrics,
+      LatencyRecording latencyRecording) {
     super(root, config);
 
     Preconditions.checkNotNull(shortName, "Resilient clients must be named");
     Preconditions.checkNotNull(provider, "host and port provider is mandatory");
 
     this.shortName = shortName;
-    this.provider = provider;
-    this.continuationPolicy = continuationPolicy;
+    this.routing = new Routing(provider, continuationPolicy, null);
     this.retryNonIdempotentMethods = retryNonIdempotentMethods;
 
-    this.requests =
-        appMetrics.timer(MetricRegistry.name(ResilientClient.class, "requests", shortName));
-    this.attemptCounts =
-        appMetrics.histogram(MetricRegistry.name(ResilientClient.class, "attemptCount", shortName));
+    this.metrics = new ResilientClientMetrics(appMetrics, shortName, latencyRecording);
 
-    attemptLoggerFactory =
-        new AttemptLoggerFactory(
-            appMetrics.timer(MetricRegistry.name(ResilientClient.class, "attempts", shortName)));
+    attemptLoggerFactory = new AttemptLoggerFactory(metrics.attempts());
   }
 
-  private final HostAndPortProvider provider;
+  private volatile Routing routing;
   private final boolean retryNonIdempotentMethods;
 
   private AttemptLoggerFactory attemptLoggerFactory;
-  private final Timer requests;
-  private final Histogram attemptCounts;
+  private final ResilientClientMetrics metrics;
 
   // TODO:
   // TimeOut the request - helps in case the host list is long and most of them are failing slowly
@@ -113,10 +173,14 @@ public class ResilientClient extends Client {
     if ("https".equals(requestedUri.getScheme())) {
       // minimal support for https (don't fiddle with hostname) - just pass-through to the default
       // impl
-      return super.handle(originalRequest);
+      try {
+        return super.handle(originalRequest);
+      } finally {
+        responseDrainer.forget();
+      }
     }
 
-    Timer.Context requestsTimer = requests.time();
+    Timer.Context requestsTimer = metrics.requests().time();
     int attemptCount = 0;
     int failedAttemptCount = 0;
 
@@ -125,8 +189,11 @@ public class ResilientClient extends Client {
 
     HostAndPort suppliedAddress = HostAndPort.fromString(requestedUri.getAuthority());
 
+    // read once, so the whole request sees one configuration even if it is replaced meanwhile
+    final Routing routing = this.routing;
+
     // pass implicit ports as implicit for validation purpsoses
-    if (!provider.supports(suppliedAddress)) {
+    if (!routing.provider.supports(suppliedAddress)) {
       throw new IllegalArgumentException("Unknown host and port " + suppliedAddress.toString());
     }
 
@@ -135,13 +202,66 @@ public class ResilientClient extends Client {
 
     final Operation operationJson = Operation.operation("handle").jsonLayout().initiate(this);
 
+    final Tracer tracer = this.tracer;
+    final RequestTrace trace =
+        tracer != null ? tracer.startRequest(originalRequest, shortName, suppliedAddress) : null;
+
+    ReplayableEntity replayableEntity = null;
+
+    // acquired last, immediately before the try whose finally releases it, so nothing can leak it
+    final LoadShedder loadShedder = this.loadShedder;
+    if (loadShedder != null) {
+      RequestPriority priority = RequestPriority.of(originalRequest);
+      if (!loadShedder.tryAcquire(priority)) {
+        metrics.shed(priority);
+        LoadSheddingException shed = new LoadSheddingException(shortName, priority);
+        if (trace != null) {
+          trace.end(0, shed);
+        }
+        throw shed;
+      }
+    }
+
     try {
-      ContinuationSession session = continuationPolicy.startSession(suppliedAddress, provider);
+      if (replayingEntities) {
+        replayableEntity =
+            ReplayableEntity.of(
+                originalRequest, getMessageBodyWorkers(), entitySpoolThresholdBytes);
+      }
+
+      ContinuationSession session =
+          routing.continuationPolicy.startSession(
+              suppliedAddress, routedProvider(routing.provider, originalRequest));
+
+      HostAndPort previousHostAndPort = null;
+      final NodeAvailability nodeAvailability = routing.nodeAvailability;
 
       while (session.shouldContinue()) {
 
         HostAndPort hostAndPort = session.nextHost();
 
+        long parkedForMillis =
+            nodeAvailability != null ? nodeAvailability.parkedForMillis(hostAndPort) : 0;
+        if (parkedForMillis > 0) {
+          // the provider offers parked nodes last, so every node left has asked for time: honour it
+          if (attemptCount == 0) {
+            lastClientHandlerException =
+                new BackpressureException(shortName, hostAndPort, parkedForMillis);
+            throw lastClientHandlerException;
+          }
+          // and pass on the last answer or failure instead
+          break;
+        }
+
+        if (previousHostAndPort != null) {
+          if (previousHostAndPort.equals(hostAndPort)) {
+            metrics.retry();
+          } else {
+            metrics.failover();
+          }
+        }
+        previousHostAndPort = hostAndPort;
+
         if (Strings.isNullOrEmpty(hostAndPort.getHostText())) {
           // never been thrown, but helpful in proving/falsifying some theories in the debugger. SJG
           // Jan 2015
@@ -157,15 +277,35 @@ public class ResilientClient extends Client {
 
         ClientRequest clonedRequest = originalRequest.clone();
         clonedRequest.setURI(attemptUri);
+        if (replayableEntity != null) {
+          clonedRequest.setEntity(replayableEntity);
+          clonedRequest.getHeaders().putSingle("Content-Type", replayableEntity.getContentType());
+        }
         clonedRequest.getHeaders().putSingle("User-Agent", userAgentSupplier.get());
 
         maybePropagateTransactionId(clonedRequest);
+        if (trace != null) {
+          clonedRequest.getHeaders().putSingle(Tracer.TRACEPARENT, trace.startAttempt(hostAndPort));
+        }
+
+        final AdaptiveTimeouts adaptiveTimeouts = this.adaptiveTimeouts;
+        int readTimeoutMillis = 0;
+        if (adaptiveTimeouts != null) {
+          readTimeoutMillis = adaptiveTimeouts.timeoutMillis(hostAndPort);
+          clonedRequest.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeoutMillis);
+        }
+
+        final PoolTopology poolTopology = this.poolTopology;
+        if (poolTopology != null) {
+          poolTopology.used(hostAndPort);
+        }
 
         AttemptLogger attempt = attemptLoggerFactory.startTimers(attemptUri, clonedRequest);
+        Timer.Context nodeTimer = metrics.attempts(hostAndPort).time();
 
         if (lastResponse != null) {
           try {
-            lastResponse.getEntityInputStream().close();
+            metrics.discard(responseDrainer.discard(lastResponse));
           } catch (IOException e) {
             operationJson
                 .wasFailure()
@@ -178,13 +318,30 @@ public class ResilientClient extends Client {
         }
 
         ClientResponse currentResponse = null;
+        Throwable attemptFailure = null;
 
         try {
           attemptCount++;
+          long attemptStartNanos = System.nanoTime();
           currentResponse = super.handle(clonedRequest);
+          if (adaptiveTimeouts != null) {
+            adaptiveTimeouts.responded(
+                hostAndPort, System.nanoTime() - attemptStartNanos, TimeUnit.NANOSECONDS);
+          }
           lastResponse = currentResponse;
-
-          if (RECOVERABLE_STATUSES.contains(lastResponse.getStatus())) {
+          metrics.response(lastResponse.getStatus());
+
+          if (RECOVERABLE_STATUSES.contains(lastResponse.getStatus())
+              || (nodeAvailability != null && lastResponse.getStatus() == TOO_MANY_REQUESTS)) {
+
+            if (nodeAvailability != null
+                && BACKPRESSURE_STATUSES.contains(lastResponse.getStatus())) {
+              long retryAfterMillis = retryAfterMillis(lastResponse);
+              if (retryAfterMillis > 0) {
+                nodeAvailability.park(hostAndPort, retryAfterMillis);
+                metrics.backpressure();
+              }
+            }
 
             // WARNING: recoverable events and failures are not quite the same thing
             session.handleFailedHost(hostAndPort);
@@ -203,8 +360,22 @@ public class ResilientClient extends Client {
 
           failedAttemptCount++;
           lastClientHandlerException = e;
+          attemptFailure = cause != null ? cause : e;
+          metrics.exception(attemptFailure);
 
-          if (cause instanceof IOException) {
+          if (adaptiveTimeouts != null && cause instanceof SocketTimeoutException) {
+            adaptiveTimeouts.timedOut(hostAndPort, readTimeoutMillis);
+          }
+
+          if (cause instanceof ConnectionPoolTimeoutException) {
+            // every pooled connection to the node is busy and nothing was sent, so the node is
+            // not at fault and any node is safe to try next, whatever the method
+            operationJson
+                .logIntermediate()
+                .yielding("msg", "Timed out leasing a connection to " + hostAndPort)
+                .logInfo();
+
+          } else if (cause instanceof IOException) {
             operationJson
                 .wasFailure()
                 .withMessage(e)
@@ -236,6 +407,11 @@ public class ResilientClient extends Client {
           }
 
         } finally {
+          nodeTimer.stop();
+          if (trace != null) {
+            trace.endAttempt(
+                currentResponse != null ? currentResponse.getStatus() : 0, attemptFailure);
+          }
 
           if (currentResponse != null) {
             attempt.stop(this, currentResponse);
@@ -246,8 +422,15 @@ public class ResilientClient extends Client {
       }
 
     } finally {
+      responseDrainer.forget();
+      if (loadShedder != null) {
+        loadShedder.release();
+      }
+      if (replayableEntity != null) {
+        replayableEntity.close();
+      }
       requestsTimer.stop();
-      attemptCounts.update(attemptCount);
+      metrics.attemptCounts().update(attemptCount);
 
       String outcome = "unknown";
       int status = 0;
@@ -258,7 +441,12 @@ public class ResilientClient extends Client {
         outcome = "Exception";
       }
 
-      if (attemptCount == 0 || (status > 499 && status <= 599)) {
+      if (trace != null) {
+        trace.end(status, lastResponse == null ? lastClientHandlerException : null);
+      }
+
+      boolean heldBack = lastClientHandlerException instanceof BackpressureException;
+      if ((attemptCount == 0 && !heldBack) || (status > 499 && status <= 599)) {
         String finishedMessage =
             String.format(
                 "[REQUEST FINISHED] short_name=%s, outcome=%s, total_attempts=%d, failed_attempts=%d",
@@ -274,6 +462,117 @@ public class ResilientClient extends Client {
     throw lastClientHandlerException;
   }
 
+  /**
+   * @return how long the response's Retry-After header, in seconds or as a date, asks clients to
+   *     wait, up to {@link #MAX_RETRY_AFTER_MILLIS}, or 0 if it asks for nothing
+   */
+  static long retryAfterMillis(ClientResponse response) {
+    String retryAfter = response.getHeaders().getFirst(RETRY_AFTER);
+    if (retryAfter == null) {
+      return 0;
+    }
+    retryAfter = retryAfter.trim();
+
+    long millis;
+    try {
+      millis = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter));
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(retryAfter);
+      if (date == null) {
+        return 0;
+      }
+      millis = date.getTime() - System.currentTimeMillis();
+    }
+    return Math.max(0, Math.min(millis, MAX_RETRY_AFTER_MILLIS));
+  }
+
+  /**
+   * Reads a response holding a top-level JSON array, or newline delimited JSON, one element at a
+   * time rather than binding the whole list at once.
+   *
+   * @param response the response to read, which is closed once the last element has been read
+   * @param elementType the type of each element
+   * @return a lazy iterator over the elements, to be closed if abandoned before the end
+   */
+  public <T> JsonStreamIterator<T> readJsonStream(ClientResponse response, Class<T> elementType) {
+    return new JsonStreamIterator<>(
+        objectMapper.reader(elementType), response.getEntityInputStream());
+  }
+
+  @Override
+  public void destroy() {
+    if (healthChecker != null) {
+      healthChecker.stop();
+    }
+    if (traceFlushes != null) {
+      // no more scheduled flushes; one in progress finishes before the final flush starts
+      traceFlushes.cancel(false);
+    }
+    if (poolTopologyRefreshes != null) {
+      poolTopologyRefreshes.cancel(false);
+    }
+    if (pooledConnectionRefreshes != null) {
+      pooledConnectionRefreshes.cancel(false);
+    }
+    if (tracer != null) {
+      tracer.flush();
+    }
+    super.destroy();
+  }
+
+  /**
+   * Replaces the nodes and the way they are tried, without disturbing the connection pool, threads
+   * or metrics. Requests already in progress finish with the configuration they started with.
+   *
+   * @param provider the nodes to route to
+   * @param continuationPolicy how those nodes are tried
+   */
+  public void reconfigure(HostAndPortProvider provider, ContinuationPolicy continuationPolicy) {
+    reconfigure(provider, continuationPolicy, routing.nodeAvailability);
+  }
+
+  /**
+   * Replaces the nodes, the way they are tried and where nodes are parked in one step, so no
+   * request pairs the new nodes with the old availability. The provider is wrapped in an {@link
+   * AvailabilityFilteringHostAndPortProvider} unless it already consults the given availability.
+   *
+   * @param provider the nodes to route to
+   * @param continuationPolicy how those nodes are tried
+   * @param nodeAvailability where nodes that answer with Retry-After are parked, or null to ignore
+   *     Retry-After
+   */
+  public synchronized void reconfigure(
+      HostAndPortProvider provider,
+      ContinuationPolicy continuationPolicy,
+      NodeAvailability nodeAvailability) {
+    Preconditions.checkNotNull(provider, "host and port provider is mandatory");
+    Preconditions.checkNotNull(continuationPolicy, "continuation policy is mandatory");
+    this.routing =
+        new Routing(filtered(provider, nodeAvailability), continuationPolicy, nodeAvailability);
+  }
+
+  private static HostAndPortProvider filtered(
+      HostAndPortProvider provider, NodeAvailability nodeAvailability) {
+    if (nodeAvailability == null
+        || (provider instanceof AvailabilityFilteringHostAndPortProvider
+            && ((AvailabilityFilteringHostAndPortProvider) provider).getAvailability()
+                == nodeAvailability)) {
+      return provider;
+    }
+    return new AvailabilityFilteringHostAndPortProvider(provider, nodeAvailability);
+  }
+
+  private HostAndPortProvider routedProvider(HostAndPortProvider provider, ClientRequest request) {
+    if (routingKey == null || !(provider instanceof KeyedHostAndPortProvider)) {
+      return provider;
+    }
+    String key = routingKey.from(request);
+    if (key == null) {
+      return provider;
+    }
+    return new RoutedHostAndPortProvider((KeyedHostAndPortProvider) provider, key);
+  }
+
   private boolean isRemoteStateUncertain(final Throwable cause) {
     return cause instanceof SocketTimeoutException && cause.getMessage().contains("Read");
   }
@@ -295,6 +594,10 @@ public class ResilientClient extends Client {
     return shortName;
   }
 
+  public ResilientClientMetrics getMetrics() {
+    return metrics;
+  }
+
   public void setUserAgentSupplier(Supplier<String> userAgentSupplier) {
     this.userAgentSupplier = userAgentSupplier;
   }
@@ -315,6 +618,127 @@ public class ResilientClient extends Client {
     this.txIdSupplier = transactionIdSupplier;
   }
 
+  public RoutingKey getRoutingKey() {
+    return routingKey;
+  }
+
+  public void setRoutingKey(RoutingKey routingKey) {
+    this.routingKey = routingKey;
+  }
+
+  public ActiveHealthChecker getHealthChecker() {
+    return healthChecker;
+  }
+
+  public void setHealthChecker(ActiveHealthChecker healthChecker) {
+    this.healthChecker = healthChecker;
+  }
+
+  public boolean isReplayingEntities() {
+    return replayingEntities;
+  }
+
+  public void setReplayingEntities(boolean replayingEntities) {
+    this.replayingEntities = replayingEntities;
+  }
+
+  public int getEntitySpoolThresholdBytes() {
+    return entitySpoolThresholdBytes;
+  }
+
+  public void setEntitySpoolThresholdBytes(int entitySpoolThresholdBytes) {
+    this.entitySpoolThresholdBytes = entitySpoolThresholdBytes;
+  }
+
+  public ResponseDrainer getResponseDrainer() {
+    return responseDrainer;
+  }
+
+  public void setResponseDrainer(ResponseDrainer responseDrainer) {
+    this.responseDrainer = responseDrainer;
+  }
+
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  /** @param tracer records spans for each request and attempt, or null to trace nothing */
+  public void setTracer(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  /**
+   * @param traceFlushes the scheduled flushes of the tracer, cancelled when the client is destroyed
+   */
+  public void setTraceFlushes(Future<?> traceFlushes) {
+    this.traceFlushes = traceFlushes;
+  }
+
+  public PoolTopology getPoolTopology() {
+    return poolTopology;
+  }
+
+  /** @param poolTopology sizes the connection pool to the nodes in use, or null to leave it be */
+  public void setPoolTopology(PoolTopology poolTopology) {
+    this.poolTopology = poolTopology;
+  }
+
+  /**
+   * @param poolTopologyRefreshes the scheduled refreshes of the pool topology, cancelled when the
+   *     client is destroyed
+   */
+  public void setPoolTopologyRefreshes(Future<?> poolTopologyRefreshes) {
+    this.poolTopologyRefreshes = poolTopologyRefreshes;
+  }
+
+  /**
+   * @param pooledConnectionRefreshes the scheduled refreshes of the snapshot of idle connections,
+   *     cancelled when the client is destroyed
+   */
+  public void setPooledConnectionRefreshes(Future<?> pooledConnectionRefreshes) {
+    this.pooledConnectionRefreshes = pooledConnectionRefreshes;
+  }
+
+  public NodeAvailability getNodeAvailability() {
+    return routing.nodeAvailability;
+  }
+
+  /**
+   * @param nodeAvailability where nodes that answer with Retry-After are parked, consulted through
+   *     the provider as {@link #reconfigure(HostAndPortProvider, ContinuationPolicy,
+   *     NodeAvailability)} describes; or null to ignore Retry-After
+   */
+  public synchronized void setNodeAvailability(NodeAvailability nodeAvailability) {
+    Routing routing = this.routing;
+    reconfigure(routing.provider, routing.continuationPolicy, nodeAvailability);
+  }
+
+  public AdaptiveTimeouts getAdaptiveTimeouts() {
+    return adaptiveTimeouts;
+  }
+
+  /** @param adaptiveTimeouts sets each attempt's read timeout, or null to use the static one */
+  public void setAdaptiveTimeouts(AdaptiveTimeouts adaptiveTimeouts) {
+    this.adaptiveTimeouts = adaptiveTimeouts;
+  }
+
+  public LoadShedder getLoadShedder() {
+    return loadShedder;
+  }
+
+  /** @param loadShedder limits requests in flight by priority, or null to admit everything */
+  public void setLoadShedder(LoadShedder loadShedder) {
+    this.loadShedder = loadShedder;
+  }
+
+  public ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  public void setObjectMapper(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
   public String getProtocol() {
     return protocol;
   }
@@ -323,6 +747,61 @@ public class ResilientClient extends Client {
     this.protocol = protocol;
   }
 
+  public HostAndPortProvider getHostAndPortProvider() {
+    return routing.provider;
+  }
+
+  public ContinuationPolicy getContinuationPolicy() {
+    return routing.continuationPolicy;
+  }
+
+  /**
+   * The provider, policy and availability in force, replaced as a whole so a request never sees a
+   * mixture.
+   */
+  private static class Routing {
+
+    private final HostAndPortProvider provider;
+    private final ContinuationPolicy continuationPolicy;
+    private final NodeAvailability nodeAvailability;
+
+    Routing(
+        HostAndPortProvider provider,
+        ContinuationPolicy continuationPolicy,
+        NodeAvailability nodeAvailability) {
+      this.provider = provider;
+      this.continuationPolicy = continuationPolicy;
+      this.nodeAvailability = nodeAvailability;
+    }
+  }
+
+  /** Presents a keyed provider to a {@link ContinuationSession} as if it only knew one key. */
+  private static class RoutedHostAndPortProvider implements HostAndPortProvider {
+
+    private final KeyedHostAndPortProvider delegate;
+    private final String key;
+
+    RoutedHostAndPortProvider(KeyedHostAndPortProvider delegate, String key) {
+      this.delegate = delegate;
+      this.key = key;
+    }
+
+    @Override
+    public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+      return delegate.iterator(suppliedAddress, key);
+    }
+
+    @Override
+    public void handleFailedHost(HostAndPort hostAndPort) {
+      delegate.handleFailedHost(hostAndPort);
+    }
+
+    @Override
+    public boolean supports(HostAndPort hostAndPort) {
+      return delegate.supports(hostAndPort);
+    }
+  }
+
   private static String _version;
 
   static {
@@ -1,15 +1,24 @@
 package com.ft.jerseyhttpwrapper;
 
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.httpclient.InstrumentedClientConnManager;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import com.ft.jerseyhttpwrapper.config.*;
 import com.ft.jerseyhttpwrapper.continuation.ContinuationPolicy;
 import com.ft.jerseyhttpwrapper.continuation.DefaultContinuationPolicy;
+import com.ft.jerseyhttpwrapper.discovery.ServiceDiscovery;
+import com.ft.jerseyhttpwrapper.health.ActiveHealthChecker;
+import com.ft.jerseyhttpwrapper.jackson.CachingJacksonMessageBodyProvider;
+import com.ft.jerseyhttpwrapper.metrics.LatencyRecording;
+import com.ft.jerseyhttpwrapper.metrics.ResilientClientMetrics;
 import com.ft.jerseyhttpwrapper.providers.*;
+import com.ft.jerseyhttpwrapper.tracing.SpanExporter;
+import com.ft.jerseyhttpwrapper.tracing.Tracer;
+import com.ft.membership.logging.Operation;
 import com.google.common.base.Preconditions;
 import com.google.common.net.HostAndPort;
-import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
 import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
 import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
@@ -17,9 +26,22 @@ import io.dropwizard.client.HttpClientBuilder;
 import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.jersey.jackson.JacksonMessageBodyProvider;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 
 /**
  * Convenience for the creation of resilient clients.
@@ -30,6 +52,7 @@ import java.util.concurrent.ExecutorService;
 public class ResilientClientBuilder {
   private static final String DEFAULT_TX_HEADER = "X-Request-Id";
   private static final String EMPTY_STRING = "";
+  private static final long TRACE_FLUSH_MILLIS = 1000;
 
   private HostAndPortProvider primaryProvider;
   private HostAndPortProvider secondaryProvider;
@@ -43,11 +66,38 @@ public class ResilientClientBuilder {
   private MetricRegistry appMetrics;
   private HostAndPortIpResolver hostAndPortIpResolver =
       new HostAndPortIpResolver(new HostToIpMapper());
+  private SrvRecordResolver srvRecordResolver = new SrvRecordResolver();
   private JerseyClientConfiguration jerseyClientConfig = new JerseyClientConfiguration();
   private String shortName;
   private ContinuationPolicy continuationPolicy = new DefaultContinuationPolicy();
   private String txHeader;
   private String protocol;
+  private RoutingKey routingKey;
+  private HealthCheckConfiguration healthCheckConfiguration;
+  private LatencyRecording latencyRecording = LatencyRecording.EXPONENTIALLY_DECAYING;
+  private boolean replayingEntities;
+  private int entitySpoolThresholdBytes = ReplayableEntity.DEFAULT_SPOOL_THRESHOLD_BYTES;
+  private long maxDrainBytes = ResponseDrainer.DEFAULT_MAX_DRAIN_BYTES;
+  private long maxDrainMillis = ResponseDrainer.DEFAULT_MAX_DRAIN_MILLIS;
+  private boolean fastJsonBinding;
+  private boolean virtualThreads;
+  private ScheduledExecutorService scheduler;
+  private ExecutorService healthProbes;
+  private DiscoveringHostAndPortProvider discoveringProvider;
+  private int maxInFlight;
+  private double adaptiveTimeoutPercentile;
+  private double adaptiveTimeoutMultiplier;
+  private SlowStart slowStart;
+  private SpanExporter spanExporter;
+  private long happyEyeballsStaggerMillis;
+  private boolean sizingPoolToTopology;
+  private boolean preferringWarmConnections;
+  private WarmConnections warmConnections;
+  private long connectionLifetimeMillis;
+  private long leaseTimeoutMillis;
+  private int compressionThresholdBytes = ContentEncodingFilter.DEFAULT_THRESHOLD_BYTES;
+  private final List<ContentDecoder> contentDecoders = new ArrayList<>();
+  private double connectionLifetimeJitter;
 
   public static ResilientClientBuilder in(Environment environment) {
     return new ResilientClientBuilder(new DW07xClientEnvironment(environment));
@@ -82,6 +132,7 @@ public class ResilientClientBuilder {
     this.resilienceStrategy = configuration.getResilienceStrategy();
     this.configuration = configuration;
     this.jerseyClientConfig = configuration.getJerseyClientConfiguration();
+    this.healthCheckConfiguration = configuration.getActiveHealthCheck().orNull();
 
     return this;
   }
@@ -90,6 +141,11 @@ public class ResilientClientBuilder {
     return withResilienceStrategy(ResilienceStrategy.DYNAMIC_RANDOM_IP_STRATEGY);
   }
 
+  /** Discovers nodes from the DNS SRV records of whatever host is requested. */
+  public ResilientClientBuilder usingSrvRecords() {
+    return withResilienceStrategy(ResilienceStrategy.DNS_SRV_STRATEGY);
+  }
+
   public ResilientClientBuilder using(
       List<SimpleEndpointConfiguration> primaryNodes,
       List<SimpleEndpointConfiguration> secondaryNodes) {
@@ -113,6 +169,15 @@ public class ResilientClientBuilder {
     return this;
   }
 
+  /**
+   * Routes to the members pushed by a discovery service, instead of to configured nodes. Secondary
+   * nodes, if configured, are still tried after every discovered member.
+   */
+  public ResilientClientBuilder discoveringNodesFrom(ServiceDiscovery discovery) {
+    this.discoveringProvider = new DiscoveringHostAndPortProvider(discovery);
+    return this;
+  }
+
   public ResilientClientBuilder withSecondary(HostAndPortProvider provider) {
     this.secondaryProvider = provider;
     return this;
@@ -134,6 +199,12 @@ public class ResilientClientBuilder {
     return this;
   }
 
+  /* mostly for testing */
+  public ResilientClientBuilder withSrvRecordResolver(SrvRecordResolver resolver) {
+    this.srvRecordResolver = resolver;
+    return this;
+  }
+
   public ResilientClientBuilder withContinuationPolicy(ContinuationPolicy continuationPolicy) {
     this.continuationPolicy = continuationPolicy;
     return this;
@@ -149,6 +220,236 @@ public class ResilientClientBuilder {
     return this;
   }
 
+  /**
+   * Sets the part of the request used to pin requests to nodes by a keyed strategy such as {@link
+   * ResilienceStrategy#CONSISTENT_HASH_STRATEGY}. Defaults to the request path.
+   */
+  public ResilientClientBuilder routingBy(RoutingKey routingKey) {
+    this.routingKey = routingKey;
+    return this;
+  }
+
+  /**
+   * Probes the admin port of every configured node in the background and takes failing nodes out of
+   * rotation. Only applies to strategies that route to the configured hosts, not to resolved IPs.
+   */
+  public ResilientClientBuilder withActiveHealthChecks(HealthCheckConfiguration configuration) {
+    this.healthCheckConfiguration = configuration;
+    return this;
+  }
+
+  /**
+   * Chooses how request and attempt latencies are recorded. {@link LatencyRecording#HDR_HISTOGRAM}
+   * gives accurate tail percentiles (p99.9, max) at the cost of more memory per metric.
+   */
+  public ResilientClientBuilder withLatencyRecording(LatencyRecording latencyRecording) {
+    this.latencyRecording = latencyRecording;
+    return this;
+  }
+
+  /**
+   * Serializes each request entity once and replays the bytes on every attempt, rather than running
+   * the message body writer again per retry. Also makes streamed ({@code InputStream}) entities
+   * safe to retry. Entities over 1 MiB are spooled to a temporary file.
+   */
+  public ResilientClientBuilder replayingEntities() {
+    return replayingEntities(ReplayableEntity.DEFAULT_SPOOL_THRESHOLD_BYTES);
+  }
+
+  /**
+   * As {@link #replayingEntities()}, spooling entities larger than the given size to a temporary
+   * file.
+   */
+  public ResilientClientBuilder replayingEntities(int spoolThresholdBytes) {
+    Preconditions.checkArgument(spoolThresholdBytes >= 0, "spool threshold must not be negative");
+    this.replayingEntities = true;
+    this.entitySpoolThresholdBytes = spoolThresholdBytes;
+    return this;
+  }
+
+  /**
+   * Bounds how much of a response that is being discarded for a retry is read so that its
+   * connection can be reused. Responses that do not end within the bounds have their connection
+   * aborted instead. Defaults to 64 KiB within 100 milliseconds.
+   */
+  public ResilientClientBuilder drainingDiscardedResponses(long maxBytes, long maxMillis) {
+    this.maxDrainBytes = maxBytes;
+    this.maxDrainMillis = maxMillis;
+    return this;
+  }
+
+  /**
+   * Binds JSON with generated accessors (Jackson Afterburner) and a reader and writer cached per
+   * type. The environment's object mapper is copied rather than modified.
+   */
+  public ResilientClientBuilder withFastJsonBinding() {
+    this.fastJsonBinding = true;
+    return this;
+  }
+
+  /**
+   * Sheds requests while too many are in flight, low priority ones first.
+   *
+   * @param maxInFlight the number of requests in flight at which normal priority requests are shed;
+   *     low priority ones are shed at half this
+   * @see RequestPriority
+   */
+  public ResilientClientBuilder sheddingLoadAbove(int maxInFlight) {
+    Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be positive");
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  /**
+   * Times out each attempt after twice its node's recent 99th percentile response time, rather than
+   * the configured timeout, which becomes the upper bound.
+   */
+  public ResilientClientBuilder withAdaptiveTimeouts() {
+    return withAdaptiveTimeouts(
+        AdaptiveTimeouts.DEFAULT_PERCENTILE, AdaptiveTimeouts.DEFAULT_MULTIPLIER);
+  }
+
+  /**
+   * @param percentile of each node's recent response times, e.g. 0.99
+   * @param multiplier applied to the percentile to give the attempt's timeout
+   * @see AdaptiveTimeouts
+   */
+  public ResilientClientBuilder withAdaptiveTimeouts(double percentile, double multiplier) {
+    Preconditions.checkArgument(percentile > 0 && percentile <= 1, "percentile must be in (0, 1]");
+    Preconditions.checkArgument(multiplier >= 1, "multiplier must be at least 1");
+    this.adaptiveTimeoutPercentile = percentile;
+    this.adaptiveTimeoutMultiplier = multiplier;
+    return this;
+  }
+
+  /**
+   * Ramps traffic up gradually to nodes that join, or come back after being marked down, rather
+   * than giving them their full share at once. Applies to the load balanced strategies and to
+   * discovered nodes.
+   *
+   * @param window how long a node takes to reach its full share
+   */
+  public ResilientClientBuilder withSlowStart(Duration window) {
+    this.slowStart = new SlowStart(window.getQuantity(), window.getUnit());
+    return this;
+  }
+
+  /**
+   * Races connects across the IPs a hostname resolves to, starting on the next IP whenever the
+   * previous one has not connected within 250ms, and sends each request to the first to connect.
+   * Applies to the strategies that resolve hostnames to IPs.
+   */
+  public ResilientClientBuilder withHappyEyeballs() {
+    return withHappyEyeballs(Duration.milliseconds(ConnectRacer.DEFAULT_STAGGER_MILLIS));
+  }
+
+  /** @param stagger how long to wait for one IP to connect before also trying the next */
+  public ResilientClientBuilder withHappyEyeballs(Duration stagger) {
+    Preconditions.checkArgument(stagger.toMilliseconds() > 0, "stagger must be positive");
+    this.happyEyeballsStaggerMillis = stagger.toMilliseconds();
+    return this;
+  }
+
+  /**
+   * When choosing between nodes at random, makes each choice the better of two draws, preferring a
+   * node with an idle pooled connection over one that would need a new connection. Applies to the
+   * load balanced strategies and to discovered nodes.
+   */
+  public ResilientClientBuilder preferringWarmConnections() {
+    this.preferringWarmConnections = true;
+    return this;
+  }
+
+  /**
+   * Stops reusing a connection once it has been open for a while, so that traffic spreads out over
+   * nodes added since it was made. Each connection's lifetime is shortened by up to 20% at random,
+   * so that connections do not all reconnect at once.
+   *
+   * @param lifetime the longest a connection is reused for
+   */
+  public ResilientClientBuilder recyclingConnectionsAfter(Duration lifetime) {
+    return recyclingConnectionsAfter(lifetime, ConnectionRecycler.DEFAULT_JITTER);
+  }
+
+  /**
+   * @param lifetime the longest a connection is reused for
+   * @param jitter the largest fraction, in [0, 1), by which a connection's lifetime is shortened
+   * @see ConnectionRecycler
+   */
+  public ResilientClientBuilder recyclingConnectionsAfter(Duration lifetime, double jitter) {
+    Preconditions.checkArgument(lifetime.toMilliseconds() > 0, "lifetime must be positive");
+    Preconditions.checkArgument(jitter >= 0 && jitter < 1, "jitter must be in [0, 1)");
+    this.connectionLifetimeMillis = lifetime.toMilliseconds();
+    this.connectionLifetimeJitter = jitter;
+    return this;
+  }
+
+  /**
+   * Limits how long an attempt waits for a connection from the pool when every connection to its
+   * node is in use. An attempt that times out fails straight over to the next node, without the
+   * node being reported as failed, rather than queueing behind the requests already on it. By
+   * default an attempt waits as long as it takes.
+   *
+   * @param leaseTimeout the longest an attempt waits to lease a connection
+   */
+  public ResilientClientBuilder withLeaseTimeout(Duration leaseTimeout) {
+    Preconditions.checkArgument(leaseTimeout.toMilliseconds() > 0, "leaseTimeout must be positive");
+    this.leaseTimeoutMillis = leaseTimeout.toMilliseconds();
+    return this;
+  }
+
+  /**
+   * When {@code gzipEnabledForRequests} is configured, only compresses request entities of at least
+   * this many bytes. Defaults to 1 KiB; zero compresses every entity.
+   *
+   * @see ContentEncodingFilter
+   */
+  public ResilientClientBuilder compressingRequestsAbove(int thresholdBytes) {
+    Preconditions.checkArgument(thresholdBytes >= 0, "thresholdBytes must not be negative");
+    this.compressionThresholdBytes = thresholdBytes;
+    return this;
+  }
+
+  /**
+   * Accepts responses in another content coding, such as {@code br} or {@code zstd}, when {@code
+   * gzipEnabled} is configured. May be called once for each coding.
+   */
+  public ResilientClientBuilder decodingWith(ContentDecoder decoder) {
+    Preconditions.checkNotNull(decoder, "decoder is mandatory");
+    contentDecoders.add(decoder);
+    return this;
+  }
+
+  /**
+   * Sizes the connection pool's per-route limit to the number of nodes in use, instead of the
+   * configured {@code maxConnectionsPerRoute}, and closes pooled connections to nodes that drop out
+   * of use.
+   *
+   * @see PoolTopology
+   */
+  public ResilientClientBuilder sizingPoolToTopology() {
+    this.sizingPoolToTopology = true;
+    return this;
+  }
+
+  /**
+   * Records a span for each request and each attempt at it, sends a W3C traceparent header with
+   * every attempt, and exports the spans in batches every second.
+   */
+  public ResilientClientBuilder withTracing(SpanExporter exporter) {
+    this.spanExporter = Preconditions.checkNotNull(exporter, "exporter is mandatory");
+    return this;
+  }
+
+  /**
+   * Runs the client's asynchronous requests on virtual threads rather than a bounded pool, when the
+   * JVM supports them (Java 21 or later). On older JVMs the usual thread pool is used.
+   */
+  public ResilientClientBuilder usingVirtualThreads() {
+    this.virtualThreads = true;
+    return this;
+  }
+
   public ResilientClientBuilder usingAdminPorts() {
     useAdminPorts = true;
     return this;
@@ -161,7 +462,164 @@ public class ResilientClientBuilder {
     }
     Preconditions.checkState(appMetrics != null, "Missing metrics registry");
 
-    if (primaryProvider == null) {
+    // always kept, as nodes asking for backpressure are parked even without health checks
+    NodeAvailability nodeAvailability = new NodeAvailability();
+
+    String shortName = getShortName(useAdminPorts);
+    ResponseDrainer responseDrainer = new ResponseDrainer(maxDrainBytes, maxDrainMillis);
+    ObjectMapper objectMapper = buildObjectMapper();
+
+    ApacheHttpClient4Handler handler = buildHandler(shortName, responseDrainer);
+    ClientConnectionManager connectionManager = handler.getHttpClient().getConnectionManager();
+    Future<?> pooledConnectionRefreshes = null;
+    if (preferringWarmConnections && connectionManager instanceof PoolingClientConnectionManager) {
+      // kept for reconfiguration, which reuses the pool
+      final PooledConnections pooledConnections =
+          new PooledConnections((PoolingClientConnectionManager) connectionManager);
+      warmConnections = pooledConnections;
+      pooledConnectionRefreshes =
+          scheduler(shortName)
+              .scheduleWithFixedDelay(
+                  new Runnable() {
+                    @Override
+                    public void run() {
+                      pooledConnections.refresh();
+                    }
+                  },
+                  PooledConnections.REFRESH_MILLIS,
+                  PooledConnections.REFRESH_MILLIS,
+                  TimeUnit.MILLISECONDS);
+    }
+
+    HostAndPortProvider finalProvider = buildProvider(nodeAvailability);
+    final ResilientClient client =
+        new ResilientClient(
+            shortName,
+            handler,
+            buildConfig(objectMapper),
+            finalProvider,
+            continuationPolicy,
+            retryNonIdempotentMethods,
+            appMetrics,
+            latencyRecording);
+
+    client.setExecutorService(buildExecutorService(shortName));
+    client.setPooledConnectionRefreshes(pooledConnectionRefreshes);
+    if (connectionManager instanceof LeaseTimingConnectionManager) {
+      ((LeaseTimingConnectionManager) connectionManager)
+          .setLeaseWaits(client.getMetrics().leaseWaits());
+    }
+
+    if (jerseyClientConfig.isGzipEnabled()) {
+      client.addFilter(
+          new ContentEncodingFilter(
+              jerseyClientConfig.isGzipEnabledForRequests(),
+              compressionThresholdBytes,
+              client.getMessageBodyWorkers(),
+              contentDecoders));
+    }
+    client.setTransactionHeader(txHeader);
+    client.setRoutingKey(routingKey != null ? routingKey : RoutingKey.path());
+    client.setProtocol(configuration != null ? configuration.getProtocol() : EMPTY_STRING);
+    client.setReplayingEntities(replayingEntities);
+    client.setEntitySpoolThresholdBytes(entitySpoolThresholdBytes);
+    client.setResponseDrainer(responseDrainer);
+    client.setObjectMapper(objectMapper);
+    if (maxInFlight > 0) {
+      client.setLoadShedder(new LoadShedder(maxInFlight));
+    }
+    if (adaptiveTimeoutMultiplier > 0) {
+      long maxMillis = jerseyClientConfig.getTimeout().toMilliseconds();
+      client.setAdaptiveTimeouts(
+          new AdaptiveTimeouts(
+              adaptiveTimeoutPercentile,
+              adaptiveTimeoutMultiplier,
+              Math.min(AdaptiveTimeouts.DEFAULT_MIN_MILLIS, maxMillis),
+              maxMillis));
+    }
+
+    client.setNodeAvailability(nodeAvailability);
+
+    if (spanExporter != null) {
+      final Tracer tracer = new Tracer(spanExporter);
+      client.setTracer(tracer);
+      client.setTraceFlushes(
+          scheduler(shortName)
+              .scheduleWithFixedDelay(
+                  new Runnable() {
+                    @Override
+                    public void run() {
+                      tracer.flush();
+                    }
+                  },
+                  TRACE_FLUSH_MILLIS,
+                  TRACE_FLUSH_MILLIS,
+                  TimeUnit.MILLISECONDS));
+    }
+
+    if (sizingPoolToTopology && connectionManager instanceof PoolingClientConnectionManager) {
+      final PoolTopology poolTopology =
+          new PoolTopology((PoolingClientConnectionManager) connectionManager);
+      client.setPoolTopology(poolTopology);
+      client.setPoolTopologyRefreshes(
+          scheduler(shortName)
+              .scheduleWithFixedDelay(
+                  new Runnable() {
+                    @Override
+                    public void run() {
+                      poolTopology.refresh();
+                    }
+                  },
+                  PoolTopology.REFRESH_MILLIS,
+                  PoolTopology.REFRESH_MILLIS,
+                  TimeUnit.MILLISECONDS));
+    }
+
+    if (healthCheckConfiguration != null) {
+      startHealthChecks(client, nodeAvailability);
+    }
+
+    return client;
+  }
+
+  /**
+   * Applies this builder's nodes, resilience strategy, continuation policy and health checks to a
+   * client built earlier, keeping its connection pool, threads and metrics. Typically follows
+   * {@link #using(EndpointConfiguration)} with a reloaded configuration. Requests in progress
+   * finish on the old nodes.
+   *
+   * @param client a client built by this builder
+   */
+  public void reconfigure(ResilientClient client) {
+    NodeAvailability nodeAvailability = new NodeAvailability();
+    HostAndPortProvider provider = buildProvider(nodeAvailability);
+
+    ActiveHealthChecker previousHealthChecker = client.getHealthChecker();
+    client.reconfigure(provider, continuationPolicy, nodeAvailability);
+
+    if (healthCheckConfiguration != null) {
+      startHealthChecks(client, nodeAvailability);
+    } else {
+      client.setHealthChecker(null);
+    }
+    if (previousHealthChecker != null) {
+      previousHealthChecker.stop();
+    }
+  }
+
+  private HostAndPortProvider buildProvider(NodeAvailability nodeAvailability) {
+    ConnectRacer connectRacer = null;
+    if (happyEyeballsStaggerMillis > 0) {
+      connectRacer =
+          new ConnectRacer(
+              happyEyeballsStaggerMillis,
+              jerseyClientConfig.getConnectionTimeout().toMilliseconds());
+    }
+
+    HostAndPortProvider finalProvider =
+        primaryProvider != null ? primaryProvider : discoveringProvider;
+
+    if (finalProvider == null) {
       // add the main host / port to the additional nodes.
       List<SimpleEndpointConfiguration> allPrimaryNodes = new ArrayList<>(3);
 
@@ -178,54 +636,130 @@ public class ResilientClientBuilder {
         allPrimaryNodes.addAll(primaryNodes);
       }
 
-      primaryProvider =
+      finalProvider =
           new HostAndPortProviderBuilder(hostAndPortIpResolver)
+              .withSrvRecordResolver(srvRecordResolver)
+              .withSlowStart(slowStart)
+              .withConnectRacer(connectRacer)
+              .withWarmConnections(warmConnections)
               .withStrategy(resilienceStrategy)
               .withSimpleEndpointConfiguration(allPrimaryNodes)
               .usingAdminPorts(useAdminPorts)
               .build();
     }
 
-    HostAndPortProvider finalProvider = primaryProvider;
+    HostAndPortProvider finalSecondaryProvider = secondaryProvider;
 
-    if (secondaryProvider == null && secondaryNodes != null && !secondaryNodes.isEmpty()) {
-      secondaryProvider =
+    if (finalSecondaryProvider == null && secondaryNodes != null && !secondaryNodes.isEmpty()) {
+      finalSecondaryProvider =
           new HostAndPortProviderBuilder(hostAndPortIpResolver)
+              .withSrvRecordResolver(srvRecordResolver)
+              .withSlowStart(slowStart)
+              .withConnectRacer(connectRacer)
+              .withWarmConnections(warmConnections)
               .withStrategy(resilienceStrategy)
               .withSimpleEndpointConfiguration(secondaryNodes)
               .usingAdminPorts(useAdminPorts)
               .build();
     }
 
-    if (secondaryProvider != null) {
-      finalProvider = new CompositeStaticHostAndPortProvider(primaryProvider, secondaryProvider);
+    if (finalProvider == discoveringProvider) {
+      discoveringProvider.setSlowStart(slowStart);
+      discoveringProvider.setWarmConnections(warmConnections);
     }
 
-    String shortName = getShortName(useAdminPorts);
+    if (slowStart != null) {
+      nodeAvailability.addListener(slowStart);
+    }
+    if (finalSecondaryProvider != null) {
+      finalProvider = new CompositeStaticHostAndPortProvider(finalProvider, finalSecondaryProvider);
+    }
+    // around both tiers, so a parked or down primary is offered only after a healthy secondary
+    return new AvailabilityFilteringHostAndPortProvider(finalProvider, nodeAvailability);
+  }
 
-    final ResilientClient client =
-        new ResilientClient(
-            shortName,
-            buildHandler(shortName),
-            buildConfig(),
-            finalProvider,
-            continuationPolicy,
-            retryNonIdempotentMethods,
-            appMetrics);
+  private void startHealthChecks(ResilientClient client, NodeAvailability nodeAvailability) {
+    final ResilientClientMetrics metrics = client.getMetrics();
+    nodeAvailability.addListener(
+        new NodeAvailability.Listener() {
+          @Override
+          public void markedDown(HostAndPort node) {
+            metrics.ejection();
+          }
+
+          @Override
+          public void markedUp(HostAndPort node) {}
+        });
+
+    ActiveHealthChecker healthChecker = buildHealthChecker(client.getShortName(), nodeAvailability);
+    client.setHealthChecker(healthChecker);
+    healthChecker.start();
+  }
 
-    ExecutorService threadPool =
-        environment.createExecutorService(
-            shortName, jerseyClientConfig.getMinThreads(), jerseyClientConfig.getMaxThreads());
-    client.setExecutorService(threadPool);
+  /** Created once, and shared by background work such as health checks and span export. */
+  private ScheduledExecutorService scheduler(String shortName) {
+    if (scheduler == null) {
+      scheduler = environment.createScheduledExecutorService(shortName);
+    }
+    return scheduler;
+  }
 
-    if (jerseyClientConfig.isGzipEnabled()) {
-      client.addFilter(
-          new GZIPContentEncodingFilter(jerseyClientConfig.isGzipEnabledForRequests()));
+  /**
+   * Created once, with a thread for each node first checked, so that probes blocked on an
+   * unresponsive node hold up neither each other nor the scheduler.
+   */
+  private ExecutorService healthProbes(String shortName, int nodes) {
+    if (healthProbes == null) {
+      int threads = Math.max(1, nodes);
+      healthProbes = environment.createExecutorService(shortName + "-health", threads, threads);
     }
-    client.setTransactionHeader(txHeader);
-    client.setProtocol(configuration != null ? configuration.getProtocol() : EMPTY_STRING);
+    return healthProbes;
+  }
 
-    return client;
+  private ActiveHealthChecker buildHealthChecker(
+      String shortName, NodeAvailability nodeAvailability) {
+    Set<SimpleEndpointConfiguration> checkedNodes = new LinkedHashSet<>();
+    if (configuration != null) {
+      checkedNodes.addAll(configuration.getPrimaryNodes());
+      checkedNodes.addAll(configuration.getSecondaryNodes());
+    }
+    if (primaryNodes != null) {
+      checkedNodes.addAll(primaryNodes);
+    }
+    if (secondaryNodes != null) {
+      checkedNodes.addAll(secondaryNodes);
+    }
+
+    ActiveHealthChecker healthChecker =
+        new ActiveHealthChecker(
+            healthCheckConfiguration,
+            nodeAvailability,
+            scheduler(shortName),
+            healthProbes(shortName, checkedNodes.size()));
+
+    SimpleEndpointConfigurationToHostPortConverter converter =
+        new SimpleEndpointConfigurationToHostPortConverter(useAdminPorts);
+    for (SimpleEndpointConfiguration node : checkedNodes) {
+      healthChecker.watch(converter.convert(node), node);
+    }
+    return healthChecker;
+  }
+
+  private ExecutorService buildExecutorService(String shortName) {
+    if (virtualThreads) {
+      if (VirtualThreads.isAvailable()) {
+        return environment.createVirtualThreadExecutorService(shortName);
+      }
+      Operation.operation("build")
+          .with("short_name", shortName)
+          .jsonLayout()
+          .initiate(this)
+          .logIntermediate()
+          .yielding("msg", "Virtual threads are not supported by this JVM, using a thread pool")
+          .logWarn();
+    }
+    return environment.createExecutorService(
+        shortName, jerseyClientConfig.getMinThreads(), jerseyClientConfig.getMaxThreads());
   }
 
   private int getPort() {
@@ -252,23 +786,73 @@ public class ResilientClientBuilder {
     return shortName;
   }
 
-  private ApacheHttpClient4Handler buildHandler(String shortName) {
-
-    HttpClientBuilder builder = new HttpClientBuilder(appMetrics);
+  private ApacheHttpClient4Handler buildHandler(String shortName, ResponseDrainer responseDrainer) {
+
+    HttpClientBuilder builder =
+        new HttpClientBuilder(appMetrics) {
+          @Override
+          protected InstrumentedClientConnManager createConnectionManager(
+              SchemeRegistry registry, String name) {
+            // as the default, but able to time lease waits
+            Duration ttl = jerseyClientConfig.getTimeToLive();
+            InstrumentedClientConnManager manager =
+                new LeaseTimingConnectionManager(
+                    appMetrics,
+                    registry,
+                    ttl.getQuantity(),
+                    ttl.getUnit(),
+                    new SystemDefaultDnsResolver(),
+                    name);
+            manager.setDefaultMaxPerRoute(jerseyClientConfig.getMaxConnectionsPerRoute());
+            manager.setMaxTotal(jerseyClientConfig.getMaxConnections());
+            return manager;
+          }
+        };
 
     builder.using(jerseyClientConfig);
 
-    return new ApacheHttpClient4Handler(builder.build(shortName), null, true);
+    HttpClient httpClient = builder.build(shortName);
+    if (leaseTimeoutMillis > 0) {
+      httpClient
+          .getParams()
+          .setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, leaseTimeoutMillis);
+    }
+    if (httpClient instanceof AbstractHttpClient) {
+      AbstractHttpClient abstractHttpClient = (AbstractHttpClient) httpClient;
+      abstractHttpClient.addRequestInterceptor(responseDrainer);
+      if (connectionLifetimeMillis > 0) {
+        abstractHttpClient.setReuseStrategy(
+            new ConnectionRecycler(
+                abstractHttpClient.getConnectionReuseStrategy(),
+                connectionLifetimeMillis,
+                connectionLifetimeJitter));
+      }
+    }
+
+    return new ApacheHttpClient4Handler(httpClient, null, true);
   }
 
-  private ApacheHttpClient4Config buildConfig() {
+  private ObjectMapper buildObjectMapper() {
+    ObjectMapper objectMapper = environment.createObjectMapper();
+    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    if (fastJsonBinding) {
+      objectMapper = objectMapper.copy().registerModule(new AfterburnerModule());
+    }
+    return objectMapper;
+  }
+
+  private ApacheHttpClient4Config buildConfig(ObjectMapper objectMapper) {
     final ApacheHttpClient4Config config = new DefaultApacheHttpClient4Config();
-    final ObjectMapper objectMapper = environment.createObjectMapper();
 
-    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    config
-        .getSingletons()
-        .add(new JacksonMessageBodyProvider(objectMapper, environment.getValidator()));
+    if (fastJsonBinding) {
+      config
+          .getSingletons()
+          .add(new CachingJacksonMessageBodyProvider(objectMapper, environment.getValidator()));
+    } else {
+      config
+          .getSingletons()
+          .add(new JacksonMessageBodyProvider(objectMapper, environment.getValidator()));
+    }
     return config;
   }
 }
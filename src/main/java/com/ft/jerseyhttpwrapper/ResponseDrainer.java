@@ -0,0 +1,153 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.jersey.api.client.ClientResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.methods.AbortableHttpRequest;
+import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Disposes of responses that are thrown away in favour of another attempt, e.g. a 503 that is about
+ * to be retried.
+ *
+ * <p>Closing a response stream makes Apache HttpClient read the rest of the body so the connection
+ * can go back to the pool, however large the body is. Instead, up to a bounded number of bytes is
+ * read within a bounded time. If the body ends within those bounds the connection is reused,
+ * otherwise it is aborted: one fresh connection is cheaper than streaming a large error page.
+ *
+ * <p>Aborting needs the underlying request, which Jersey does not expose, so this must also be
+ * registered as a request interceptor on the client's {@code HttpClient}. It remembers the request
+ * last sent by each thread, which is the attempt being discarded since attempts are made on the
+ * calling thread. Without the interceptor, responses over the bounds are simply closed, and the
+ * time bound is only checked between reads.
+ *
+ * <p>With the interceptor, the request is aborted when the drain time runs out even if a read is
+ * blocked on a slow body, so the time bound holds regardless of the socket timeout. Call {@link
+ * #forget()} once a request's final response is in hand, so the thread does not keep the request.
+ */
+public class ResponseDrainer implements HttpRequestInterceptor {
+
+  public static final long DEFAULT_MAX_DRAIN_BYTES = 64 * 1024;
+  public static final long DEFAULT_MAX_DRAIN_MILLIS = 100;
+
+  private static final int BUFFER_SIZE = 4096;
+
+  /** aborts requests whose drain overruns; shared, as it only ever runs a quick abort */
+  private static final ScheduledExecutorService WATCHDOG =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("response-drainer").setDaemon(true).build());
+
+  private final long maxDrainBytes;
+  private final long maxDrainNanos;
+
+  private final ThreadLocal<AbortableHttpRequest> lastRequest = new ThreadLocal<>();
+
+  public ResponseDrainer() {
+    this(DEFAULT_MAX_DRAIN_BYTES, DEFAULT_MAX_DRAIN_MILLIS);
+  }
+
+  public ResponseDrainer(long maxDrainBytes, long maxDrainMillis) {
+    Preconditions.checkArgument(maxDrainBytes >= 0, "max drain bytes must not be negative");
+    Preconditions.checkArgument(maxDrainMillis >= 0, "max drain time must not be negative");
+    this.maxDrainBytes = maxDrainBytes;
+    this.maxDrainNanos = TimeUnit.MILLISECONDS.toNanos(maxDrainMillis);
+  }
+
+  @Override
+  public void process(HttpRequest request, HttpContext context) {
+    if (request instanceof RequestWrapper) {
+      request = ((RequestWrapper) request).getOriginal();
+    }
+    if (request instanceof AbortableHttpRequest) {
+      lastRequest.set((AbortableHttpRequest) request);
+    }
+  }
+
+  /**
+   * Drains and closes a response that will not be returned to the caller.
+   *
+   * @param response the response to discard
+   * @return {@code true} if the connection was released for reuse, {@code false} if it was aborted
+   * @throws IOException if the response could not be closed
+   */
+  public boolean discard(ClientResponse response) throws IOException {
+    final AbortableHttpRequest request = lastRequest.get();
+    lastRequest.remove();
+
+    InputStream entity = response.getEntityInputStream();
+    if (request == null) {
+      drain(entity);
+      entity.close();
+      return true;
+    }
+
+    ScheduledFuture<?> watchdog =
+        WATCHDOG.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                request.abort();
+              }
+            },
+            maxDrainNanos,
+            TimeUnit.NANOSECONDS);
+    boolean drained = drain(entity);
+    // if the watchdog has already run, the connection is gone whatever the drain made of it
+    if (watchdog.cancel(false) && drained) {
+      entity.close();
+      return true;
+    }
+
+    request.abort();
+    try {
+      entity.close();
+    } catch (IOException e) {
+      // expected, the connection underneath has just been shut down
+    }
+    return false;
+  }
+
+  /**
+   * Forgets the request last sent by this thread, once its response is not going to be discarded.
+   */
+  public void forget() {
+    lastRequest.remove();
+  }
+
+  public long getMaxDrainBytes() {
+    return maxDrainBytes;
+  }
+
+  public long getMaxDrainMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxDrainNanos);
+  }
+
+  /** @return {@code true} if the end of the stream was reached within the bounds */
+  private boolean drain(InputStream entity) {
+    long deadline = System.nanoTime() + maxDrainNanos;
+    long remaining = maxDrainBytes;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try {
+      do {
+        // read one byte past the limit, so a body of exactly the limit counts as drained
+        int read = entity.read(buffer, 0, (int) Math.min(buffer.length, remaining + 1));
+        if (read < 0) {
+          return true;
+        }
+        remaining -= read;
+      } while (remaining >= 0 && System.nanoTime() < deadline);
+    } catch (IOException e) {
+      // the connection is no use to anyone now
+    }
+    return false;
+  }
+}
@@ -0,0 +1,86 @@
+package com.ft.jerseyhttpwrapper;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.api.client.ClientRequest;
+
+/**
+ * Extracts the key used by a {@link com.ft.jerseyhttpwrapper.providers.KeyedHostAndPortProvider} to
+ * pin a request to a node.
+ *
+ * @see ResilienceStrategy#CONSISTENT_HASH_STRATEGY
+ */
+public abstract class RoutingKey {
+
+  /**
+   * Returns the routing key for the request.
+   *
+   * @param request the request as supplied by the application
+   * @return the key, or {@code null} if the request carries none
+   */
+  public abstract String from(ClientRequest request);
+
+  /** @return a key taken from the request path, e.g. "/content/1234" */
+  public static RoutingKey path() {
+    return new RoutingKey() {
+      @Override
+      public String from(ClientRequest request) {
+        return request.getURI().getRawPath();
+      }
+
+      @Override
+      public String toString() {
+        return "path";
+      }
+    };
+  }
+
+  /**
+   * @param name the request header holding the key
+   * @return a key taken from the first value of the named header
+   */
+  public static RoutingKey header(final String name) {
+    Preconditions.checkNotNull(name, "header name is mandatory");
+    return new RoutingKey() {
+      @Override
+      public String from(ClientRequest request) {
+        Object value = request.getHeaders().getFirst(name);
+        return value == null ? null : value.toString();
+      }
+
+      @Override
+      public String toString() {
+        return "header:" + name;
+      }
+    };
+  }
+
+  /**
+   * @param name the query parameter holding the key
+   * @return a key taken from the first value of the named query parameter
+   */
+  public static RoutingKey queryParameter(final String name) {
+    Preconditions.checkNotNull(name, "query parameter name is mandatory");
+    return new RoutingKey() {
+      @Override
+      public String from(ClientRequest request) {
+        String query = request.getURI().getRawQuery();
+        if (query == null) {
+          return null;
+        }
+        for (String pair : query.split("&")) {
+          int equals = pair.indexOf('=');
+          String pairName = equals < 0 ? pair : pair.substring(0, equals);
+          if (name.equals(pairName)) {
+            return equals < 0 ? "" : pair.substring(equals + 1);
+          }
+        }
+        return null;
+      }
+
+      @Override
+      public String toString() {
+        return "query:" + name;
+      }
+    };
+  }
+}
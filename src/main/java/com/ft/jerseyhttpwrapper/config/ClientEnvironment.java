@@ -2,7 +2,10 @@ package com.ft.jerseyhttpwrapper.config;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.validation.Validator;
 
 /**
@@ -16,6 +19,30 @@ public interface ClientEnvironment {
 
   ExecutorService createExecutorService(String shortName, int minThreads, int maxThreads);
 
+  /**
+   * Creates a single threaded scheduler for background work such as health checks. The default uses
+   * a daemon thread so that it never holds the JVM open.
+   */
+  default ScheduledExecutorService createScheduledExecutorService(String shortName) {
+    return Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat(String.format("resilient-client-%s-scheduler-%s", shortName, "%d"))
+            .setDaemon(true)
+            .build());
+  }
+
+  /**
+   * Creates an executor that runs each task on a new virtual thread, for use in place of {@link
+   * #createExecutorService(String, int, int)}. Requires Java 21 or later.
+   *
+   * @throws UnsupportedOperationException if the JVM does not support virtual threads
+   * @see VirtualThreads#isAvailable()
+   */
+  default ExecutorService createVirtualThreadExecutorService(String shortName) {
+    return VirtualThreads.newThreadPerTaskExecutor(
+        String.format("resilient-client-%s-virtual-", shortName));
+  }
+
   Validator getValidator();
 
   MetricRegistry getMetricsRegistry();
@@ -2,9 +2,11 @@ package com.ft.jerseyhttpwrapper.config;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.util.Duration;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.validation.Validator;
 
 /**
@@ -44,6 +46,29 @@ public class DW07xClientEnvironment implements ClientEnvironment {
         .build();
   }
 
+  @Override
+  public ScheduledExecutorService createScheduledExecutorService(String shortName) {
+
+    String generatedTemplate = String.format("resilient-client-%s-scheduler-%s", shortName, "%d");
+
+    return environment.lifecycle().scheduledExecutorService(generatedTemplate).threads(1).build();
+  }
+
+  @Override
+  public ExecutorService createVirtualThreadExecutorService(String shortName) {
+    ExecutorService executorService =
+        ClientEnvironment.super.createVirtualThreadExecutorService(shortName);
+
+    environment
+        .lifecycle()
+        .manage(
+            new ExecutorServiceManager(
+                executorService,
+                Duration.seconds(5),
+                String.format("resilient-client-%s-virtual", shortName)));
+    return executorService;
+  }
+
   @Override
   public MetricRegistry getMetricsRegistry() {
     return environment.metrics();
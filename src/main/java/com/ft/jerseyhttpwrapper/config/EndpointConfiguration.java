@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.validation.Valid;
 
 public class EndpointConfiguration {
   private static final Pattern URL_REGEX =
@@ -29,6 +30,8 @@ public class EndpointConfiguration {
   @JsonProperty
   private ResilienceStrategy resilienceStrategy = ResilienceStrategy.LOAD_BALANCED_STRATEGY;
 
+  @Valid @JsonProperty private HealthCheckConfiguration activeHealthCheck;
+
   /**
    * Creates a simple endpoint configuration for a test host (e.g. WireMock) with GZip disabled.
    *
@@ -72,6 +75,10 @@ public class EndpointConfiguration {
     this.resilienceStrategy = resilienceStrategy;
   }
 
+  public void setActiveHealthCheck(final HealthCheckConfiguration activeHealthCheck) {
+    this.activeHealthCheck = activeHealthCheck;
+  }
+
   public Optional<String> getShortName() {
     return shortName;
   }
@@ -130,6 +137,10 @@ public class EndpointConfiguration {
     return resilienceStrategy;
   }
 
+  public Optional<HealthCheckConfiguration> getActiveHealthCheck() {
+    return Optional.fromNullable(activeHealthCheck);
+  }
+
   protected Objects.ToStringHelper toStringHelper() {
     return Objects.toStringHelper(this)
         .add("shortName", shortName)
@@ -137,7 +148,8 @@ public class EndpointConfiguration {
         .add("primaryNodes", primaryNodes)
         .add("secondaryNodes", secondaryNodes)
         .add("retryNonIdempotentMethods", retryNonIdempotentMethods)
-        .add("resilienceStrategy", resilienceStrategy);
+        .add("resilienceStrategy", resilienceStrategy)
+        .add("activeHealthCheck", activeHealthCheck);
   }
 
   @Override
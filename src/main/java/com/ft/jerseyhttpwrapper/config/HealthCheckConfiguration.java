@@ -0,0 +1,99 @@
+package com.ft.jerseyhttpwrapper.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for probing each node's admin port in the background.
+ *
+ * <pre>
+ *   activeHealthCheck:
+ *     path: "/__health"
+ *     interval: 10s
+ *     jitter: 1s
+ *     timeout: 1s
+ *     healthyThreshold: 2
+ *     unhealthyThreshold: 3
+ * </pre>
+ */
+public class HealthCheckConfiguration {
+
+  @NotNull @JsonProperty private String path = "/__health";
+
+  @NotNull @JsonProperty private Duration interval = Duration.seconds(10);
+
+  @NotNull @JsonProperty private Duration jitter = Duration.seconds(1);
+
+  @NotNull @JsonProperty private Duration timeout = Duration.seconds(1);
+
+  @Min(1)
+  @JsonProperty
+  private int healthyThreshold = 2;
+
+  @Min(1)
+  @JsonProperty
+  private int unhealthyThreshold = 3;
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  public Duration getInterval() {
+    return interval;
+  }
+
+  public void setInterval(Duration interval) {
+    this.interval = interval;
+  }
+
+  public Duration getJitter() {
+    return jitter;
+  }
+
+  public void setJitter(Duration jitter) {
+    this.jitter = jitter;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public int getHealthyThreshold() {
+    return healthyThreshold;
+  }
+
+  public void setHealthyThreshold(int healthyThreshold) {
+    this.healthyThreshold = healthyThreshold;
+  }
+
+  public int getUnhealthyThreshold() {
+    return unhealthyThreshold;
+  }
+
+  public void setUnhealthyThreshold(int unhealthyThreshold) {
+    this.unhealthyThreshold = unhealthyThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("path", path)
+        .add("interval", interval)
+        .add("jitter", jitter)
+        .add("timeout", timeout)
+        .add("healthyThreshold", healthyThreshold)
+        .add("unhealthyThreshold", unhealthyThreshold)
+        .toString();
+  }
+}
@@ -0,0 +1,67 @@
+package com.ft.jerseyhttpwrapper.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to JDK 21 virtual threads while still compiling for, and running on, Java 8. The methods
+ * are looked up reflectively once; on older JVMs {@link #isAvailable()} is simply {@code false}.
+ */
+public final class VirtualThreads {
+
+  private static final Method OF_VIRTUAL;
+  private static final Method NAME;
+  private static final Method FACTORY;
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builderType.getMethod("name", String.class, long.class);
+      factory = builderType.getMethod("factory");
+      newThreadPerTaskExecutor =
+          Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {}
+
+  /** @return {@code true} if this JVM supports virtual threads */
+  public static boolean isAvailable() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Creates an executor that starts a new virtual thread for each task.
+   *
+   * @param namePrefix prefix of the thread names, which are numbered from zero
+   * @throws UnsupportedOperationException if this JVM does not support virtual threads
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    if (!isAvailable()) {
+      throw new UnsupportedOperationException(
+          "Virtual threads require Java 21, running on " + System.getProperty("java.version"));
+    }
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+      ThreadFactory threadFactory = (ThreadFactory) FACTORY.invoke(builder);
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Unable to create virtual thread executor", e);
+    }
+  }
+}
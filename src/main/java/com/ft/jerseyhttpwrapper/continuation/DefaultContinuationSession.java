@@ -32,8 +32,6 @@ public class DefaultContinuationSession implements ContinuationSession {
 
   @Override
   public void handleFailedHost(HostAndPort hostAndPort) {
-    synchronized (hostAndPortProvider) {
-      hostAndPortProvider.handleFailedHost(hostAndPort);
-    }
+    hostAndPortProvider.handleFailedHost(hostAndPort);
   }
 }
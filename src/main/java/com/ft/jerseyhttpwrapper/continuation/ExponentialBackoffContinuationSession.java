@@ -69,8 +69,6 @@ public class ExponentialBackoffContinuationSession implements ContinuationSessio
 
   @Override
   public void handleFailedHost(HostAndPort hostAndPort) {
-    synchronized (hostAndPortProvider) {
-      hostAndPortProvider.handleFailedHost(hostAndPort);
-    }
+    hostAndPortProvider.handleFailedHost(hostAndPort);
   }
 }
@@ -0,0 +1,178 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+import static com.ft.membership.logging.Operation.operation;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import com.ft.membership.logging.Operation;
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reads a service's members from a file, and pushes changes whenever the file changes. A stand-in
+ * for a real registry, and the reference implementation of {@link ServiceDiscovery}.
+ *
+ * <p>The file holds one {@code host:port} per line, optionally followed by {@code drained}. Blank
+ * lines and lines starting with {@code #} are ignored. Replace the file atomically, by renaming a
+ * complete file over it, so that it is never read half written. If it cannot be read, the members
+ * stay as they were.
+ */
+public class FileServiceDiscovery implements ServiceDiscovery, Closeable {
+
+  private static final String DRAINED = "drained";
+
+  private final Path file;
+  private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+
+  /** node to whether it is drained; guarded by this */
+  private Map<HostAndPort, Boolean> members = Collections.emptyMap();
+
+  private WatchService watchService;
+  private Thread watcher;
+
+  public FileServiceDiscovery(Path file) {
+    this.file = Preconditions.checkNotNull(file).toAbsolutePath();
+  }
+
+  /** Reads the file, then watches it for changes on a daemon thread until closed. */
+  public synchronized void start() throws IOException {
+    Preconditions.checkState(watchService == null, "already started");
+    reload();
+
+    watchService = file.getFileSystem().newWatchService();
+    file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+    watcher =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                watch();
+              }
+            },
+            "file-discovery-" + file.getFileName());
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  @Override
+  public synchronized void subscribe(MembershipListener listener) {
+    listeners.add(listener);
+    List<MembershipChange> current = new ArrayList<>(members.size() * 2);
+    for (Map.Entry<HostAndPort, Boolean> member : members.entrySet()) {
+      current.add(MembershipChange.added(member.getKey()));
+      if (member.getValue()) {
+        current.add(MembershipChange.drained(member.getKey()));
+      }
+    }
+    if (!current.isEmpty()) {
+      listener.membershipChanged(current);
+    }
+  }
+
+  @Override
+  public void unsubscribe(MembershipListener listener) {
+    listeners.remove(listener);
+  }
+
+  /** Reads the file now, and tells subscribers what has changed since it was last read. */
+  public synchronized void reload() {
+    final Operation resultOperation =
+        operation("reload").with("file", file.toString()).jsonLayout().initiate(this);
+
+    Map<HostAndPort, Boolean> read;
+    try {
+      read = parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    } catch (IOException | IllegalArgumentException e) {
+      resultOperation
+          .wasFailure()
+          .withMessage(e)
+          .withDetail("msg", "Could not read members, keeping the previous ones")
+          .logWarn(e);
+      return;
+    }
+
+    List<MembershipChange> changes = new ArrayList<>();
+    for (HostAndPort gone : members.keySet()) {
+      if (!read.containsKey(gone)) {
+        changes.add(MembershipChange.removed(gone));
+      }
+    }
+    for (Map.Entry<HostAndPort, Boolean> member : read.entrySet()) {
+      Boolean wasDrained = members.get(member.getKey());
+      boolean drained = member.getValue();
+      if (wasDrained == null || wasDrained != drained) {
+        changes.add(
+            drained
+                ? MembershipChange.drained(member.getKey())
+                : MembershipChange.added(member.getKey()));
+      }
+    }
+    members = read;
+
+    if (!changes.isEmpty()) {
+      resultOperation.logIntermediate().yielding("changes", changes.toString()).logInfo();
+      for (MembershipListener listener : listeners) {
+        listener.membershipChanged(changes);
+      }
+    }
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        boolean ours = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (file.getFileName().equals(event.context())) {
+            ours = true;
+          }
+        }
+        key.reset();
+        if (ours) {
+          reload();
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // closed, so stop watching
+    }
+  }
+
+  private static Map<HostAndPort, Boolean> parse(List<String> lines) {
+    Map<HostAndPort, Boolean> members = new LinkedHashMap<>();
+    for (String line : lines) {
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      String[] fields = trimmed.split("\\s+");
+      if (fields.length > 2 || (fields.length == 2 && !DRAINED.equals(fields[1]))) {
+        throw new IllegalArgumentException("Unrecognised member: " + line);
+      }
+      members.put(HostAndPort.fromString(fields[0]), fields.length == 2);
+    }
+    return members;
+  }
+}
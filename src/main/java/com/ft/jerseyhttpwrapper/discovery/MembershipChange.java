@@ -0,0 +1,65 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+
+/** One node joining, leaving, or being drained from a service. */
+public final class MembershipChange {
+
+  public enum Type {
+    /** the node takes requests, whether it is new or returning from being drained */
+    ADDED,
+    /** the node has gone */
+    REMOVED,
+    /** the node is going, so is only offered once every other node has been tried */
+    DRAINED
+  }
+
+  private final Type type;
+  private final HostAndPort node;
+
+  private MembershipChange(Type type, HostAndPort node) {
+    this.type = Preconditions.checkNotNull(type);
+    this.node = Preconditions.checkNotNull(node);
+  }
+
+  public static MembershipChange added(HostAndPort node) {
+    return new MembershipChange(Type.ADDED, node);
+  }
+
+  public static MembershipChange removed(HostAndPort node) {
+    return new MembershipChange(Type.REMOVED, node);
+  }
+
+  public static MembershipChange drained(HostAndPort node) {
+    return new MembershipChange(Type.DRAINED, node);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public HostAndPort getNode() {
+    return node;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof MembershipChange)) {
+      return false;
+    }
+    MembershipChange other = (MembershipChange) o;
+    return type == other.type && node.equals(other.node);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(type, node);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("type", type).add("node", node).toString();
+  }
+}
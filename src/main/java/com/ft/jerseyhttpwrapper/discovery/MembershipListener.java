@@ -0,0 +1,10 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+import java.util.List;
+
+/** Told of changes in a service's membership by a {@link ServiceDiscovery}. */
+public interface MembershipListener {
+
+  /** @param changes every change noticed at once, in the order they apply */
+  void membershipChanged(List<MembershipChange> changes);
+}
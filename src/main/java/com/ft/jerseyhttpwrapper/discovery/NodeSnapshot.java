@@ -0,0 +1,85 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+import com.google.common.base.Objects;
+import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable view of a service's members at one version. Changes produce a new snapshot, so a
+ * reader holding one never sees it change underneath it.
+ */
+public final class NodeSnapshot {
+
+  public static final NodeSnapshot EMPTY =
+      new NodeSnapshot(
+          0, Collections.<HostAndPort>emptyList(), Collections.<HostAndPort>emptyList());
+
+  private final long version;
+  private final List<HostAndPort> active;
+  private final List<HostAndPort> draining;
+
+  private NodeSnapshot(long version, List<HostAndPort> active, List<HostAndPort> draining) {
+    this.version = version;
+    this.active = Collections.unmodifiableList(active);
+    this.draining = Collections.unmodifiableList(draining);
+  }
+
+  /** @return a new snapshot, one version on, with the changes applied in order */
+  public NodeSnapshot apply(List<MembershipChange> changes) {
+    Set<HostAndPort> nextActive = new LinkedHashSet<>(active);
+    Set<HostAndPort> nextDraining = new LinkedHashSet<>(draining);
+
+    for (MembershipChange change : changes) {
+      HostAndPort node = change.getNode();
+      switch (change.getType()) {
+        case ADDED:
+          nextDraining.remove(node);
+          nextActive.add(node);
+          break;
+        case DRAINED:
+          nextActive.remove(node);
+          nextDraining.add(node);
+          break;
+        case REMOVED:
+          nextActive.remove(node);
+          nextDraining.remove(node);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown change " + change);
+      }
+    }
+    return new NodeSnapshot(
+        version + 1, new ArrayList<>(nextActive), new ArrayList<>(nextDraining));
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /** @return the nodes taking requests */
+  public List<HostAndPort> getActive() {
+    return active;
+  }
+
+  /** @return the nodes on their way out, still usable as a last resort */
+  public List<HostAndPort> getDraining() {
+    return draining;
+  }
+
+  public boolean isEmpty() {
+    return active.isEmpty() && draining.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("version", version)
+        .add("active", active)
+        .add("draining", draining)
+        .toString();
+  }
+}
@@ -0,0 +1,18 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+/**
+ * A source of service membership that pushes changes as they happen, rather than being asked on
+ * every request.
+ */
+public interface ServiceDiscovery {
+
+  /**
+   * Starts telling the listener about changes. The current members are delivered straight away, as
+   * additions, so a new subscriber need not wait for the next change to learn of them.
+   *
+   * @param listener told of every later change, on whichever thread notices it
+   */
+  void subscribe(MembershipListener listener);
+
+  void unsubscribe(MembershipListener listener);
+}
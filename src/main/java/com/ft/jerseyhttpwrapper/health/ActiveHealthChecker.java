@@ -0,0 +1,214 @@
+package com.ft.jerseyhttpwrapper.health;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.ft.jerseyhttpwrapper.config.HealthCheckConfiguration;
+import com.ft.jerseyhttpwrapper.config.SimpleEndpointConfiguration;
+import com.ft.jerseyhttpwrapper.providers.NodeAvailability;
+import com.ft.membership.logging.IntermediateYield;
+import com.ft.membership.logging.Operation;
+import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes each node in the background and marks it up or down in a {@link NodeAvailability} once it
+ * has passed or failed enough consecutive checks.
+ *
+ * <p>Every node has its own schedule. The first check is spread randomly across one interval and
+ * each subsequent delay has random jitter added, so that a fleet of clients does not probe in
+ * lock-step. Nodes start out available.
+ *
+ * <p>Probes block for up to their timeout, so they can be given an executor of their own. The
+ * scheduler then only times them, and one unresponsive node delays neither the other nodes' checks
+ * nor anything else sharing the scheduler.
+ */
+public class ActiveHealthChecker {
+
+  private final HealthCheckConfiguration configuration;
+  private final NodeAvailability availability;
+  private final ScheduledExecutorService scheduler;
+  private final Executor probes;
+  private final HealthProbe probe;
+  private final Random random = new Random();
+
+  private final List<NodeCheck> checks = new ArrayList<>();
+  private volatile boolean running;
+
+  public ActiveHealthChecker(
+      HealthCheckConfiguration configuration,
+      NodeAvailability availability,
+      ScheduledExecutorService scheduler) {
+    this(configuration, availability, scheduler, scheduler);
+  }
+
+  /** @param probes runs the probes, which the scheduler only times */
+  public ActiveHealthChecker(
+      HealthCheckConfiguration configuration,
+      NodeAvailability availability,
+      ScheduledExecutorService scheduler,
+      Executor probes) {
+    this(configuration, availability, scheduler, probes, new HttpHealthProbe(configuration));
+  }
+
+  public ActiveHealthChecker(
+      HealthCheckConfiguration configuration,
+      NodeAvailability availability,
+      ScheduledExecutorService scheduler,
+      HealthProbe probe) {
+    this(configuration, availability, scheduler, scheduler, probe);
+  }
+
+  public ActiveHealthChecker(
+      HealthCheckConfiguration configuration,
+      NodeAvailability availability,
+      ScheduledExecutorService scheduler,
+      Executor probes,
+      HealthProbe probe) {
+    this.configuration = configuration;
+    this.availability = availability;
+    this.scheduler = scheduler;
+    this.probes = probes;
+    this.probe = probe;
+  }
+
+  /**
+   * Adds a node to be checked once {@link #start()} is called.
+   *
+   * @param node the node as presented by the provider, used to mark it up or down
+   * @param endpoint the node's configuration, used to find its admin port
+   */
+  public synchronized ActiveHealthChecker watch(
+      HostAndPort node, SimpleEndpointConfiguration endpoint) {
+    checks.add(new NodeCheck(node, endpoint));
+    return this;
+  }
+
+  public HealthCheckConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  public synchronized void start() {
+    running = true;
+    long intervalMillis = configuration.getInterval().toMilliseconds();
+    for (NodeCheck check : checks) {
+      check.schedule((long) (random.nextDouble() * intervalMillis));
+    }
+  }
+
+  public synchronized void stop() {
+    running = false;
+    for (NodeCheck check : checks) {
+      check.cancel();
+    }
+  }
+
+  private long nextDelayMillis() {
+    long jitterMillis = configuration.getJitter().toMilliseconds();
+    return configuration.getInterval().toMilliseconds()
+        + (long) (random.nextDouble() * jitterMillis);
+  }
+
+  /**
+   * The state of one node's checks. Only ever touched by the node's own check, which is not
+   * scheduled again until it has finished.
+   */
+  private class NodeCheck implements Runnable {
+
+    private final HostAndPort node;
+    private final SimpleEndpointConfiguration endpoint;
+
+    private boolean up = true;
+    private int consecutiveSuccesses;
+    private int consecutiveFailures;
+    private volatile ScheduledFuture<?> scheduled;
+
+    NodeCheck(HostAndPort node, SimpleEndpointConfiguration endpoint) {
+      this.node = node;
+      this.endpoint = endpoint;
+    }
+
+    void schedule(long delayMillis) {
+      if (running) {
+        scheduled = scheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    void cancel() {
+      ScheduledFuture<?> current = scheduled;
+      if (current != null) {
+        current.cancel(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      if (probes == scheduler) {
+        check();
+        return;
+      }
+      try {
+        probes.execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                check();
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        // the probes' executor has been shut down, so there are no more checks to make
+      }
+    }
+
+    private void check() {
+      try {
+        record(probe());
+      } finally {
+        schedule(nextDelayMillis());
+      }
+    }
+
+    private boolean probe() {
+      try {
+        return probe.isHealthy(endpoint);
+      } catch (Exception e) {
+        return false;
+      }
+    }
+
+    private void record(boolean healthy) {
+      if (healthy) {
+        consecutiveFailures = 0;
+        consecutiveSuccesses++;
+        if (!up && consecutiveSuccesses >= configuration.getHealthyThreshold()) {
+          up = true;
+          availability.markUp(node);
+          log("node passed health checks, returning to rotation").logInfo();
+        }
+      } else {
+        consecutiveSuccesses = 0;
+        consecutiveFailures++;
+        if (up && consecutiveFailures >= configuration.getUnhealthyThreshold()) {
+          up = false;
+          availability.markDown(node);
+          log("node failed health checks, removing from rotation").logWarn();
+        }
+      }
+    }
+
+    private IntermediateYield log(String message) {
+      final Operation operationJson =
+          operation("healthCheck")
+              .with("node", node.toString())
+              .jsonLayout()
+              .initiate(ActiveHealthChecker.this);
+      return operationJson.logIntermediate().yielding("msg", message);
+    }
+  }
+}
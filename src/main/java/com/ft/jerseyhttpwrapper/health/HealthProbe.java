@@ -0,0 +1,14 @@
+package com.ft.jerseyhttpwrapper.health;
+
+import com.ft.jerseyhttpwrapper.config.SimpleEndpointConfiguration;
+
+/** Performs a single health check against one node. */
+public interface HealthProbe {
+
+  /**
+   * @param node the node to probe
+   * @return {@code true} if the node reported itself healthy
+   * @throws Exception if the node could not be reached; treated as unhealthy
+   */
+  boolean isHealthy(SimpleEndpointConfiguration node) throws Exception;
+}
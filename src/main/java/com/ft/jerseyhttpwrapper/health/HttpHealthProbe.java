@@ -0,0 +1,54 @@
+package com.ft.jerseyhttpwrapper.health;
+
+import com.ft.jerseyhttpwrapper.config.HealthCheckConfiguration;
+import com.ft.jerseyhttpwrapper.config.SimpleEndpointConfiguration;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Issues a GET to the configured path on the node's admin port, e.g. Dropwizard's {@code
+ * /healthcheck} or FT's {@code /__health}. Any 2xx status is healthy.
+ *
+ * <p>Deliberately bypasses the resilient client's own connection pool so that probes neither
+ * compete with application traffic nor show up in its metrics.
+ */
+public class HttpHealthProbe implements HealthProbe {
+
+  private final String path;
+  private final int timeoutMillis;
+
+  public HttpHealthProbe(HealthCheckConfiguration configuration) {
+    this.path = configuration.getPath();
+    this.timeoutMillis = (int) configuration.getTimeout().toMilliseconds();
+  }
+
+  @Override
+  public boolean isHealthy(SimpleEndpointConfiguration node) throws IOException {
+    String protocol = node.getProtocol() == null ? "http" : node.getProtocol();
+    URL url = new URL(protocol, node.getHost(), node.getAdminPort(), path);
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(timeoutMillis);
+    connection.setReadTimeout(timeoutMillis);
+    connection.setUseCaches(false);
+    int status = connection.getResponseCode();
+    discard(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+    return status >= 200 && status < 300;
+  }
+
+  private void discard(InputStream body) throws IOException {
+    if (body == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[512];
+      while (body.read(buffer) >= 0) {
+        // drain so that the keep-alive connection can be reused by the next probe
+      }
+    } finally {
+      body.close();
+    }
+  }
+}
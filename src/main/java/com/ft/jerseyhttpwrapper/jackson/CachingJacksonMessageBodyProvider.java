@@ -0,0 +1,121 @@
+package com.ft.jerseyhttpwrapper.jackson;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.dropwizard.jersey.jackson.JacksonMessageBodyProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.validation.Validator;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * A {@link JacksonMessageBodyProvider} that keeps an {@link ObjectReader} and {@link ObjectWriter}
+ * per Java type, rather than deriving new ones on every call.
+ *
+ * <p>Entities are parsed straight from the entity stream and written straight to the output stream,
+ * so Jackson's per-thread buffer recycling applies and nothing is copied into an intermediate
+ * {@code String}. Calls with annotations (e.g. {@code @Valid} or {@code @JsonView}) take the normal
+ * path so that validation and views still apply.
+ */
+public class CachingJacksonMessageBodyProvider extends JacksonMessageBodyProvider {
+
+  private final ObjectMapper mapper;
+
+  private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  public CachingJacksonMessageBodyProvider(ObjectMapper mapper, Validator validator) {
+    super(mapper, validator);
+    this.mapper = mapper;
+  }
+
+  @Override
+  public Object readFrom(
+      Class<Object> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders,
+      InputStream entityStream)
+      throws IOException {
+    if (annotations != null && annotations.length > 0) {
+      return super.readFrom(type, genericType, annotations, mediaType, httpHeaders, entityStream);
+    }
+
+    ObjectReader reader = readerFor(genericType != null ? genericType : type);
+    JsonParser parser = reader.getFactory().createParser(entityStream);
+    // the entity stream belongs to Jersey, which closes it
+    parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    try {
+      if (parser.nextToken() == null) {
+        return null;
+      }
+      return reader.readValue(parser);
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Override
+  public void writeTo(
+      Object value,
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream)
+      throws IOException {
+    if (annotations != null && annotations.length > 0) {
+      super.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+      return;
+    }
+
+    ObjectWriter writer = writerFor(genericType != null ? genericType : type);
+    JsonGenerator generator = writer.getFactory().createGenerator(entityStream, JsonEncoding.UTF8);
+    // the entity stream belongs to Jersey, which closes it
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    writer.writeValue(generator, value);
+    generator.close();
+  }
+
+  private ObjectReader readerFor(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (reader == null) {
+      reader = mapper.reader(javaType(type));
+      ObjectReader raced = readers.putIfAbsent(type, reader);
+      if (raced != null) {
+        reader = raced;
+      }
+    }
+    return reader;
+  }
+
+  private ObjectWriter writerFor(Type type) {
+    ObjectWriter writer = writers.get(type);
+    if (writer == null) {
+      // as in the default provider, Object means "use the runtime type of the value"
+      writer = type == Object.class ? mapper.writer() : mapper.writerWithType(javaType(type));
+      ObjectWriter raced = writers.putIfAbsent(type, writer);
+      if (raced != null) {
+        writer = raced;
+      }
+    }
+    return writer;
+  }
+
+  private JavaType javaType(Type type) {
+    return mapper.getTypeFactory().constructType(type);
+  }
+}
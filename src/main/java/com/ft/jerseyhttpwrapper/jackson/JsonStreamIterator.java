@@ -0,0 +1,108 @@
+package com.ft.jerseyhttpwrapper.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.jersey.api.client.ClientHandlerException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily binds the elements of a top-level JSON array, or of newline delimited JSON, one at a time
+ * as they are read from the stream. Only the current element is ever held in memory.
+ *
+ * <p>The stream is closed once the last element has been read. Callers that stop early must {@link
+ * #close()} the iterator themselves, or the connection is not released.
+ */
+public class JsonStreamIterator<T> implements Iterator<T>, Closeable {
+
+  private final ObjectReader reader;
+  private final JsonParser parser;
+
+  private boolean started;
+  private boolean inArray;
+  private boolean pending;
+  private boolean finished;
+
+  /**
+   * @param reader a reader for the element type
+   * @param in the JSON array or newline delimited JSON to read
+   */
+  public JsonStreamIterator(ObjectReader reader, InputStream in) {
+    this.reader = reader;
+    try {
+      this.parser = reader.getFactory().createParser(in);
+    } catch (IOException e) {
+      throw new ClientHandlerException(e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (pending) {
+      return true;
+    }
+    if (finished) {
+      return false;
+    }
+
+    try {
+      JsonToken token = parser.nextToken();
+      if (!started) {
+        started = true;
+        if (token == JsonToken.START_ARRAY) {
+          inArray = true;
+          token = parser.nextToken();
+        }
+      }
+
+      if (token == null || (inArray && token == JsonToken.END_ARRAY)) {
+        close();
+        return false;
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      throw new ClientHandlerException(e);
+    }
+
+    pending = true;
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    pending = false;
+    try {
+      return reader.readValue(parser);
+    } catch (IOException e) {
+      closeQuietly();
+      throw new ClientHandlerException(e);
+    }
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("read only");
+  }
+
+  @Override
+  public void close() throws IOException {
+    finished = true;
+    pending = false;
+    parser.close();
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException e) {
+      // already failing, the original exception is the one that matters
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.ft.jerseyhttpwrapper.metrics;
+
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+/**
+ * A {@link Snapshot} read straight from an HdrHistogram, so percentiles up to and including the
+ * maximum are accurate to the histogram's precision rather than estimated from a sample.
+ */
+class HdrHistogramSnapshot extends Snapshot {
+
+  private static final long[] NO_VALUES = new long[0];
+
+  private final Histogram histogram;
+
+  HdrHistogramSnapshot(Histogram histogram) {
+    super(NO_VALUES);
+    this.histogram = histogram;
+  }
+
+  @Override
+  public double getValue(double quantile) {
+    if (quantile < 0.0 || quantile > 1.0) {
+      throw new IllegalArgumentException(quantile + " is not in [0..1]");
+    }
+    return histogram.getValueAtPercentile(quantile * 100.0);
+  }
+
+  @Override
+  public int size() {
+    return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+  }
+
+  /** @return one entry per distinct recorded value, not one per recording */
+  @Override
+  public long[] getValues() {
+    long[] values = new long[distinctValues()];
+    int i = 0;
+    for (HistogramIterationValue value : histogram.recordedValues()) {
+      values[i++] = histogram.highestEquivalentValue(value.getValueIteratedTo());
+    }
+    return values;
+  }
+
+  @Override
+  public long getMax() {
+    return histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue();
+  }
+
+  @Override
+  public long getMin() {
+    return histogram.getTotalCount() == 0 ? 0 : histogram.getMinValue();
+  }
+
+  @Override
+  public double getMean() {
+    return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+  }
+
+  @Override
+  public double getStdDev() {
+    return histogram.getTotalCount() <= 1 ? 0 : histogram.getStdDeviation();
+  }
+
+  @Override
+  public void dump(OutputStream output) {
+    final PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    try {
+      for (HistogramIterationValue value : histogram.recordedValues()) {
+        out.printf("%d\t%d%n", value.getValueIteratedTo(), value.getCountAtValueIteratedTo());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private int distinctValues() {
+    int count = 0;
+    for (HistogramIterationValue ignored : histogram.recordedValues()) {
+      count++;
+    }
+    return count;
+  }
+}
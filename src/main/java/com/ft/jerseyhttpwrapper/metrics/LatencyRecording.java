@@ -0,0 +1,77 @@
+package com.ft.jerseyhttpwrapper.metrics;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
+
+/**
+ * Chooses the reservoir behind the client's timers and histograms.
+ *
+ * <p>The metrics library default samples values into an exponentially decaying reservoir, which
+ * takes a lock on update and estimates the tail from a small sample. {@link #HDR_HISTOGRAM} records
+ * every value lock-free and reports exact percentiles per interval, at the cost of some memory per
+ * metric.
+ */
+public enum LatencyRecording {
+  EXPONENTIALLY_DECAYING {
+    @Override
+    public Reservoir newReservoir() {
+      return new ExponentiallyDecayingReservoir();
+    }
+
+    @Override
+    public Timer timer(MetricRegistry registry, String name) {
+      return registry.timer(name);
+    }
+
+    @Override
+    public Histogram histogram(MetricRegistry registry, String name) {
+      return registry.histogram(name);
+    }
+  },
+  HDR_HISTOGRAM {
+    @Override
+    public Reservoir newReservoir() {
+      return new HdrHistogramReservoir();
+    }
+  };
+
+  public abstract Reservoir newReservoir();
+
+  /**
+   * Returns the timer registered under the name, registering one backed by this kind of reservoir
+   * if there is none. A timer registered earlier is reused whatever its reservoir.
+   */
+  public Timer timer(MetricRegistry registry, String name) {
+    Timer existing = registry.getTimers().get(name);
+    if (existing != null) {
+      return existing;
+    }
+    return register(registry, name, new Timer(newReservoir()));
+  }
+
+  /**
+   * Returns the histogram registered under the name, registering one backed by this kind of
+   * reservoir if there is none. A histogram registered earlier is reused whatever its reservoir.
+   */
+  public Histogram histogram(MetricRegistry registry, String name) {
+    Histogram existing = registry.getHistograms().get(name);
+    if (existing != null) {
+      return existing;
+    }
+    return register(registry, name, new Histogram(newReservoir()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Metric> T register(MetricRegistry registry, String name, T metric) {
+    try {
+      return registry.register(name, metric);
+    } catch (IllegalArgumentException e) {
+      // another client with the same short name registered it first
+      return (T) registry.getMetrics().get(name);
+    }
+  }
+}
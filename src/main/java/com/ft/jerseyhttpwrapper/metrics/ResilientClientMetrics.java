@@ -0,0 +1,218 @@
+package com.ft.jerseyhttpwrapper.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ft.jerseyhttpwrapper.PoolTopology;
+import com.ft.jerseyhttpwrapper.RequestPriority;
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of one {@link ResilientClient}, all registered under the client's short name.
+ *
+ * <p>Everything the request path touches is either created here up front or looked up in a
+ * pre-sized concurrent map, so recording an outcome never builds a metric name. Names are only
+ * built the first time a node or exception class is seen.
+ *
+ * <p>Nodes come and go with the dynamic strategies, so a node's timer is removed once it has had no
+ * attempts for {@link PoolTopology#STALE_MILLIS}. Stale timers are looked for whenever a new node
+ * is seen, which is the only way their number can grow.
+ */
+public class ResilientClientMetrics {
+
+  private static final int EXPECTED_NODES = 16;
+  private static final int EXPECTED_EXCEPTION_CLASSES = 8;
+
+  private final MetricRegistry registry;
+  private final String shortName;
+  private final LatencyRecording latencyRecording;
+
+  private final Timer requests;
+  private final Histogram attemptCounts;
+  private final Timer attempts;
+  private final Timer leaseWaits;
+  private final Meter[] statusClasses = new Meter[6];
+  private final Counter failovers;
+  private final Counter retries;
+  private final Counter ejections;
+  private final Counter backpressure;
+  private final Counter reusedDiscards;
+  private final Counter abortedDiscards;
+  private final Counter[] shed = new Counter[RequestPriority.values().length];
+
+  private final Ticker ticker;
+
+  private final ConcurrentMap<HostAndPort, NodeTimer> nodeAttempts =
+      new ConcurrentHashMap<>(EXPECTED_NODES);
+  private final ConcurrentMap<Class<?>, Counter> exceptions =
+      new ConcurrentHashMap<>(EXPECTED_EXCEPTION_CLASSES);
+
+  public ResilientClientMetrics(
+      MetricRegistry registry, String shortName, LatencyRecording latencyRecording) {
+    this(registry, shortName, latencyRecording, Ticker.systemTicker());
+  }
+
+  ResilientClientMetrics(
+      MetricRegistry registry, String shortName, LatencyRecording latencyRecording, Ticker ticker) {
+    this.registry = registry;
+    this.shortName = shortName;
+    this.latencyRecording = latencyRecording;
+    this.ticker = ticker;
+
+    requests = latencyRecording.timer(registry, name("requests", shortName));
+    attemptCounts = latencyRecording.histogram(registry, name("attemptCount", shortName));
+    attempts = latencyRecording.timer(registry, name("attempts", shortName));
+    leaseWaits = latencyRecording.timer(registry, name("leaseWaits", shortName));
+
+    for (int statusClass = 1; statusClass < statusClasses.length; statusClass++) {
+      statusClasses[statusClass] = registry.meter(name("responses", shortName, statusClass + "xx"));
+    }
+    failovers = registry.counter(name("failovers", shortName));
+    retries = registry.counter(name("retries", shortName));
+    ejections = registry.counter(name("ejections", shortName));
+    backpressure = registry.counter(name("backpressure", shortName));
+    reusedDiscards = registry.counter(name("discards", shortName, "reused"));
+    abortedDiscards = registry.counter(name("discards", shortName, "aborted"));
+    for (RequestPriority priority : RequestPriority.values()) {
+      shed[priority.ordinal()] =
+          registry.counter(name("shed", shortName, priority.name().toLowerCase()));
+    }
+  }
+
+  public Timer requests() {
+    return requests;
+  }
+
+  public Histogram attemptCounts() {
+    return attemptCounts;
+  }
+
+  public Timer attempts() {
+    return attempts;
+  }
+
+  /**
+   * @return the timer for how long attempts wait to lease a pooled connection, {@code
+   *     leaseWaits.<shortName>}
+   */
+  public Timer leaseWaits() {
+    return leaseWaits;
+  }
+
+  /** @return the attempts timer for a single node, e.g. {@code attempts.<shortName>.10_0_0_1_80} */
+  public Timer attempts(HostAndPort node) {
+    long now = ticker.read();
+    NodeTimer nodeTimer = nodeAttempts.get(node);
+    if (nodeTimer == null) {
+      forgetNodesIdleSince(now - TimeUnit.MILLISECONDS.toNanos(PoolTopology.STALE_MILLIS));
+      String name = name("attempts", shortName, nodeName(node));
+      nodeTimer = new NodeTimer(name, latencyRecording.timer(registry, name));
+      NodeTimer raced = nodeAttempts.putIfAbsent(node, nodeTimer);
+      if (raced != null) {
+        nodeTimer = raced;
+      }
+    }
+    nodeTimer.lastUsedNanos = now;
+    return nodeTimer.timer;
+  }
+
+  private void forgetNodesIdleSince(long staleBefore) {
+    for (Map.Entry<HostAndPort, NodeTimer> entry : nodeAttempts.entrySet()) {
+      NodeTimer nodeTimer = entry.getValue();
+      if (nodeTimer.lastUsedNanos - staleBefore < 0
+          && nodeAttempts.remove(entry.getKey(), nodeTimer)) {
+        registry.remove(nodeTimer.name);
+      }
+    }
+  }
+
+  /** Marks a response in the meter for its status class, e.g. {@code responses.<shortName>.5xx} */
+  public void response(int status) {
+    int statusClass = status / 100;
+    if (statusClass > 0 && statusClass < statusClasses.length) {
+      statusClasses[statusClass].mark();
+    }
+  }
+
+  /** Counts an attempt sent to a different node from the previous attempt. */
+  public void failover() {
+    failovers.inc();
+  }
+
+  /** Counts an attempt sent to the same node as the previous attempt. */
+  public void retry() {
+    retries.inc();
+  }
+
+  /** Counts a node taken out of rotation. */
+  public void ejection() {
+    ejections.inc();
+  }
+
+  /** Counts a node parked because it answered with Retry-After. */
+  public void backpressure() {
+    backpressure.inc();
+  }
+
+  /**
+   * Counts a response discarded before retrying, by whether its connection could be reused or had
+   * to be aborted.
+   */
+  public void discard(boolean reused) {
+    if (reused) {
+      reusedDiscards.inc();
+    } else {
+      abortedDiscards.inc();
+    }
+  }
+
+  /** Counts a request rejected by load shedding, e.g. {@code shed.<shortName>.low} */
+  public void shed(RequestPriority priority) {
+    shed[priority.ordinal()].inc();
+  }
+
+  /**
+   * Counts a failed attempt by exception class, e.g. {@code
+   * exceptions.<shortName>.SocketTimeoutException}
+   */
+  public void exception(Throwable cause) {
+    Class<?> type = cause.getClass();
+    Counter counter = exceptions.get(type);
+    if (counter == null) {
+      counter = registry.counter(name("exceptions", shortName, type.getSimpleName()));
+      Counter raced = exceptions.putIfAbsent(type, counter);
+      if (raced != null) {
+        counter = raced;
+      }
+    }
+    counter.inc();
+  }
+
+  private static String name(String... names) {
+    return MetricRegistry.name(ResilientClient.class, names);
+  }
+
+  private static class NodeTimer {
+    final String name;
+    final Timer timer;
+    volatile long lastUsedNanos;
+
+    NodeTimer(String name, Timer timer) {
+      this.name = name;
+      this.timer = timer;
+    }
+  }
+
+  /** Keeps each node a single path segment for hierarchical reporters such as Graphite. */
+  private static String nodeName(HostAndPort node) {
+    return node.toString().replace('.', '_').replace(':', '_');
+  }
+}
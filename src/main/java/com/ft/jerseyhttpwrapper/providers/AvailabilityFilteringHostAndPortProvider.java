@@ -0,0 +1,126 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Skips nodes that {@link NodeAvailability} reports as unavailable. Nodes are checked as the
+ * iterator reaches them, so a node marked down part way through a request is skipped by the
+ * remaining attempts.
+ *
+ * <p>If every node turns out to be unavailable the skipped nodes are offered anyway: a stale health
+ * verdict should not turn into a guaranteed failure. Nodes marked down are offered before parked
+ * ones, since a parked node has asked for no requests until its time is up.
+ */
+public class AvailabilityFilteringHostAndPortProvider implements KeyedHostAndPortProvider {
+
+  private final HostAndPortProvider delegate;
+  private final NodeAvailability availability;
+
+  public AvailabilityFilteringHostAndPortProvider(
+      HostAndPortProvider delegate, NodeAvailability availability) {
+    this.delegate = delegate;
+    this.availability = availability;
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    return new AvailableFirstIterator(delegate.iterator(suppliedAddress));
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress, String routingKey) {
+    if (delegate instanceof KeyedHostAndPortProvider) {
+      return new AvailableFirstIterator(
+          ((KeyedHostAndPortProvider) delegate).iterator(suppliedAddress, routingKey));
+    }
+    return iterator(suppliedAddress);
+  }
+
+  @Override
+  public void handleFailedHost(HostAndPort hostAndPort) {
+    delegate.handleFailedHost(hostAndPort);
+  }
+
+  @Override
+  public boolean supports(HostAndPort hostAndPort) {
+    return delegate.supports(hostAndPort);
+  }
+
+  public HostAndPortProvider getDelegate() {
+    return delegate;
+  }
+
+  public NodeAvailability getAvailability() {
+    return availability;
+  }
+
+  private class AvailableFirstIterator implements Iterator<HostAndPort> {
+
+    private final Iterator<HostAndPort> candidates;
+    private final List<HostAndPort> skipped = new ArrayList<>();
+    private Iterator<HostAndPort> fallback;
+    private HostAndPort next;
+    private boolean offeredAny;
+
+    AvailableFirstIterator(Iterator<HostAndPort> candidates) {
+      this.candidates = candidates;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+      while (candidates.hasNext()) {
+        HostAndPort candidate = candidates.next();
+        if (availability.isAvailable(candidate)) {
+          next = candidate;
+          return true;
+        }
+        skipped.add(candidate);
+      }
+      if (!offeredAny) {
+        if (fallback == null) {
+          fallback = downBeforeParked(skipped).iterator();
+        }
+        if (fallback.hasNext()) {
+          next = fallback.next();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public HostAndPort next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("No more hosts available");
+      }
+      HostAndPort result = next;
+      next = null;
+      if (fallback == null) {
+        offeredAny = true;
+      }
+      return result;
+    }
+
+    private List<HostAndPort> downBeforeParked(List<HostAndPort> nodes) {
+      List<HostAndPort> ordered = new ArrayList<>(nodes.size());
+      List<HostAndPort> parked = new ArrayList<>();
+      for (HostAndPort node : nodes) {
+        (availability.isParked(node) ? parked : ordered).add(node);
+      }
+      ordered.addAll(parked);
+      return ordered;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove method not supported");
+    }
+  }
+}
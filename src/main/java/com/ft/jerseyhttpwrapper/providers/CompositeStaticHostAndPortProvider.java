@@ -3,6 +3,7 @@ package com.ft.jerseyhttpwrapper.providers;
 import static com.google.common.collect.Iterators.concat;
 
 import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -14,7 +15,7 @@ import java.util.List;
  *
  * @author Simon.Gibbs
  */
-public class CompositeStaticHostAndPortProvider implements HostAndPortProvider {
+public class CompositeStaticHostAndPortProvider implements KeyedHostAndPortProvider {
 
   private List<HostAndPortProvider> providers;
 
@@ -23,18 +24,26 @@ public class CompositeStaticHostAndPortProvider implements HostAndPortProvider {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    return concatenated(suppliedAddress, null);
+  }
 
-    Iterator[] iteratorsArray = new Iterator[providers.size()];
-    for (int i = 0; i < providers.size(); i++) {
-
-      HostAndPortProvider provider = providers.get(i);
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress, String routingKey) {
+    return concatenated(suppliedAddress, routingKey);
+  }
 
-      iteratorsArray[i] = provider.iterator(suppliedAddress);
+  /** @param routingKey the key for keyed providers, or null to use every provider unkeyed */
+  private Iterator<HostAndPort> concatenated(HostAndPort suppliedAddress, String routingKey) {
+    List<Iterator<HostAndPort>> iterators = new ArrayList<>(providers.size());
+    for (HostAndPortProvider provider : providers) {
+      if (routingKey != null && provider instanceof KeyedHostAndPortProvider) {
+        iterators.add(((KeyedHostAndPortProvider) provider).iterator(suppliedAddress, routingKey));
+      } else {
+        iterators.add(provider.iterator(suppliedAddress));
+      }
     }
-
-    return (Iterator<HostAndPort>) concat(iteratorsArray);
+    return concat(iterators.iterator());
   }
 
   @Override
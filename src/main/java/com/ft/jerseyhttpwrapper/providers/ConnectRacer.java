@@ -0,0 +1,188 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races TCP connects to a node and its alternates, happy eyeballs style (RFC 8305): a connect to
+ * the next alternate starts each time the stagger passes without any connect completing, and the
+ * first node to accept a connection wins. A node that fails to connect makes way for the next
+ * alternate at once, without waiting out the stagger.
+ *
+ * <p>The race only establishes which node is reachable; its sockets are closed, and the request
+ * then goes through the connection pool as usual. A node that has won recently is trusted without
+ * racing, so nodes the pool is already connected to cost nothing extra.
+ */
+public class ConnectRacer {
+
+  public static final long DEFAULT_STAGGER_MILLIS = 250;
+  public static final long WARM_MILLIS = 30000;
+
+  private static final int DEFAULT_PORT = 8080;
+
+  private final long staggerNanos;
+  private final long connectTimeoutNanos;
+  private final Ticker ticker;
+
+  private final ConcurrentMap<HostAndPort, Long> wonAt = new ConcurrentHashMap<>();
+
+  /**
+   * @param staggerMillis how long to wait for a connect before also trying the next alternate
+   * @param connectTimeoutMillis how long to race for in all
+   */
+  public ConnectRacer(long staggerMillis, long connectTimeoutMillis) {
+    this(staggerMillis, connectTimeoutMillis, Ticker.systemTicker());
+  }
+
+  ConnectRacer(long staggerMillis, long connectTimeoutMillis, Ticker ticker) {
+    Preconditions.checkArgument(staggerMillis > 0, "staggerMillis must be positive");
+    Preconditions.checkArgument(connectTimeoutMillis > 0, "connectTimeoutMillis must be positive");
+    this.staggerNanos = TimeUnit.MILLISECONDS.toNanos(staggerMillis);
+    this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+    this.ticker = ticker;
+  }
+
+  /** @return true if the node won a race recently enough to be used without racing */
+  public boolean isWarm(HostAndPort node) {
+    Long at = wonAt.get(node);
+    return at != null && ticker.read() - at < TimeUnit.MILLISECONDS.toNanos(WARM_MILLIS);
+  }
+
+  /** Forgets that the node won, so that it has to race again before it is next used. */
+  public void cool(HostAndPort node) {
+    wonAt.remove(node);
+  }
+
+  /**
+   * @param first the preferred node
+   * @param alternates the nodes to try after it, in order; only as many are taken as get raced
+   * @param undecided receives the nodes, other than the one returned, that were taken but had
+   *     neither connected nor failed when the race finished
+   * @return the first node to accept a connection, or {@code first} if none did
+   */
+  public HostAndPort race(
+      HostAndPort first, Iterator<HostAndPort> alternates, Collection<HostAndPort> undecided) {
+    Map<SocketChannel, HostAndPort> racing = new LinkedHashMap<>();
+    HostAndPort winner = null;
+    HostAndPort next = first;
+
+    try (Selector selector = Selector.open()) {
+      long start = ticker.read();
+      long nextStart = start;
+
+      while (winner == null) {
+        long now = ticker.read();
+        if (now - start >= connectTimeoutNanos) {
+          break;
+        }
+
+        if (next != null && (now >= nextStart || racing.isEmpty())) {
+          SocketChannel channel = connect(next, selector);
+          HostAndPort started = next;
+          next = alternates.hasNext() ? alternates.next() : null;
+          if (channel == null) {
+            // failed outright, so on to the next at once
+            nextStart = ticker.read();
+            continue;
+          }
+          racing.put(channel, started);
+          if (channel.isConnected()) {
+            winner = started;
+            break;
+          }
+          nextStart = ticker.read() + staggerNanos;
+          continue;
+        }
+
+        if (racing.isEmpty()) {
+          // every node tried has failed, and there are no more
+          break;
+        }
+
+        long waitNanos = start + connectTimeoutNanos - now;
+        if (next != null) {
+          waitNanos = Math.min(waitNanos, nextStart - now);
+        }
+        selector.select(Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1));
+
+        for (SelectionKey key : selector.selectedKeys()) {
+          SocketChannel channel = (SocketChannel) key.channel();
+          try {
+            if (channel.finishConnect()) {
+              winner = racing.get(channel);
+              break;
+            }
+          } catch (IOException e) {
+            key.cancel();
+            closeQuietly(channel);
+            racing.remove(channel);
+            nextStart = now;
+          }
+        }
+        selector.selectedKeys().clear();
+      }
+    } catch (IOException e) {
+      // no selector, so no race; let the request find out for itself
+    } finally {
+      for (Map.Entry<SocketChannel, HostAndPort> entry : racing.entrySet()) {
+        closeQuietly(entry.getKey());
+      }
+    }
+
+    HostAndPort chosen = winner != null ? winner : first;
+    if (winner != null) {
+      wonAt.put(winner, ticker.read());
+    }
+    for (HostAndPort node : racing.values()) {
+      if (!node.equals(chosen)) {
+        undecided.add(node);
+      }
+    }
+    if (next != null && !next.equals(chosen)) {
+      undecided.add(next);
+    }
+    return chosen;
+  }
+
+  /** @return the channel, connected or connecting, or null if the connect failed outright */
+  private static SocketChannel connect(HostAndPort node, Selector selector) {
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      InetSocketAddress address =
+          new InetSocketAddress(node.getHostText(), node.getPortOrDefault(DEFAULT_PORT));
+      if (!channel.connect(address)) {
+        channel.register(selector, SelectionKey.OP_CONNECT);
+      }
+      return channel;
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(channel);
+      return null;
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // only probing, nothing to lose
+    }
+  }
+}
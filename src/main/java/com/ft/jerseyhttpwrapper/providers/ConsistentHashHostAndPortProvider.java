@@ -0,0 +1,130 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Places the nodes on a hash ring, built once at construction, and routes each routing key to the
+ * first node clockwise of the key's hash. Failover walks on around the ring, so every node is
+ * offered exactly once and a node leaving the ring only remaps the keys it owned.
+ *
+ * <p>Keeping a key on one node lets backends with per-node caches hold each entry once rather than
+ * once per node.
+ */
+public class ConsistentHashHostAndPortProvider extends StaticHostAndPortProvider
+    implements KeyedHostAndPortProvider {
+
+  /** Enough virtual nodes to keep the share of keys per node within a few percent. */
+  public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+  private static final HashFunction HASH = Hashing.murmur3_32();
+
+  private final int[] ringHashes;
+  private final int[] ringOwners;
+  private final List<HostAndPort> nodes;
+  private final Random randomStartGenerator;
+
+  public ConsistentHashHostAndPortProvider(List<HostAndPort> hostsAndPorts) {
+    this(hostsAndPorts, DEFAULT_VIRTUAL_NODES, new Random());
+  }
+
+  public ConsistentHashHostAndPortProvider(
+      List<HostAndPort> hostsAndPorts, int virtualNodes, Random randomStartGenerator) {
+    super(hostsAndPorts);
+    this.nodes = new ArrayList<>(hostsAndPorts);
+    this.randomStartGenerator = randomStartGenerator;
+
+    long[] points = new long[nodes.size() * virtualNodes];
+    for (int node = 0; node < nodes.size(); node++) {
+      String nodeName = hostsAndPorts.get(node).toString();
+      for (int replica = 0; replica < virtualNodes; replica++) {
+        int hash = hash(nodeName + "#" + replica);
+        // pack the hash above the node index so that sorting orders by hash, ties by node
+        points[node * virtualNodes + replica] = ((long) hash << 32) | node;
+      }
+    }
+    Arrays.sort(points);
+
+    ringHashes = new int[points.length];
+    ringOwners = new int[points.length];
+    for (int i = 0; i < points.length; i++) {
+      ringHashes[i] = (int) (points[i] >> 32);
+      ringOwners[i] = (int) points[i];
+    }
+  }
+
+  /** Without a routing key there is no affinity to preserve, so start at a random point. */
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    if (ringOwners.length == 0) {
+      return new RingIterator(0);
+    }
+    return new RingIterator(randomStartGenerator.nextInt(ringOwners.length));
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress, String routingKey) {
+    if (routingKey == null) {
+      return iterator(suppliedAddress);
+    }
+    return new RingIterator(ownerIndex(hash(routingKey)));
+  }
+
+  private int ownerIndex(int keyHash) {
+    int index = Arrays.binarySearch(ringHashes, keyHash);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index == ringHashes.length ? 0 : index;
+  }
+
+  private static int hash(String value) {
+    return HASH.hashString(value, Charsets.UTF_8).asInt();
+  }
+
+  /** Walks clockwise from a starting point, skipping virtual nodes of hosts already offered. */
+  private class RingIterator implements Iterator<HostAndPort> {
+
+    private final boolean[] offered = new boolean[nodes.size()];
+    private int position;
+    private int remaining = nodes.size();
+
+    RingIterator(int start) {
+      this.position = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public HostAndPort next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("No more hosts available");
+      }
+      while (true) {
+        int node = ringOwners[position];
+        position = (position + 1) % ringOwners.length;
+        if (!offered[node]) {
+          offered[node] = true;
+          remaining--;
+          return nodes.get(node);
+        }
+      }
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove method not supported");
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.ft.jerseyhttpwrapper.discovery.MembershipChange;
+import com.ft.jerseyhttpwrapper.discovery.MembershipListener;
+import com.ft.jerseyhttpwrapper.discovery.NodeSnapshot;
+import com.ft.jerseyhttpwrapper.discovery.ServiceDiscovery;
+import com.ft.membership.logging.Operation;
+import com.google.common.collect.Iterators;
+import com.google.common.net.HostAndPort;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Routes to whichever nodes a {@link ServiceDiscovery} last said were members, in random order,
+ * with drained nodes offered only after every active one.
+ *
+ * <p>Changes are folded into a new {@link NodeSnapshot} as they are pushed, and requests read the
+ * latest snapshot without locking. Until anything has been discovered, the requested host is used
+ * as it is.
+ */
+public class DiscoveringHostAndPortProvider implements HostAndPortProvider, MembershipListener {
+
+  private final Random randomIndexGenerator;
+
+  private volatile NodeSnapshot snapshot = NodeSnapshot.EMPTY;
+  private volatile SlowStart slowStart;
+  private volatile WarmConnections warmConnections;
+
+  public DiscoveringHostAndPortProvider(ServiceDiscovery discovery) {
+    this(discovery, new Random());
+  }
+
+  public DiscoveringHostAndPortProvider(ServiceDiscovery discovery, Random randomIndexGenerator) {
+    this.randomIndexGenerator = randomIndexGenerator;
+    discovery.subscribe(this);
+  }
+
+  @Override
+  public synchronized void membershipChanged(List<MembershipChange> changes) {
+    // writers take turns, readers only ever see a complete snapshot
+    NodeSnapshot next = snapshot.apply(changes);
+    SlowStart slowStart = this.slowStart;
+    if (slowStart != null) {
+      // members there on the first push are established, later ones are new or returning
+      if (snapshot.getVersion() == 0) {
+        slowStart.observe(next.getActive());
+      } else {
+        for (MembershipChange change : changes) {
+          if (change.getType() == MembershipChange.Type.ADDED
+              && !snapshot.getActive().contains(change.getNode())) {
+            slowStart.started(change.getNode());
+          } else if (change.getType() == MembershipChange.Type.REMOVED) {
+            slowStart.forget(change.getNode());
+          }
+        }
+      }
+    }
+    snapshot = next;
+  }
+
+  /** @param slowStart ramps up traffic to members as they are added, or null to weight equally */
+  public void setSlowStart(SlowStart slowStart) {
+    this.slowStart = slowStart;
+  }
+
+  /**
+   * @param warmConnections favours members with an idle connection, or null to ignore connections
+   */
+  public void setWarmConnections(WarmConnections warmConnections) {
+    this.warmConnections = warmConnections;
+  }
+
+  public NodeSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    NodeSnapshot current = snapshot;
+    if (current.isEmpty()) {
+      return Collections.singletonList(suppliedAddress).iterator();
+    }
+    return Iterators.concat(
+        new RandomisedHostsIterator(
+            current.getActive(), randomIndexGenerator, slowStart, warmConnections),
+        new RandomisedHostsIterator(current.getDraining(), randomIndexGenerator));
+  }
+
+  @Override
+  public void handleFailedHost(HostAndPort hostAndPort) {
+    final Operation operationJson = operation("handleFailedHost").jsonLayout().initiate(this);
+    operationJson
+        .logIntermediate()
+        .yielding("msg", hostAndPort.getHostText() + " failed to respond correctly")
+        .logInfo();
+  }
+
+  /**
+   * Will return true, as the members are not known in advance.
+   *
+   * @param hostAndPort
+   * @return true
+   */
+  @Override
+  public boolean supports(HostAndPort hostAndPort) {
+    return true;
+  }
+}
@@ -0,0 +1,283 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.ft.membership.logging.Operation;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.naming.NamingException;
+
+/**
+ * Discovers the nodes behind whatever host is requested from its DNS SRV records, and offers them
+ * lowest priority first, in weighted random order within each priority (RFC 2782).
+ *
+ * <p>Records are cached for their TTL. Once it expires, they are refreshed in the background while
+ * requests carry on with the expired records, so no request waits for DNS once a name has been
+ * looked up. Requests for a name never looked up share a single first lookup. If a refresh fails,
+ * the last known records are kept; if there have never been any, the requested host is used as it
+ * is.
+ */
+public class DnsSrvHostAndPortProvider implements HostAndPortProvider {
+
+  /** How long to wait before asking again after a failed lookup. */
+  public static final long RETRY_SECONDS = 5;
+
+  private static final Comparator<SrvRecord> BY_PRIORITY =
+      new Comparator<SrvRecord>() {
+        @Override
+        public int compare(SrvRecord a, SrvRecord b) {
+          return Integer.compare(a.getPriority(), b.getPriority());
+        }
+      };
+
+  private static final Executor REFRESHES = refreshExecutor();
+
+  private final SrvRecordResolver resolver;
+  private final Random random;
+  private final Ticker ticker;
+  private final Executor refreshes;
+
+  private final ConcurrentMap<String, Lookup> lookups = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, FutureTask<Lookup>> firstLookups = new ConcurrentHashMap<>();
+
+  public DnsSrvHostAndPortProvider(SrvRecordResolver resolver) {
+    this(resolver, new Random(), Ticker.systemTicker());
+  }
+
+  public DnsSrvHostAndPortProvider(SrvRecordResolver resolver, Random random, Ticker ticker) {
+    this(resolver, random, ticker, REFRESHES);
+  }
+
+  /** @param refreshes runs the lookups that refresh expired records */
+  public DnsSrvHostAndPortProvider(
+      SrvRecordResolver resolver, Random random, Ticker ticker, Executor refreshes) {
+    this.resolver = resolver;
+    this.random = random;
+    this.ticker = ticker;
+    this.refreshes = refreshes;
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    List<SrvRecord> records = records(suppliedAddress.getHostText());
+    if (records.isEmpty()) {
+      return Collections.singletonList(suppliedAddress).iterator();
+    }
+    return order(records).iterator();
+  }
+
+  @Override
+  public void handleFailedHost(HostAndPort hostAndPort) {
+    final Operation operationJson =
+        Operation.operation("handleFailedHost").jsonLayout().initiate(this);
+    operationJson
+        .logIntermediate()
+        .yielding("msg", "failed to respond correctly " + hostAndPort.getHostText())
+        .logInfo();
+  }
+
+  /**
+   * Will return true, as there is no fixed set of routes for a dynamic provider.
+   *
+   * @param hostAndPort
+   * @return true
+   */
+  @Override
+  public boolean supports(HostAndPort hostAndPort) {
+    return true;
+  }
+
+  private List<SrvRecord> records(String name) {
+    Lookup lookup = lookups.get(name);
+    if (lookup == null) {
+      return firstLookup(name).records;
+    }
+
+    if (ticker.read() - lookup.expiresAtNanos >= 0
+        && lookup.refreshing.compareAndSet(false, true)) {
+      refresh(name, lookup);
+    }
+    return lookup.records;
+  }
+
+  /** Looks the name up on this thread, or waits for the request already doing so. */
+  private Lookup firstLookup(final String name) {
+    FutureTask<Lookup> task =
+        new FutureTask<>(
+            new Callable<Lookup>() {
+              @Override
+              public Lookup call() {
+                Lookup published = lookups.get(name);
+                if (published != null) {
+                  return published;
+                }
+                Lookup lookup = lookup(name, Collections.<SrvRecord>emptyList());
+                lookups.put(name, lookup);
+                return lookup;
+              }
+            });
+    FutureTask<Lookup> running = firstLookups.putIfAbsent(name, task);
+    if (running == null) {
+      running = task;
+      try {
+        task.run();
+      } finally {
+        // published or failed; either way the next request needing it starts afresh
+        firstLookups.remove(name, task);
+      }
+    }
+
+    try {
+      return Uninterruptibles.getUninterruptibly(running);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private void refresh(final String name, final Lookup stale) {
+    try {
+      refreshes.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                lookups.put(name, lookup(name, stale.records));
+              } catch (RuntimeException e) {
+                operation("lookupSrv")
+                    .with("argument", name)
+                    .jsonLayout()
+                    .initiate(DnsSrvHostAndPortProvider.this)
+                    .logIntermediate()
+                    .yielding("msg", "Unable to look up SRV records for " + name)
+                    .logWarn();
+              } finally {
+                // so that a resolver that throws does not stop the records ever being refreshed
+                stale.refreshing.set(false);
+              }
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      stale.refreshing.set(false);
+    }
+  }
+
+  private Lookup lookup(String name, List<SrvRecord> previous) {
+    final Operation resultOperation =
+        operation("lookupSrv").with("argument", name).jsonLayout().initiate(this);
+    try {
+      List<SrvRecord> records = new ArrayList<>();
+      long ttlSeconds = Long.MAX_VALUE;
+      for (SrvRecord record : resolver.lookup(name)) {
+        ttlSeconds = Math.min(ttlSeconds, record.getTtlSeconds());
+        if (record.isAvailable()) {
+          records.add(record);
+        }
+      }
+      if (ttlSeconds == Long.MAX_VALUE) {
+        ttlSeconds = RETRY_SECONDS;
+      }
+      Collections.sort(records, BY_PRIORITY);
+      return new Lookup(records, expiry(ttlSeconds));
+
+    } catch (NamingException e) {
+      resultOperation
+          .logIntermediate()
+          .yielding("msg", "Unable to look up SRV records for " + name)
+          .logWarn();
+      return new Lookup(previous, expiry(RETRY_SECONDS));
+    }
+  }
+
+  private long expiry(long seconds) {
+    return ticker.read() + TimeUnit.SECONDS.toNanos(seconds);
+  }
+
+  /** Weighted selection within each priority, as described in RFC 2782. */
+  private List<HostAndPort> order(List<SrvRecord> byPriority) {
+    List<HostAndPort> ordered = new ArrayList<>(byPriority.size());
+    int start = 0;
+    while (start < byPriority.size()) {
+      int end = start;
+      while (end < byPriority.size()
+          && byPriority.get(end).getPriority() == byPriority.get(start).getPriority()) {
+        end++;
+      }
+
+      List<SrvRecord> remaining = new ArrayList<>(byPriority.subList(start, end));
+      // zero weight records go first, so they are only chosen when the draw is exactly zero
+      Collections.sort(
+          remaining,
+          new Comparator<SrvRecord>() {
+            @Override
+            public int compare(SrvRecord a, SrvRecord b) {
+              return Boolean.compare(a.getWeight() != 0, b.getWeight() != 0);
+            }
+          });
+
+      while (!remaining.isEmpty()) {
+        int totalWeight = 0;
+        for (SrvRecord record : remaining) {
+          totalWeight += record.getWeight();
+        }
+        int draw = random.nextInt(totalWeight + 1);
+
+        int runningSum = 0;
+        for (Iterator<SrvRecord> it = remaining.iterator(); it.hasNext(); ) {
+          SrvRecord record = it.next();
+          runningSum += record.getWeight();
+          if (runningSum >= draw) {
+            ordered.add(record.toHostAndPort());
+            it.remove();
+            break;
+          }
+        }
+      }
+      start = end;
+    }
+    return ordered;
+  }
+
+  private static Executor refreshExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("dns-srv-refresh-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static class Lookup {
+    final List<SrvRecord> records;
+    final long expiresAtNanos;
+    final AtomicBoolean refreshing = new AtomicBoolean();
+
+    Lookup(List<SrvRecord> records, long expiresAtNanos) {
+      this.records = Collections.unmodifiableList(records);
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+}
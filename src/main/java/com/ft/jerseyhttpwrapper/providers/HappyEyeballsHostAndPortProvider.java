@@ -0,0 +1,84 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.net.HostAndPort;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Offers the nodes of a provider that expands hostnames to IPs in the order they accept
+ * connections, using a {@link ConnectRacer}, so that a blackholed IP costs a request the racer's
+ * stagger rather than the whole connect timeout.
+ *
+ * <p>Nodes that were still connecting when another won are offered after every other node, and
+ * nodes that refused the connection are not offered at all. If no node connected, the node the race
+ * started with is offered anyway, so that the request reports the failure. A node with no
+ * alternates left to race against is offered without racing, since a probe connect would only
+ * double its handshakes.
+ */
+public class HappyEyeballsHostAndPortProvider implements HostAndPortProvider {
+
+  private final HostAndPortProvider delegate;
+  private final ConnectRacer racer;
+
+  public HappyEyeballsHostAndPortProvider(HostAndPortProvider delegate, ConnectRacer racer) {
+    this.delegate = delegate;
+    this.racer = racer;
+  }
+
+  @Override
+  public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
+    return new RacingIterator(delegate.iterator(suppliedAddress));
+  }
+
+  @Override
+  public void handleFailedHost(HostAndPort hostAndPort) {
+    racer.cool(hostAndPort);
+    delegate.handleFailedHost(hostAndPort);
+  }
+
+  @Override
+  public boolean supports(HostAndPort hostAndPort) {
+    return delegate.supports(hostAndPort);
+  }
+
+  public HostAndPortProvider getDelegate() {
+    return delegate;
+  }
+
+  private class RacingIterator implements Iterator<HostAndPort> {
+
+    private final Iterator<HostAndPort> candidates;
+    private final Deque<HostAndPort> undecided = new ArrayDeque<>();
+
+    RacingIterator(Iterator<HostAndPort> candidates) {
+      this.candidates = candidates;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return candidates.hasNext() || !undecided.isEmpty();
+    }
+
+    @Override
+    public HostAndPort next() {
+      if (candidates.hasNext()) {
+        HostAndPort candidate = candidates.next();
+        if (!candidates.hasNext() || racer.isWarm(candidate)) {
+          return candidate;
+        }
+        return racer.race(candidate, candidates, undecided);
+      }
+      if (!undecided.isEmpty()) {
+        return undecided.poll();
+      }
+      throw new NoSuchElementException("No more hosts available");
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove method not supported");
+    }
+  }
+}
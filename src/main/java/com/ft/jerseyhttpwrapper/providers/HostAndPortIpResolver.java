@@ -1,54 +1,177 @@
 package com.ft.jerseyhttpwrapper.providers;
 
 import static com.ft.membership.logging.Operation.operation;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.ft.membership.logging.Operation;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * resolves the IP Addresses of a list of HostAndPort, returning a unique list of IP-Addressed
  * HostAndPort.
+ *
+ * <p>A hostname that has been resolved before resolves at once to the addresses it last resolved
+ * to, and once those are older than the refresh interval they are looked up again in the
+ * background. Only hostnames that have never been resolved are waited for: they are looked up in
+ * parallel, and the lookups share one time budget. A hostname that cannot be resolved within it, or
+ * at all, resolves to itself. A lookup that misses the budget carries on in the background, and a
+ * hostname is never looked up more than once at a time, so a hung resolver does not pile up
+ * threads.
  */
 public class HostAndPortIpResolver {
 
+  public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+  public static final long DEFAULT_REFRESH_MILLIS = 1000;
+
   private static final int NODES_PER_HOSTNAME_GUESS = 6;
+  private static final int MAX_LOOKUP_THREADS = 8;
+
+  private static final ExecutorService LOOKUPS = lookupExecutor();
 
   private final HostToIpMapper hostMapper;
+  private final long timeoutMillis;
+  private final long refreshNanos;
+
+  private final ConcurrentMap<String, Resolved> lastKnownGood = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Future<InetAddress[]>> inFlight = new ConcurrentHashMap<>();
 
   public HostAndPortIpResolver(HostToIpMapper hostMapper) {
+    this(hostMapper, DEFAULT_TIMEOUT_MILLIS, DEFAULT_REFRESH_MILLIS);
+  }
+
+  public HostAndPortIpResolver(HostToIpMapper hostMapper, long timeoutMillis) {
+    this(hostMapper, timeoutMillis, DEFAULT_REFRESH_MILLIS);
+  }
+
+  /**
+   * @param hostMapper looks up the addresses of a hostname
+   * @param timeoutMillis how long a call to {@link #resolveAll(List)} waits for the lookups of
+   *     hostnames that have never been resolved
+   * @param refreshMillis how old the addresses of a hostname get before they are looked up again
+   */
+  public HostAndPortIpResolver(HostToIpMapper hostMapper, long timeoutMillis, long refreshMillis) {
+    checkArgument(timeoutMillis > 0, "timeoutMillis must be positive");
+    checkArgument(refreshMillis >= 0, "refreshMillis must not be negative");
     this.hostMapper = checkNotNull(hostMapper);
+    this.timeoutMillis = timeoutMillis;
+    this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
   }
 
   public List<HostAndPort> resolveAll(List<HostAndPort> hostAndPorts) {
+    Map<String, Future<InetAddress[]>> lookups = new HashMap<>();
+    for (HostAndPort hostAndPort : hostAndPorts) {
+      String hostname = hostAndPort.getHostText();
+      if (lookups.containsKey(hostname)) {
+        continue;
+      }
+      Resolved resolved = lastKnownGood.get(hostname);
+      if (resolved == null) {
+        lookups.put(hostname, lookup(hostname));
+      } else {
+        if (System.nanoTime() - resolved.atNanos >= refreshNanos) {
+          lookup(hostname);
+        }
+        lookups.put(hostname, Futures.immediateFuture(resolved.addresses));
+      }
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
     Set<HostAndPort> resolvedHostAndPorts =
         new LinkedHashSet<>(hostAndPorts.size() * NODES_PER_HOSTNAME_GUESS);
     for (HostAndPort hostAndPort : hostAndPorts) {
-      resolvedHostAndPorts.addAll(resolve(hostAndPort));
+      String hostname = hostAndPort.getHostText();
+      InetAddress[] inetAddresses = await(hostname, lookups.get(hostname), deadline);
+      if (inetAddresses == null) {
+        resolvedHostAndPorts.add(hostAndPort);
+      } else {
+        resolvedHostAndPorts.addAll(mapAddressesAcrossPorts(hostAndPort, inetAddresses));
+      }
     }
     return new ArrayList<>(resolvedHostAndPorts);
   }
 
   public List<HostAndPort> resolve(HostAndPort hostAndPort) {
-    final Operation resultOperation =
-        operation("resolve")
-            .with("argument", hostAndPort.getHostText())
-            .jsonLayout()
-            .initiate(this);
+    return resolveAll(Collections.singletonList(hostAndPort));
+  }
+
+  private Future<InetAddress[]> lookup(final String hostname) {
+    Future<InetAddress[]> pending = inFlight.get(hostname);
+    if (pending != null) {
+      return pending;
+    }
+
+    FutureTask<InetAddress[]> task =
+        new FutureTask<>(
+            new Callable<InetAddress[]>() {
+              @Override
+              public InetAddress[] call() throws UnknownHostException {
+                try {
+                  InetAddress[] inetAddresses = hostMapper.mapToIps(hostname);
+                  lastKnownGood.put(hostname, new Resolved(inetAddresses, System.nanoTime()));
+                  return inetAddresses;
+                } catch (UnknownHostException | RuntimeException e) {
+                  operation("resolve")
+                      .with("argument", hostname)
+                      .jsonLayout()
+                      .initiate(HostAndPortIpResolver.this)
+                      .logIntermediate()
+                      .yielding("msg", "Unable to resolve host " + hostname)
+                      .yielding("fallback", fallbackOf(hostname))
+                      .logWarn();
+                  throw e;
+                } finally {
+                  inFlight.remove(hostname);
+                }
+              }
+            });
+
+    pending = inFlight.putIfAbsent(hostname, task);
+    if (pending != null) {
+      return pending;
+    }
+    LOOKUPS.execute(task);
+    return task;
+  }
+
+  /** @return the addresses of the hostname, or null if it has never been resolved */
+  private InetAddress[] await(String hostname, Future<InetAddress[]> lookup, long deadline) {
+    String problem;
     try {
-      final InetAddress[] inetAddresses = hostMapper.mapToIps(hostAndPort.getHostText());
-      return mapAddressesAcrossPorts(hostAndPort, inetAddresses);
-
-    } catch (UnknownHostException e) {
-      resultOperation
-          .logIntermediate()
-          .yielding("msg", "Unable to resolve host " + hostAndPort.getHostText())
-          .logWarn();
-      return Collections.singletonList(hostAndPort);
+      return lookup.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      // the lookup logged it
+      return lastKnownAddresses(hostname);
+    } catch (TimeoutException e) {
+      problem = "Timed out resolving host " + hostname;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      problem = "Interrupted resolving host " + hostname;
     }
+
+    operation("resolve")
+        .with("argument", hostname)
+        .jsonLayout()
+        .initiate(this)
+        .logIntermediate()
+        .yielding("msg", problem)
+        .yielding("fallback", fallbackOf(hostname))
+        .logWarn();
+    return lastKnownAddresses(hostname);
+  }
+
+  private InetAddress[] lastKnownAddresses(String hostname) {
+    Resolved resolved = lastKnownGood.get(hostname);
+    return resolved == null ? null : resolved.addresses;
+  }
+
+  private String fallbackOf(String hostname) {
+    return lastKnownGood.containsKey(hostname) ? "last known addresses" : "unresolved";
   }
 
   private List<HostAndPort> mapAddressesAcrossPorts(
@@ -59,4 +182,27 @@ public class HostAndPortIpResolver {
     }
     return hostAndPorts;
   }
+
+  private static ExecutorService lookupExecutor() {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            MAX_LOOKUP_THREADS,
+            MAX_LOOKUP_THREADS,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("dns-lookup-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static class Resolved {
+    final InetAddress[] addresses;
+    final long atNanos;
+
+    Resolved(InetAddress[] addresses, long atNanos) {
+      this.addresses = addresses;
+      this.atNanos = atNanos;
+    }
+  }
 }
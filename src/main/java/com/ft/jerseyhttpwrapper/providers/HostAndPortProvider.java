@@ -15,7 +15,8 @@ public interface HostAndPortProvider {
 
   /**
    * Provides a feedback mechanism for the provider so that it can remove nodes from it's pool or
-   * change load balancing priorities
+   * change load balancing priorities. Called concurrently by every request in flight, so
+   * implementations must be thread-safe; sessions do not lock around it.
    *
    * @param hostAndPort an endpoint which has encountered an error condition
    */
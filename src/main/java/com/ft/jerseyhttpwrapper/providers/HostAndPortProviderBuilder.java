@@ -14,6 +14,10 @@ public class HostAndPortProviderBuilder {
   private static final NullHostAndPortProvider NULL_PROVIDER = new NullHostAndPortProvider();
 
   private final HostAndPortIpResolver hostAndPortIpResolver;
+  private SrvRecordResolver srvRecordResolver = new SrvRecordResolver();
+  private SlowStart slowStart;
+  private ConnectRacer connectRacer;
+  private WarmConnections warmConnections;
 
   private ResilienceStrategy strategy = DEFAULT_RESILIENCE_STRATEGY;
   private boolean useAdminPorts;
@@ -28,6 +32,29 @@ public class HostAndPortProviderBuilder {
     return this;
   }
 
+  public HostAndPortProviderBuilder withSrvRecordResolver(SrvRecordResolver srvRecordResolver) {
+    this.srvRecordResolver = srvRecordResolver;
+    return this;
+  }
+
+  /** Applies to the load balanced strategies, which choose nodes at random. */
+  public HostAndPortProviderBuilder withSlowStart(SlowStart slowStart) {
+    this.slowStart = slowStart;
+    return this;
+  }
+
+  /** Applies to the load balanced strategies, which choose nodes at random. */
+  public HostAndPortProviderBuilder withWarmConnections(WarmConnections warmConnections) {
+    this.warmConnections = warmConnections;
+    return this;
+  }
+
+  /** Applies to the strategies that resolve hostnames to IPs. */
+  public HostAndPortProviderBuilder withConnectRacer(ConnectRacer connectRacer) {
+    this.connectRacer = connectRacer;
+    return this;
+  }
+
   public HostAndPortProviderBuilder usingAdminPorts(boolean useAdminPorts) {
     this.useAdminPorts = useAdminPorts;
     return this;
@@ -45,6 +72,7 @@ public class HostAndPortProviderBuilder {
 
     switch (strategy) {
       case DYNAMIC_RANDOM_IP_STRATEGY:
+      case DNS_SRV_STRATEGY:
         break;
       default:
         if (nodes == null) {
@@ -59,17 +87,39 @@ public class HostAndPortProviderBuilder {
       case SIMPLE_FAILOVER_STRATEGY:
         return new SimpleHostAndPortProvider(nodes);
       case LOAD_BALANCED_STRATEGY:
-        return new RandomHostAndPortProvider(nodes);
+        return balancing(new RandomHostAndPortProvider(nodes));
       case LOAD_BALANCED_IP_STRATEGY:
-        return new RandomIpHostAndPortProvider(nodes, hostAndPortIpResolver);
+        return racingConnects(
+            balancing(new RandomIpHostAndPortProvider(nodes, hostAndPortIpResolver)));
+      case CONSISTENT_HASH_STRATEGY:
+        return new ConsistentHashHostAndPortProvider(nodes);
       case DYNAMIC_RANDOM_IP_STRATEGY:
         if (nodes != null) {
           throw new IllegalArgumentException(
               "You should not provide default routes for use with a dynamic strategy");
         }
-        return new DynamicOrderedDNSIpHostAndPortProvider(hostAndPortIpResolver);
+        return racingConnects(new DynamicOrderedDNSIpHostAndPortProvider(hostAndPortIpResolver));
+      case DNS_SRV_STRATEGY:
+        if (nodes != null) {
+          throw new IllegalArgumentException(
+              "You should not provide default routes for use with a dynamic strategy");
+        }
+        return new DnsSrvHostAndPortProvider(srvRecordResolver);
       default:
         throw new IllegalArgumentException("Unknown strategy " + strategy);
     }
   }
+
+  private HostAndPortProvider racingConnects(HostAndPortProvider provider) {
+    if (connectRacer == null) {
+      return provider;
+    }
+    return new HappyEyeballsHostAndPortProvider(provider, connectRacer);
+  }
+
+  private HostAndPortProvider balancing(RandomHostAndPortProvider provider) {
+    provider.setSlowStart(slowStart);
+    provider.setWarmConnections(warmConnections);
+    return provider;
+  }
 }
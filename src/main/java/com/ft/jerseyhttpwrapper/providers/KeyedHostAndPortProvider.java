@@ -0,0 +1,22 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.net.HostAndPort;
+import java.util.Iterator;
+
+/**
+ * A provider whose choice of endpoints can be steered by a routing key taken from the request, so
+ * that requests for the same key are consistently sent to the same node.
+ *
+ * @see ConsistentHashHostAndPortProvider
+ */
+public interface KeyedHostAndPortProvider extends HostAndPortProvider {
+
+  /**
+   * Provides valid alternates for the given endpoint, ordered by affinity to the routing key.
+   *
+   * @param suppliedAddress whatever endpoint is known the the application
+   * @param routingKey the key extracted from the request
+   * @return valid alternates for the given endpoint, the preferred node for the key first
+   */
+  Iterator<HostAndPort> iterator(HostAndPort suppliedAddress, String routingKey);
+}
@@ -0,0 +1,101 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.net.HostAndPort;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records which nodes are known to be unavailable. Shared between whatever learns about node health
+ * (e.g. an active health checker) and the providers that route requests, so that the request path
+ * skips dead nodes instead of discovering them by timing out.
+ *
+ * <p>Nodes are available unless marked otherwise. All methods are safe for concurrent use and never
+ * block.
+ */
+public class NodeAvailability {
+
+  /** Told when a node leaves or rejoins rotation, e.g. to count ejections. */
+  public interface Listener {
+
+    void markedDown(HostAndPort node);
+
+    void markedUp(HostAndPort node);
+  }
+
+  private final ConcurrentMap<HostAndPort, Long> unavailableUntil = new ConcurrentHashMap<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public boolean isAvailable(HostAndPort node) {
+    Long until = unavailableUntil.get(node);
+    return until == null || until <= System.currentTimeMillis();
+  }
+
+  /**
+   * Takes the node out of rotation until it is marked up again.
+   *
+   * @param node the node as presented by the provider
+   */
+  public void markDown(HostAndPort node) {
+    Long previous = unavailableUntil.put(node, Long.MAX_VALUE);
+    if (previous == null || previous != Long.MAX_VALUE) {
+      for (Listener listener : listeners) {
+        listener.markedDown(node);
+      }
+    }
+  }
+
+  /**
+   * Returns the node to rotation.
+   *
+   * @param node the node as presented by the provider
+   */
+  public void markUp(HostAndPort node) {
+    if (unavailableUntil.remove(node) != null) {
+      for (Listener listener : listeners) {
+        listener.markedUp(node);
+      }
+    }
+  }
+
+  /**
+   * Takes the node out of rotation for a while, because it asked for no more requests until then.
+   * Listeners are not told, as the node has not failed. A node already marked down stays down, and
+   * a longer park is not shortened.
+   *
+   * @param node the node as presented by the provider
+   * @param millis how long to keep it out of rotation
+   */
+  public void park(HostAndPort node, long millis) {
+    long until = System.currentTimeMillis() + millis;
+    while (true) {
+      Long previous = unavailableUntil.get(node);
+      if (previous == null) {
+        if (unavailableUntil.putIfAbsent(node, until) == null) {
+          return;
+        }
+      } else if (previous >= until || unavailableUntil.replace(node, previous, until)) {
+        return;
+      }
+    }
+  }
+
+  /** @return true if the node is parked, rather than marked down, and its time is not yet up */
+  public boolean isParked(HostAndPort node) {
+    return parkedForMillis(node) > 0;
+  }
+
+  /** @return how long the node stays parked for, or 0 if it is not parked */
+  public long parkedForMillis(HostAndPort node) {
+    Long until = unavailableUntil.get(node);
+    if (until == null || until == Long.MAX_VALUE) {
+      return 0;
+    }
+    return Math.max(0, until - System.currentTimeMillis());
+  }
+}
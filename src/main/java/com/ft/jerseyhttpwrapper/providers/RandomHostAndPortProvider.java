@@ -8,6 +8,8 @@ import java.util.Random;
 public class RandomHostAndPortProvider extends StaticHostAndPortProvider {
 
   private final Random randomIndexGenerator;
+  private SlowStart slowStart;
+  private WarmConnections warmConnections;
 
   public RandomHostAndPortProvider(List<HostAndPort> hostNames) {
     super(hostNames);
@@ -19,8 +21,22 @@ public class RandomHostAndPortProvider extends StaticHostAndPortProvider {
     this.randomIndexGenerator = randomIndexGenerator;
   }
 
+  /** @param slowStart ramps up traffic to nodes as they join, or null to weight nodes equally */
+  public void setSlowStart(SlowStart slowStart) {
+    this.slowStart = slowStart;
+  }
+
+  /** @param warmConnections favours nodes with an idle connection, or null to ignore connections */
+  public void setWarmConnections(WarmConnections warmConnections) {
+    this.warmConnections = warmConnections;
+  }
+
   @Override
   public Iterator<HostAndPort> iterator(HostAndPort suppliedAddress) {
-    return new RandomisedHostsIterator(getHostNames(), randomIndexGenerator);
+    List<HostAndPort> hostNames = getHostNames();
+    if (slowStart != null) {
+      slowStart.observe(hostNames);
+    }
+    return new RandomisedHostsIterator(hostNames, randomIndexGenerator, slowStart, warmConnections);
   }
 }
@@ -17,10 +17,33 @@ class RandomisedHostsIterator implements Iterator<HostAndPort> {
   ArrayList<HostAndPort> clonedHosts;
 
   private final Random randomIndexGenerator;
+  private final SlowStart slowStart;
+  private final WarmConnections warmConnections;
 
   public RandomisedHostsIterator(List<HostAndPort> hosts, Random randomSource) {
+    this(hosts, randomSource, null);
+  }
+
+  /** @param slowStart weights nodes that are ramping up, or null to choose uniformly */
+  public RandomisedHostsIterator(
+      List<HostAndPort> hosts, Random randomSource, SlowStart slowStart) {
+    this(hosts, randomSource, slowStart, null);
+  }
+
+  /**
+   * @param slowStart weights nodes that are ramping up, or null to choose uniformly
+   * @param warmConnections makes each choice the better of two random draws, preferring a node with
+   *     an idle connection, or null to take a single draw
+   */
+  public RandomisedHostsIterator(
+      List<HostAndPort> hosts,
+      Random randomSource,
+      SlowStart slowStart,
+      WarmConnections warmConnections) {
     clonedHosts = new ArrayList<HostAndPort>(hosts);
     randomIndexGenerator = randomSource;
+    this.slowStart = slowStart != null && slowStart.isRamping() ? slowStart : null;
+    this.warmConnections = warmConnections;
   }
 
   @Override
@@ -33,8 +56,40 @@ class RandomisedHostsIterator implements Iterator<HostAndPort> {
     if (!hasNext()) {
       throw new NoSuchElementException("No more hosts available");
     }
-    int randomIndex = randomIndexGenerator.nextInt(clonedHosts.size());
-    return clonedHosts.remove(randomIndex);
+    int index = draw();
+    if (warmConnections != null
+        && clonedHosts.size() > 1
+        && !warmConnections.hasIdleConnection(clonedHosts.get(index))) {
+      // two choices rather than always the warmest, so cold nodes still get their turn to warm up
+      int alternative = draw();
+      if (warmConnections.hasIdleConnection(clonedHosts.get(alternative))) {
+        index = alternative;
+      }
+    }
+    return clonedHosts.remove(index);
+  }
+
+  private int draw() {
+    if (slowStart != null) {
+      return weightedIndex();
+    }
+    return randomIndexGenerator.nextInt(clonedHosts.size());
+  }
+
+  private int weightedIndex() {
+    double[] cumulative = new double[clonedHosts.size()];
+    double total = 0;
+    for (int i = 0; i < cumulative.length; i++) {
+      total += slowStart.weight(clonedHosts.get(i));
+      cumulative[i] = total;
+    }
+    double draw = randomIndexGenerator.nextDouble() * total;
+    for (int i = 0; i < cumulative.length - 1; i++) {
+      if (draw < cumulative[i]) {
+        return i;
+      }
+    }
+    return cumulative.length - 1;
   }
 
   @Override
@@ -28,7 +28,7 @@ public class SimpleEndpointConfigurationToHostPortConverter {
     return Lists.newArrayList(nodes);
   }
 
-  private HostAndPort convert(final SimpleEndpointConfiguration endpointConfiguration) {
+  public HostAndPort convert(final SimpleEndpointConfiguration endpointConfiguration) {
     return HostAndPort.fromParts(
         endpointConfiguration.getHost(),
         useAdminPorts ? endpointConfiguration.getAdminPort() : endpointConfiguration.getPort());
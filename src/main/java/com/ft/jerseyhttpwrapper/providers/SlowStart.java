@@ -0,0 +1,115 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ramps up the share of traffic sent to a node that has just joined, or rejoined after being marked
+ * down, so that a freshly started backend with a cold JIT and empty caches is not hit with full
+ * load at once. A node's weight grows linearly from {@link #MIN_WEIGHT} to 1 over the window.
+ *
+ * <p>A node joins when it is first {@link #observe observed} after the first observation (nodes
+ * present from the start are established) or when it is marked up again. A node that leaves the
+ * observed nodes is forgotten, so that it joins afresh if it comes back, e.g. an IP that drops out
+ * of DNS and returns. Once no node is ramping, {@link #isRamping()} is a single volatile read.
+ */
+public class SlowStart implements NodeAvailability.Listener {
+
+  /** the share of a full weight a node gets as soon as it joins */
+  public static final double MIN_WEIGHT = 0.1;
+
+  private final long windowNanos;
+  private final Ticker ticker;
+
+  private final ConcurrentMap<HostAndPort, Long> startedAt = new ConcurrentHashMap<>();
+  private volatile boolean baselined;
+  private final AtomicLong rampingUntil;
+
+  public SlowStart(long window, TimeUnit unit) {
+    this(window, unit, Ticker.systemTicker());
+  }
+
+  public SlowStart(long window, TimeUnit unit, Ticker ticker) {
+    Preconditions.checkArgument(window > 0, "window must be positive");
+    this.windowNanos = unit.toNanos(window);
+    this.ticker = ticker;
+    this.rampingUntil = new AtomicLong(ticker.read());
+  }
+
+  /** Starts ramping the node up from now. */
+  public void started(HostAndPort node) {
+    long now = ticker.read();
+    startedAt.put(node, now);
+    rampUntil(now + windowNanos);
+  }
+
+  /** Forgets the node, so that it is ramped up again if it is seen again. */
+  public void forget(HostAndPort node) {
+    startedAt.remove(node);
+  }
+
+  /**
+   * Notes the nodes currently on offer, ramping up any that have not been seen before and
+   * forgetting any no longer among them.
+   */
+  public void observe(Collection<HostAndPort> nodes) {
+    if (!baselined) {
+      for (HostAndPort node : nodes) {
+        startedAt.putIfAbsent(node, Long.MIN_VALUE);
+      }
+      baselined = true;
+      return;
+    }
+    for (HostAndPort node : nodes) {
+      if (!startedAt.containsKey(node) && startedAt.putIfAbsent(node, ticker.read()) == null) {
+        rampUntil(ticker.read() + windowNanos);
+      }
+    }
+    if (startedAt.size() > nodes.size()) {
+      // only when some node has left, as every node on offer is known by now
+      startedAt.keySet().retainAll(new HashSet<>(nodes));
+    }
+  }
+
+  public boolean isRamping() {
+    return ticker.read() - rampingUntil.get() < 0;
+  }
+
+  /** extends the ramp to at least {@code until}, never shortening one a racing join set */
+  private void rampUntil(long until) {
+    while (true) {
+      long current = rampingUntil.get();
+      if (until - current <= 0 || rampingUntil.compareAndSet(current, until)) {
+        return;
+      }
+    }
+  }
+
+  /** @return between {@link #MIN_WEIGHT} and 1, for a node part way through its window */
+  public double weight(HostAndPort node) {
+    Long started = startedAt.get(node);
+    if (started == null || started == Long.MIN_VALUE) {
+      return 1;
+    }
+    long elapsed = ticker.read() - started;
+    if (elapsed >= windowNanos) {
+      return 1;
+    }
+    return Math.max(MIN_WEIGHT, elapsed / (double) windowNanos);
+  }
+
+  @Override
+  public void markedDown(HostAndPort node) {}
+
+  @Override
+  public void markedUp(HostAndPort node) {
+    started(node);
+  }
+}
@@ -0,0 +1,67 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+
+/** One DNS SRV record: a target host and port, with its priority and weight (RFC 2782). */
+public final class SrvRecord {
+
+  private final int priority;
+  private final int weight;
+  private final int port;
+  private final String target;
+  private final long ttlSeconds;
+
+  public SrvRecord(int priority, int weight, int port, String target, long ttlSeconds) {
+    Preconditions.checkArgument(priority >= 0, "priority must not be negative");
+    Preconditions.checkArgument(weight >= 0, "weight must not be negative");
+    Preconditions.checkNotNull(target, "target is mandatory");
+    this.priority = priority;
+    this.weight = weight;
+    this.port = port;
+    // DNS names are absolute, HTTP hosts are not
+    this.target = target.endsWith(".") ? target.substring(0, target.length() - 1) : target;
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+
+  public int getWeight() {
+    return weight;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public long getTtlSeconds() {
+    return ttlSeconds;
+  }
+
+  /** @return false for the "." target, which says the service is deliberately not offered */
+  public boolean isAvailable() {
+    return !target.isEmpty();
+  }
+
+  public HostAndPort toHostAndPort() {
+    return HostAndPort.fromParts(target, port);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("priority", priority)
+        .add("weight", weight)
+        .add("port", port)
+        .add("target", target)
+        .add("ttlSeconds", ttlSeconds)
+        .toString();
+  }
+}
@@ -0,0 +1,68 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+/**
+ * Looks up DNS SRV records using the JDK's JNDI DNS provider and the system's name servers; used to
+ * allow mocking of SRV lookup.
+ *
+ * <p>JNDI does not expose record TTLs, so every record is given {@link #DEFAULT_TTL_SECONDS}.
+ * Subclasses backed by a resolver that does report TTLs should return them instead.
+ */
+public class SrvRecordResolver {
+
+  public static final long DEFAULT_TTL_SECONDS = 30;
+
+  private static final String SRV = "SRV";
+
+  public List<SrvRecord> lookup(String name) throws NamingException {
+    Hashtable<String, String> env = new Hashtable<>();
+    env.put(DirContext.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+    env.put(DirContext.PROVIDER_URL, "dns:");
+
+    DirContext context = new InitialDirContext(env);
+    try {
+      Attributes attributes = context.getAttributes(name, new String[] {SRV});
+      Attribute srv = attributes.get(SRV);
+      if (srv == null) {
+        return Collections.emptyList();
+      }
+
+      List<SrvRecord> records = new ArrayList<>(srv.size());
+      NamingEnumeration<?> values = srv.getAll();
+      while (values.hasMore()) {
+        records.add(parse(values.next().toString()));
+      }
+      return records;
+    } finally {
+      context.close();
+    }
+  }
+
+  /** Parses the presentation format JNDI returns: {@code priority weight port target}. */
+  static SrvRecord parse(String value) throws NamingException {
+    String[] fields = value.trim().split("\\s+");
+    if (fields.length != 4) {
+      throw new NamingException("Malformed SRV record: " + value);
+    }
+    try {
+      return new SrvRecord(
+          Integer.parseInt(fields[0]),
+          Integer.parseInt(fields[1]),
+          Integer.parseInt(fields[2]),
+          fields[3],
+          DEFAULT_TTL_SECONDS);
+    } catch (IllegalArgumentException e) {
+      throw new NamingException("Malformed SRV record: " + value);
+    }
+  }
+}
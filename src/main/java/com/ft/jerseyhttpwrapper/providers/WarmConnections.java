@@ -0,0 +1,18 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import com.google.common.net.HostAndPort;
+
+/**
+ * Tells load balancing providers which nodes the client already has an idle connection to, so that
+ * they can favour nodes that will not cost a fresh connection.
+ */
+public interface WarmConnections {
+
+  /**
+   * Called on the request path, so it must be cheap and thread-safe.
+   *
+   * @param node a node the provider might choose
+   * @return true if a pooled connection to the node is idle and ready for use
+   */
+  boolean hasIdleConnection(HostAndPort node);
+}
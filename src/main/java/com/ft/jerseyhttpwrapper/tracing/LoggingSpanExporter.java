@@ -0,0 +1,31 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import java.util.List;
+
+/** Writes each span as a structured log line, for log based tracing pipelines. */
+public class LoggingSpanExporter implements SpanExporter {
+
+  @Override
+  public void export(List<Span> spans) {
+    for (Span span : spans) {
+      operation("span")
+          .with("trace_id", span.getTraceId())
+          .with("span_id", span.getSpanId())
+          .with("parent_span_id", span.getParentSpanId())
+          .with("span_name", span.getName())
+          .with("short_name", span.getClient())
+          .with("node", span.getNode())
+          .with("start_epoch_micros", span.getStartEpochMicros())
+          .with("duration_nanos", span.getDurationNanos())
+          .with("status", span.getStatus())
+          .with("failure", span.getFailure())
+          .jsonLayout()
+          .initiate(this)
+          .logIntermediate()
+          .yielding("msg", "span")
+          .logInfo();
+    }
+  }
+}
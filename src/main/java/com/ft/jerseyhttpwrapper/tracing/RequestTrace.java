@@ -0,0 +1,164 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import com.google.common.net.HostAndPort;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The spans of one request while it is being handled. Used only by the thread handling the request.
+ */
+public final class RequestTrace {
+
+  private static final String VERSION = "00";
+  private static final String SAMPLED = "01";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Tracer tracer;
+  private final String client;
+  private final String requested;
+
+  private final String traceId;
+  private final String parentSpanId;
+  private final String flags;
+  private final String spanId = newId(1);
+  private final long startEpochMicros = System.currentTimeMillis() * 1000;
+  private final long startNanos = System.nanoTime();
+
+  private String attemptSpanId;
+  private String attemptNode;
+  private long attemptStartEpochMicros;
+  private long attemptStartNanos;
+
+  RequestTrace(Tracer tracer, String traceparent, String client, String requested) {
+    this.tracer = tracer;
+    this.client = client;
+    this.requested = requested;
+
+    String[] fields = traceparent == null ? null : traceparent.trim().split("-");
+    if (fields != null
+        && fields.length >= 4
+        && fields[1].length() == 32
+        && fields[2].length() == 16
+        && fields[3].length() == 2
+        && isId(fields[1])
+        && isId(fields[2])
+        && isHex(fields[3])) {
+      traceId = fields[1];
+      parentSpanId = fields[2];
+      flags = fields[3];
+    } else {
+      traceId = newId(2);
+      parentSpanId = null;
+      flags = SAMPLED;
+    }
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /**
+   * Starts the span of an attempt.
+   *
+   * @param node where the attempt is going
+   * @return the traceparent header to send with the attempt
+   */
+  public String startAttempt(HostAndPort node) {
+    attemptSpanId = newId(1);
+    attemptNode = node.toString();
+    attemptStartEpochMicros = System.currentTimeMillis() * 1000;
+    attemptStartNanos = System.nanoTime();
+    return VERSION + "-" + traceId + "-" + attemptSpanId + "-" + flags;
+  }
+
+  /**
+   * Records the span of the current attempt.
+   *
+   * @param status the response status, or 0 if there was no response
+   * @param failure what went wrong, if the attempt failed without a response
+   */
+  public void endAttempt(int status, Throwable failure) {
+    tracer.record(
+        new Span(
+            traceId,
+            attemptSpanId,
+            spanId,
+            Span.ATTEMPT,
+            client,
+            attemptNode,
+            attemptStartEpochMicros,
+            System.nanoTime() - attemptStartNanos,
+            status,
+            describe(status, failure)));
+  }
+
+  /**
+   * Records the span of the whole request.
+   *
+   * @param status the status of the response returned, or 0 if there was none
+   * @param failure what went wrong, if no response is returned
+   */
+  public void end(int status, Throwable failure) {
+    tracer.record(
+        new Span(
+            traceId,
+            spanId,
+            parentSpanId,
+            Span.REQUEST,
+            client,
+            requested,
+            startEpochMicros,
+            System.nanoTime() - startNanos,
+            status,
+            describe(status, failure)));
+  }
+
+  private static String describe(int status, Throwable failure) {
+    if (status >= 500 || status == 429) {
+      return "status " + status;
+    }
+    if (failure != null) {
+      return failure.getClass().getSimpleName();
+    }
+    return null;
+  }
+
+  /** @return {@code longs} random 64 bit numbers as hex, never all zeros */
+  private static String newId(int longs) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    char[] id = new char[longs * 16];
+    for (int i = 0; i < longs; i++) {
+      long value = random.nextLong();
+      if (value == 0) {
+        value = 1;
+      }
+      for (int digit = 15; digit >= 0; digit--) {
+        id[i * 16 + digit] = HEX[(int) (value & 0xf)];
+        value >>>= 4;
+      }
+    }
+    return new String(id);
+  }
+
+  /** @return true if the value is lower case hex, and not all zeros as ids may not be */
+  private static boolean isId(String value) {
+    if (!isHex(value)) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != '0') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isHex(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
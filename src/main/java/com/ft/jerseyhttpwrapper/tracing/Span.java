@@ -0,0 +1,112 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import com.google.common.base.Objects;
+
+/**
+ * A finished, immutable span: either a whole request, or one attempt at it on a particular node.
+ * Identifiers are lower case hex, as in a W3C {@code traceparent} header.
+ */
+public final class Span {
+
+  public static final String REQUEST = "request";
+  public static final String ATTEMPT = "attempt";
+
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final String name;
+  private final String client;
+  private final String node;
+  private final long startEpochMicros;
+  private final long durationNanos;
+  private final int status;
+  private final String failure;
+
+  Span(
+      String traceId,
+      String spanId,
+      String parentSpanId,
+      String name,
+      String client,
+      String node,
+      long startEpochMicros,
+      long durationNanos,
+      int status,
+      String failure) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.name = name;
+    this.client = client;
+    this.node = node;
+    this.startEpochMicros = startEpochMicros;
+    this.durationNanos = durationNanos;
+    this.status = status;
+    this.failure = failure;
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /** @return the span this one is part of, or null for a request with no traced caller */
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  /** @return {@link #REQUEST} or {@link #ATTEMPT} */
+  public String getName() {
+    return name;
+  }
+
+  /** @return the short name of the client */
+  public String getClient() {
+    return client;
+  }
+
+  /** @return the node an attempt was sent to, or the requested host for a request */
+  public String getNode() {
+    return node;
+  }
+
+  public long getStartEpochMicros() {
+    return startEpochMicros;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /** @return the response status, or 0 if there was no response */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * @return why an attempt led to a retry, or a request failed, e.g. {@code "status 503"} or {@code
+   *     "SocketTimeoutException"}; null if it did not
+   */
+  public String getFailure() {
+    return failure;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("traceId", traceId)
+        .add("spanId", spanId)
+        .add("parentSpanId", parentSpanId)
+        .add("name", name)
+        .add("client", client)
+        .add("node", node)
+        .add("startEpochMicros", startEpochMicros)
+        .add("durationNanos", durationNanos)
+        .add("status", status)
+        .add("failure", failure)
+        .toString();
+  }
+}
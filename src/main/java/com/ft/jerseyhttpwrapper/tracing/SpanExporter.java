@@ -0,0 +1,10 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import java.util.List;
+
+/** Sends finished spans somewhere, e.g. a log or a collector. Called from one thread at a time. */
+public interface SpanExporter {
+
+  /** @param spans in the order they finished; not retained by the caller */
+  void export(List<Span> spans);
+}
@@ -0,0 +1,76 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size buffer of finished spans, written by any number of threads without locking and
+ * drained by one. When the drain falls behind, the oldest spans are overwritten and counted as
+ * dropped: tracing must never slow requests down or grow without bound.
+ */
+class SpanRing {
+
+  private final AtomicReferenceArray<Slot> slots;
+  private final int mask;
+  private final AtomicLong written = new AtomicLong();
+
+  /** only touched by the draining thread */
+  private long drained;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** @param capacity rounded up to a power of two */
+  SpanRing(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    slots = new AtomicReferenceArray<>(Math.max(size, 1));
+    mask = slots.length() - 1;
+  }
+
+  void record(Span span) {
+    long sequence = written.getAndIncrement();
+    slots.set((int) (sequence & mask), new Slot(sequence, span));
+  }
+
+  /** @return every span recorded since the last drain that has not been overwritten */
+  synchronized List<Span> drain() {
+    long head = written.get();
+    if (head - drained > slots.length()) {
+      dropped.addAndGet(head - drained - slots.length());
+      drained = head - slots.length();
+    }
+
+    List<Span> spans = new ArrayList<>((int) (head - drained));
+    while (drained < head) {
+      Slot slot = slots.get((int) (drained & mask));
+      if (slot == null || slot.sequence < drained) {
+        // claimed but not yet written; pick it up next time
+        break;
+      }
+      if (slot.sequence == drained) {
+        spans.add(slot.span);
+      } else {
+        dropped.incrementAndGet();
+      }
+      drained++;
+    }
+    return spans;
+  }
+
+  long getDropped() {
+    return dropped.get();
+  }
+
+  private static class Slot {
+    final long sequence;
+    final Span span;
+
+    Slot(long sequence, Span span) {
+      this.sequence = sequence;
+      this.span = span;
+    }
+  }
+}
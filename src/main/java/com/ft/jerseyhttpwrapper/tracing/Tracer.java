@@ -0,0 +1,81 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import static com.ft.membership.logging.Operation.operation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.ClientRequest;
+import java.util.List;
+
+/**
+ * Records a span for each request a client handles and for each attempt at it, and passes them to a
+ * {@link SpanExporter} in batches. Each attempt carries a W3C {@code traceparent} header naming its
+ * span, and a request that already carries one joins the caller's trace.
+ *
+ * <p>Recording is a lock-free write into a fixed size ring, so the request path never waits for the
+ * exporter; if the exporter falls behind, the oldest spans are dropped.
+ */
+public class Tracer {
+
+  public static final String TRACEPARENT = "traceparent";
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final SpanRing ring;
+  private final SpanExporter exporter;
+
+  public Tracer(SpanExporter exporter) {
+    this(DEFAULT_CAPACITY, exporter);
+  }
+
+  /**
+   * @param capacity the spans held between flushes before the oldest are dropped
+   * @param exporter receives the spans on each {@link #flush()}
+   */
+  public Tracer(int capacity, SpanExporter exporter) {
+    this.ring = new SpanRing(capacity);
+    this.exporter = Preconditions.checkNotNull(exporter, "exporter is mandatory");
+  }
+
+  /**
+   * @param request the request as supplied by the application, which may carry a traceparent
+   * @param client the short name of the client
+   * @param requested the host and port the application asked for
+   * @return the trace of this one request, for use by the handling thread only
+   */
+  public RequestTrace startRequest(ClientRequest request, String client, HostAndPort requested) {
+    Object traceparent = request.getHeaders().getFirst(TRACEPARENT);
+    return new RequestTrace(
+        this, traceparent == null ? null : traceparent.toString(), client, requested.toString());
+  }
+
+  void record(Span span) {
+    ring.record(span);
+  }
+
+  /**
+   * Exports every span recorded since the last flush. Flushes run one at a time, so a flush waits
+   * for one already in progress to finish, and spans reach the exporter in the order recorded.
+   */
+  public synchronized void flush() {
+    List<Span> spans = ring.drain();
+    if (spans.isEmpty()) {
+      return;
+    }
+    try {
+      exporter.export(spans);
+    } catch (RuntimeException e) {
+      operation("flush")
+          .jsonLayout()
+          .initiate(this)
+          .wasFailure()
+          .withMessage(e)
+          .withDetail("msg", "Could not export spans, dropping them")
+          .logWarn(e);
+    }
+  }
+
+  /** @return how many spans were overwritten before they could be exported */
+  public long getDropped() {
+    return ring.getDropped();
+  }
+}
@@ -0,0 +1,81 @@
+package com.ft.jerseyhttpwrapper;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.net.HostAndPort;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AdaptiveTimeoutsTest {
+
+  private static final HostAndPort NODE = HostAndPort.fromParts("a.example.com", 8080);
+
+  private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts(0.99, 2.0, 50, 5000);
+
+  @Test
+  public void shouldUseTheStaticTimeoutForUnknownNodes() {
+    assertThat(timeouts.timeoutMillis(NODE), is(5000));
+  }
+
+  @Test
+  public void shouldUseTheStaticTimeoutUntilThereAreEnoughResponses() {
+    respond(AdaptiveTimeouts.MIN_SAMPLES - 1, 100);
+
+    assertThat(timeouts.timeoutMillis(NODE), is(5000));
+  }
+
+  @Test
+  public void shouldMultiplyThePercentile() {
+    respond(AdaptiveTimeouts.MIN_SAMPLES, 100);
+
+    assertThat(timeouts.timeoutMillis(NODE), is(200));
+  }
+
+  @Test
+  public void shouldClampToTheFloorAndTheStaticTimeout() {
+    respond(AdaptiveTimeouts.MIN_SAMPLES, 1);
+    assertThat(timeouts.timeoutMillis(NODE), is(50));
+
+    HostAndPort slowNode = HostAndPort.fromParts("b.example.com", 8080);
+    for (int i = 0; i < AdaptiveTimeouts.MIN_SAMPLES; i++) {
+      timeouts.responded(slowNode, 4, TimeUnit.SECONDS);
+    }
+    assertThat(timeouts.timeoutMillis(slowNode), is(5000));
+  }
+
+  @Test
+  public void shouldLetANodeThatSlowsPastItsTimeoutRespondAgain() throws Exception {
+    respond(AdaptiveTimeouts.MIN_SAMPLES, 100);
+    assertThat(timeouts.timeoutMillis(NODE), is(200));
+
+    // the node now takes 300ms, so its next attempt times out
+    timeouts.timedOut(NODE, 200);
+    assertThat(timeouts.timeoutMillis(NODE), is(400));
+
+    respond(AdaptiveTimeouts.MIN_SAMPLES, 300);
+    Thread.sleep(AdaptiveTimeouts.REFRESH_MILLIS);
+    assertThat(timeouts.timeoutMillis(NODE), is(600));
+  }
+
+  @Test
+  public void shouldRaiseTheTimeoutOnEachTimeoutUpToTheStaticOne() throws Exception {
+    respond(AdaptiveTimeouts.MIN_SAMPLES, 100);
+    int timeout = timeouts.timeoutMillis(NODE);
+    for (int expected : new int[] {400, 800, 1600, 3200, 5000, 5000}) {
+      timeouts.timedOut(NODE, timeout);
+      timeout = timeouts.timeoutMillis(NODE);
+      assertThat(timeout, is(expected));
+    }
+
+    // still raised after a recalculation, as the node has not responded since
+    Thread.sleep(AdaptiveTimeouts.REFRESH_MILLIS);
+    assertThat(timeouts.timeoutMillis(NODE), is(5000));
+  }
+
+  private void respond(int times, long millis) {
+    for (int i = 0; i < times; i++) {
+      timeouts.responded(NODE, millis, TimeUnit.MILLISECONDS);
+    }
+  }
+}
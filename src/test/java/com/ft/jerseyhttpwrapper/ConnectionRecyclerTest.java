@@ -0,0 +1,115 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.base.Ticker;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConnectionRecyclerTest {
+
+  @Rule public WireMockRule wm = new WireMockRule(wireMockConfig().port(0));
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final PoolingClientConnectionManager connectionManager =
+      new PoolingClientConnectionManager();
+  private final DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager);
+
+  private HttpRoute route;
+
+  @Before
+  public void setUp() {
+    wm.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+    route = new HttpRoute(new HttpHost("localhost", wm.port(), "http"));
+  }
+
+  @After
+  public void tearDown() {
+    connectionManager.shutdown();
+  }
+
+  @Test
+  public void shouldReuseAConnectionUntilItsLifetimeIsUp() throws Exception {
+    ConnectionRecycler recycler = recycler(1000, 0, 0.5);
+
+    request();
+    ticker.advance(900, TimeUnit.MILLISECONDS);
+    request();
+    assertThat(recycler.getRecycled(), is(0L));
+    assertThat(connectionManager.getStats(route).getAvailable(), is(1));
+
+    ticker.advance(200, TimeUnit.MILLISECONDS);
+    request();
+    assertThat(recycler.getRecycled(), is(1L));
+    assertThat(connectionManager.getStats(route).getAvailable(), is(0));
+
+    request();
+    assertThat(connectionManager.getStats(route).getAvailable(), is(1));
+  }
+
+  @Test
+  public void shouldShortenLifetimesByUpToTheJitter() throws Exception {
+    ConnectionRecycler recycler = recycler(1000, 0.5, 0.99);
+
+    request();
+    ticker.advance(600, TimeUnit.MILLISECONDS);
+    request();
+
+    assertThat(recycler.getRecycled(), is(1L));
+  }
+
+  private ConnectionRecycler recycler(long lifetimeMillis, double jitter, final double random) {
+    ConnectionRecycler recycler =
+        new ConnectionRecycler(
+            new DefaultConnectionReuseStrategy(),
+            lifetimeMillis,
+            jitter,
+            new Random() {
+              @Override
+              public double nextDouble() {
+                return random;
+              }
+            },
+            ticker);
+    httpClient.setReuseStrategy(recycler);
+    return recycler;
+  }
+
+  private void request() throws Exception {
+    HttpResponse response =
+        httpClient.execute(new HttpGet("http://localhost:" + wm.port() + "/something"));
+    EntityUtils.consume(response.getEntity());
+    assertThat(response.getStatusLine().getStatusCode(), is(200));
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+}
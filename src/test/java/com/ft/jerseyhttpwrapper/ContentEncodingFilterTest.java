@@ -0,0 +1,212 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.ft.jerseyhttpwrapper.config.DummyClientEnvironment;
+import com.ft.jerseyhttpwrapper.config.EndpointConfiguration;
+import com.ft.jerseyhttpwrapper.providers.NullHostAndPortProvider;
+import com.ft.jerseyhttpwrapper.providers.SimpleHostAndPortProvider;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import io.dropwizard.client.JerseyClientConfiguration;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ContentEncodingFilterTest {
+
+  @Rule public WireMockRule wm = new WireMockRule(wireMockConfig().port(0));
+
+  private ResilientClientBuilder builder;
+
+  @Before
+  public void setUp() {
+    JerseyClientConfiguration jerseyClientConfiguration = new JerseyClientConfiguration();
+    jerseyClientConfiguration.setGzipEnabled(true);
+    jerseyClientConfiguration.setGzipEnabledForRequests(true);
+
+    HostAndPort wmNode = HostAndPort.fromParts("localhost", wm.port());
+    builder =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(
+                new EndpointConfiguration(
+                    Optional.<String>absent(),
+                    Optional.of(jerseyClientConfiguration),
+                    Optional.<String>absent(),
+                    Lists.newArrayList(wmNode.toString()),
+                    Lists.<String>newArrayList()))
+            .withPrimary(new SimpleHostAndPortProvider(wmNode))
+            .withSecondary(new NullHostAndPortProvider());
+
+    wm.stubFor(post(urlEqualTo("/entity")).willReturn(aResponse().withStatus(204)));
+  }
+
+  @Test
+  public void shouldNotCompressSmallEntities() {
+    send(builder.build(), MediaType.APPLICATION_JSON_TYPE, ImmutableMap.of("small", "entity"));
+
+    wm.verify(
+        postRequestedFor(urlEqualTo("/entity"))
+            .withoutHeader("Content-Encoding")
+            .withRequestBody(equalTo("{\"small\":\"entity\"}")));
+  }
+
+  @Test
+  public void shouldCompressEntitiesFromTheThreshold() {
+    Client client = builder.compressingRequestsAbove(16).build();
+
+    send(client, MediaType.APPLICATION_JSON_TYPE, ImmutableMap.of("larger", "entity"));
+
+    wm.verify(
+        postRequestedFor(urlEqualTo("/entity")).withHeader("Content-Encoding", equalTo("gzip")));
+  }
+
+  @Test
+  public void shouldStopSerializingAnEntityOnceItReachesTheThreshold() {
+    final AtomicInteger written = new AtomicInteger();
+    StreamingOutput large =
+        new StreamingOutput() {
+          @Override
+          public void write(OutputStream out) throws IOException {
+            for (int i = 0; i < 1024 * 1024; i++) {
+              out.write('a');
+              written.incrementAndGet();
+            }
+          }
+        };
+    ClientRequest request =
+        ClientRequest.create().entity(large, MediaType.TEXT_PLAIN_TYPE).build(null, "POST");
+
+    ReplayableEntity serialized =
+        ReplayableEntity.within(
+            request,
+            Client.create().getMessageBodyWorkers(),
+            ContentEncodingFilter.DEFAULT_THRESHOLD_BYTES);
+
+    assertThat(serialized, nullValue());
+    assertThat(written.get(), is(ContentEncodingFilter.DEFAULT_THRESHOLD_BYTES));
+  }
+
+  @Test
+  public void shouldNotCompressContentThatIsAlreadyCompressed() {
+    send(builder.build(), MediaType.valueOf("image/png"), new byte[4096]);
+
+    wm.verify(postRequestedFor(urlEqualTo("/entity")).withoutHeader("Content-Encoding"));
+  }
+
+  @Test
+  public void shouldDecodeGzippedResponsesWithAPooledInflater() throws Exception {
+    String body = Strings.repeat("Hello world ", 100);
+    wm.stubFor(
+        get(urlEqualTo("/gzipped"))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Encoding", "gzip")
+                    .withBody(gzip(body))));
+
+    Client client = builder.build();
+    for (int i = 0; i < 3; i++) {
+      ClientResponse response =
+          client.resource("http://localhost:" + wm.port() + "/gzipped").get(ClientResponse.class);
+
+      assertThat(response.getEntity(String.class), is(body));
+      assertThat(response.getHeaders().getFirst("Content-Encoding"), nullValue());
+    }
+
+    wm.verify(
+        getRequestedFor(urlEqualTo("/gzipped")).withHeader("Accept-Encoding", equalTo("gzip")));
+  }
+
+  @Test
+  public void shouldOfferAndDecodeRegisteredCodings() {
+    wm.stubFor(
+        get(urlEqualTo("/shouted"))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Encoding", "x-shout")
+                    .withBody("HELLO WORLD")));
+
+    Client client = builder.decodingWith(new QuietDecoder()).build();
+    ClientResponse response =
+        client.resource("http://localhost:" + wm.port() + "/shouted").get(ClientResponse.class);
+
+    assertThat(response.getEntity(String.class), is("hello world"));
+    wm.verify(
+        getRequestedFor(urlEqualTo("/shouted"))
+            .withHeader("Accept-Encoding", equalTo("x-shout, gzip")));
+  }
+
+  private void send(Client client, MediaType type, Object entity) {
+    ClientResponse response =
+        client
+            .resource("http://localhost:" + wm.port() + "/entity")
+            .type(type)
+            .post(ClientResponse.class, entity);
+    assertThat(response.getStatus(), is(204));
+  }
+
+  private static byte[] gzip(String body) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    return compressed.toByteArray();
+  }
+
+  /** lower cases ASCII, standing in for e.g. a brotli decoder */
+  private static class QuietDecoder implements ContentDecoder {
+    @Override
+    public String getEncoding() {
+      return "x-shout";
+    }
+
+    @Override
+    public InputStream decode(InputStream encoded) {
+      return new FilterInputStream(encoded) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          return b == -1 ? b : Character.toLowerCase(b);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+          int read = super.read(bytes, offset, length);
+          for (int i = offset; i < offset + read; i++) {
+            bytes[i] = (byte) Character.toLowerCase(bytes[i]);
+          }
+          return read;
+        }
+      };
+    }
+  }
+}
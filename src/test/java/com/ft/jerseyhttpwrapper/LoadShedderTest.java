@@ -0,0 +1,64 @@
+package com.ft.jerseyhttpwrapper;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.sun.jersey.api.client.ClientRequest;
+import java.net.URI;
+import org.junit.Test;
+
+public class LoadShedderTest {
+
+  private final LoadShedder shedder = new LoadShedder(4);
+
+  @Test
+  public void shouldShedLowPriorityWorkAtHalfTheLimit() {
+    assertThat(shedder.tryAcquire(RequestPriority.LOW), is(true));
+    assertThat(shedder.tryAcquire(RequestPriority.LOW), is(true));
+
+    assertThat(shedder.tryAcquire(RequestPriority.LOW), is(false));
+    assertThat(shedder.tryAcquire(RequestPriority.NORMAL), is(true));
+  }
+
+  @Test
+  public void shouldShedNormalPriorityWorkAtTheLimitButNeverHighPriorityWork() {
+    for (int i = 0; i < 4; i++) {
+      assertThat(shedder.tryAcquire(RequestPriority.NORMAL), is(true));
+    }
+
+    assertThat(shedder.tryAcquire(RequestPriority.NORMAL), is(false));
+    assertThat(shedder.tryAcquire(RequestPriority.HIGH), is(true));
+    assertThat(shedder.getInFlight(), is(5));
+  }
+
+  @Test
+  public void shouldAdmitAgainOnceReleased() {
+    shedder.tryAcquire(RequestPriority.NORMAL);
+    shedder.tryAcquire(RequestPriority.NORMAL);
+    assertThat(shedder.tryAcquire(RequestPriority.LOW), is(false));
+
+    shedder.release();
+
+    assertThat(shedder.tryAcquire(RequestPriority.LOW), is(true));
+  }
+
+  @Test
+  public void shouldReadThePriorityByNameAndFallBackForAnUnknownOne() {
+    ClientRequest request = ClientRequest.create().build(URI.create("http://localhost/"), "GET");
+    assertThat(RequestPriority.of(request), is(RequestPriority.NORMAL));
+
+    request.getProperties().put(RequestPriority.PROPERTY, "low");
+    assertThat(RequestPriority.of(request), is(RequestPriority.LOW));
+
+    request.getProperties().put(RequestPriority.PROPERTY, "urgent");
+    assertThat(RequestPriority.of(request), is(RequestPriority.NORMAL));
+  }
+
+  @Test
+  public void shouldRejectWithoutAStackTrace() {
+    LoadSheddingException e = new LoadSheddingException("test", RequestPriority.LOW);
+
+    assertThat(e.getStackTrace().length, is(0));
+    assertThat(e.getPriority(), is(RequestPriority.LOW));
+  }
+}
@@ -0,0 +1,143 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PoolTopologyTest {
+
+  @Rule public WireMockRule wm = new WireMockRule(wireMockConfig().port(0));
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final PoolingClientConnectionManager connectionManager =
+      new PoolingClientConnectionManager();
+  private final PoolTopology topology = new PoolTopology(connectionManager, ticker);
+
+  @Before
+  public void setUp() {
+    connectionManager.setMaxTotal(40);
+    wm.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+  }
+
+  @After
+  public void tearDown() {
+    connectionManager.shutdown();
+  }
+
+  @Test
+  public void shouldShareThePoolBetweenTheNodesInUse() {
+    for (int i = 1; i <= 4; i++) {
+      topology.used(HostAndPort.fromParts("10.0.0." + i, 8080));
+    }
+    topology.refresh();
+    assertThat(connectionManager.getDefaultMaxPerRoute(), is(20));
+
+    ticker.advance(PoolTopology.STALE_MILLIS - 1000, TimeUnit.MILLISECONDS);
+    topology.used(HostAndPort.fromParts("10.0.0.1", 8080));
+    ticker.advance(2000, TimeUnit.MILLISECONDS);
+    topology.refresh();
+
+    assertThat(topology.getNodeCount(), is(1));
+    assertThat(connectionManager.getDefaultMaxPerRoute(), is(40));
+  }
+
+  @Test
+  public void shouldCloseIdleConnectionsToANodeNoLongerInUse() throws Exception {
+    HostAndPort node = HostAndPort.fromParts("localhost", wm.port());
+    HttpRoute route = new HttpRoute(new HttpHost("localhost", wm.port(), "http"));
+
+    topology.used(node);
+    DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager);
+    HttpResponse response =
+        httpClient.execute(new HttpGet("http://localhost:" + wm.port() + "/something"));
+    EntityUtils.consume(response.getEntity());
+    assertThat(connectionManager.getStats(route).getAvailable(), is(1));
+
+    topology.refresh();
+    assertThat(connectionManager.getStats(route).getAvailable(), is(1));
+
+    ticker.advance(PoolTopology.STALE_MILLIS + 1000, TimeUnit.MILLISECONDS);
+    topology.refresh();
+
+    assertThat(connectionManager.getStats(route).getAvailable(), is(0));
+
+    response = httpClient.execute(new HttpGet("http://localhost:" + wm.port() + "/something"));
+    EntityUtils.consume(response.getEntity());
+    assertThat(response.getStatusLine().getStatusCode(), is(200));
+
+    // no limit of its own is left behind for the route
+    connectionManager.setDefaultMaxPerRoute(7);
+    assertThat(connectionManager.getMaxPerRoute(route), is(7));
+  }
+
+  @Test
+  public void shouldNotCountEvictionsAsLeaseWaits() throws Exception {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    LeaseTimingConnectionManager timingManager =
+        new LeaseTimingConnectionManager(
+            metricRegistry,
+            SchemeRegistryFactory.createDefault(),
+            -1,
+            TimeUnit.MILLISECONDS,
+            new SystemDefaultDnsResolver(),
+            "test");
+    Timer leaseWaits = metricRegistry.timer("lease-waits");
+    timingManager.setLeaseWaits(leaseWaits);
+    try {
+      PoolTopology timingTopology = new PoolTopology(timingManager, ticker);
+      HostAndPort node = HostAndPort.fromParts("localhost", wm.port());
+      HttpRoute route = new HttpRoute(new HttpHost("localhost", wm.port(), "http"));
+
+      timingTopology.used(node);
+      HttpResponse response =
+          new DefaultHttpClient(timingManager)
+              .execute(new HttpGet("http://localhost:" + wm.port() + "/something"));
+      EntityUtils.consume(response.getEntity());
+      long attempts = leaseWaits.getCount();
+
+      ticker.advance(PoolTopology.STALE_MILLIS + 1000, TimeUnit.MILLISECONDS);
+      timingTopology.refresh();
+
+      assertThat(timingManager.getStats(route).getAvailable(), is(0));
+      assertThat(leaseWaits.getCount(), is(attempts));
+    } finally {
+      timingManager.shutdown();
+    }
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+}
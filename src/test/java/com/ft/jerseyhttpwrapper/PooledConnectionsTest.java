@@ -0,0 +1,49 @@
+package com.ft.jerseyhttpwrapper;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.net.HostAndPort;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+
+public class PooledConnectionsTest {
+
+  private static final HostAndPort NODE = HostAndPort.fromParts("10.0.0.1", 8080);
+
+  @SuppressWarnings("unchecked")
+  private final ConnPoolControl<HttpRoute> pool = mock(ConnPoolControl.class);
+
+  private final PooledConnections pooledConnections = new PooledConnections(pool);
+
+  @Test
+  public void shouldAnswerFromTheSnapshotWithoutTouchingThePool() {
+    when(pool.getStats(any(HttpRoute.class))).thenReturn(new PoolStats(0, 0, 1, 10));
+
+    assertThat(pooledConnections.hasIdleConnection(NODE), is(false));
+    verify(pool, never()).getStats(any(HttpRoute.class));
+
+    pooledConnections.refresh();
+    assertThat(pooledConnections.hasIdleConnection(NODE), is(true));
+    verify(pool).getStats(PoolTopology.route(NODE));
+  }
+
+  @Test
+  public void shouldOnlyLookUpNodesAskedAboutSinceTheLastRefresh() {
+    when(pool.getStats(any(HttpRoute.class))).thenReturn(new PoolStats(0, 0, 1, 10));
+    pooledConnections.hasIdleConnection(NODE);
+    pooledConnections.refresh();
+
+    pooledConnections.refresh();
+
+    assertThat(pooledConnections.hasIdleConnection(NODE), is(false));
+    verify(pool).getStats(PoolTopology.route(NODE));
+  }
+}
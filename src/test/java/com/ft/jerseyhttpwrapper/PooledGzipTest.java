@@ -0,0 +1,165 @@
+package com.ft.jerseyhttpwrapper;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.Test;
+
+public class PooledGzipTest {
+
+  private final byte[] content = content(100 * 1024);
+
+  @Test
+  public void shouldCompressSoThatGzipInputStreamCanRead() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out = PooledGzip.compress(compressed)) {
+        out.write(content);
+      }
+
+      byte[] decompressed =
+          ByteStreams.toByteArray(
+              new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+      assertThat(Arrays.equals(decompressed, content), is(true));
+      assertThat(compressed.size() < content.length, is(true));
+    }
+  }
+
+  @Test
+  public void shouldDecodeWhatGzipOutputStreamWrote() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(content);
+    }
+    // bytes after the trailer are not part of the entity
+    compressed.write(new byte[] {1, 2, 3});
+
+    for (int i = 0; i < 3; i++) {
+      ByteArrayInputStream raw = new ByteArrayInputStream(compressed.toByteArray());
+      try (InputStream in = PooledGzip.DECODER.decode(raw)) {
+        assertThat(Arrays.equals(ByteStreams.toByteArray(in), content), is(true));
+      }
+    }
+  }
+
+  @Test
+  public void shouldDecodeAStreamThatArrivesInSmallChunks() throws Exception {
+    byte[] compressed = gzipped(content);
+
+    for (int chunk : new int[] {1, 3, 7, 600}) {
+      try (InputStream in = PooledGzip.DECODER.decode(new ChunkedInputStream(compressed, chunk))) {
+        assertThat(Arrays.equals(ByteStreams.toByteArray(in), content), is(true));
+      }
+    }
+  }
+
+  @Test
+  public void shouldDecodeEveryMemberOfAConcatenatedBody() throws Exception {
+    byte[] first = Arrays.copyOfRange(content, 0, 1000);
+    byte[] second = Arrays.copyOfRange(content, 1000, content.length);
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    body.write(gzipped(first));
+    body.write(gzipped(second));
+
+    for (int chunk : new int[] {5, 4096}) {
+      try (InputStream in =
+          PooledGzip.DECODER.decode(new ChunkedInputStream(body.toByteArray(), chunk))) {
+        assertThat(Arrays.equals(ByteStreams.toByteArray(in), content), is(true));
+      }
+    }
+  }
+
+  @Test
+  public void shouldShareThePoolBetweenConcurrentThreads() throws Exception {
+    ExecutorService threads = Executors.newFixedThreadPool(32);
+    try {
+      List<Future<Boolean>> roundTrips = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        roundTrips.add(
+            threads.submit(
+                new Callable<Boolean>() {
+                  @Override
+                  public Boolean call() throws Exception {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (OutputStream out = PooledGzip.compress(compressed)) {
+                      out.write(content);
+                    }
+                    try (InputStream in =
+                        PooledGzip.DECODER.decode(
+                            new ByteArrayInputStream(compressed.toByteArray()))) {
+                      return Arrays.equals(ByteStreams.toByteArray(in), content);
+                    }
+                  }
+                }));
+      }
+      for (Future<Boolean> roundTrip : roundTrips) {
+        assertThat(roundTrip.get(), is(true));
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test(expected = ZipException.class)
+  public void shouldRejectACorruptTrailer() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = PooledGzip.compress(compressed)) {
+      out.write(content);
+    }
+    byte[] corrupt = compressed.toByteArray();
+    corrupt[corrupt.length - 5]++;
+
+    ByteStreams.toByteArray(PooledGzip.DECODER.decode(new ByteArrayInputStream(corrupt)));
+  }
+
+  private static byte[] gzipped(byte[] content) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(content);
+    }
+    return compressed.toByteArray();
+  }
+
+  /** Returns no more than a few bytes from each read, as a slow network might. */
+  private static class ChunkedInputStream extends ByteArrayInputStream {
+
+    private final int chunk;
+
+    ChunkedInputStream(byte[] bytes, int chunk) {
+      super(bytes);
+      this.chunk = chunk;
+    }
+
+    @Override
+    public synchronized int read(byte[] bytes, int offset, int length) {
+      return super.read(bytes, offset, Math.min(length, chunk));
+    }
+  }
+
+  /** compressible, but not trivially so */
+  private static byte[] content(int size) {
+    Random random = new Random(42);
+    byte[] content = new byte[size];
+    for (int i = 0; i < size; i++) {
+      content[i] = (byte) ('a' + random.nextInt(8));
+    }
+    return content;
+  }
+}
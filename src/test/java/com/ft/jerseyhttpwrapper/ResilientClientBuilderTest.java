@@ -35,6 +35,14 @@ public class ResilientClientBuilderTest {
     assertThat(client.getShortName(), is(equalTo("test-localhost-8080-admin")));
   }
 
+  @Test
+  public void shouldBuildWithVirtualThreadsWhateverTheJvm() {
+    ResilientClient client =
+        ResilientClientBuilder.inTesting(locally()).usingVirtualThreads().build();
+
+    assertThat(client, notNullValue());
+  }
+
   @Test
   public void shouldSupportDNSOnlyDynamicConfiguration() {
     ResilientClient client = ResilientClientBuilder.inTesting().named("test").usingDNS().build();
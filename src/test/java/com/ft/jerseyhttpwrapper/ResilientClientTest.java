@@ -2,6 +2,7 @@ package com.ft.jerseyhttpwrapper;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static com.github.tomakehurst.wiremock.http.Fault.EMPTY_RESPONSE;
 import static com.github.tomakehurst.wiremock.http.Fault.MALFORMED_RESPONSE_CHUNK;
 import static com.github.tomakehurst.wiremock.http.RequestMethod.ANY;
 import static com.github.tomakehurst.wiremock.http.RequestMethod.DELETE;
@@ -13,13 +14,20 @@ import static com.github.tomakehurst.wiremock.http.RequestMethod.PUT;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import com.ft.jerseyhttpwrapper.config.DummyClientEnvironment;
 import com.ft.jerseyhttpwrapper.config.EndpointConfiguration;
+import com.ft.jerseyhttpwrapper.continuation.ExponentialBackoffContinuationPolicy;
+import com.ft.jerseyhttpwrapper.jackson.JsonStreamIterator;
 import com.ft.jerseyhttpwrapper.providers.NullHostAndPortProvider;
 import com.ft.jerseyhttpwrapper.providers.RandomHostAndPortProvider;
 import com.ft.jerseyhttpwrapper.providers.SimpleHostAndPortProvider;
+import com.ft.jerseyhttpwrapper.tracing.Span;
+import com.ft.jerseyhttpwrapper.tracing.SpanExporter;
+import com.ft.jerseyhttpwrapper.tracing.Tracer;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
 import com.github.tomakehurst.wiremock.client.RequestPatternBuilder;
 import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
@@ -32,15 +40,30 @@ import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.representation.Form;
+import com.sun.jersey.core.header.InBoundHeaders;
 import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.util.Duration;
+import java.io.ByteArrayInputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.UriBuilder;
+import org.apache.http.client.utils.DateUtils;
 import org.junit.*;
 import org.slf4j.MDC;
 
@@ -296,6 +319,408 @@ public class ResilientClientTest {
     assertThat(response.getStatus(), is(200));
   }
 
+  @Test
+  public void shouldReplayStreamedEntityOnRetry() {
+    assertStreamedEntityIsReplayedOnRetry(builder.replayingEntities(), "Hello world");
+  }
+
+  @Test
+  public void shouldReplaySpooledEntityOnRetry() {
+    assertStreamedEntityIsReplayedOnRetry(
+        builder.replayingEntities(4), "Larger than the spool threshold");
+  }
+
+  @Test
+  public void shouldSendReplayedEntityAsItsMediaTypeWithoutChangingTheRequest() {
+    wm.stubFor(post(urlEqualTo("/entity")).willReturn(aResponse().withStatus(204)));
+    ResilientClient client = builder.replayingEntities().build();
+
+    Form form = new Form();
+    form.add("key", "value");
+    ClientRequest request =
+        ClientRequest.create()
+            .entity(form)
+            .build(URI.create("http://localhost:" + wm.port() + "/entity"), "POST");
+    assertThat(client.handle(request).getStatus(), is(204));
+
+    assertThat(request.getHeaders().getFirst(CONTENT_TYPE), nullValue());
+    wm.verify(
+        postRequestedFor(urlEqualTo("/entity"))
+            .withHeader(CONTENT_TYPE, containing("application/x-www-form-urlencoded"))
+            .withRequestBody(equalTo("key=value")));
+  }
+
+  private void assertStreamedEntityIsReplayedOnRetry(
+      ResilientClientBuilder replayingBuilder, String body) {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+
+    Client client =
+        replayingBuilder
+            .withPrimary(new SimpleHostAndPortProvider(wmNode1, wmNode2))
+            .withSecondary(new NullHostAndPortProvider())
+            .build();
+
+    wm.stubFor(post(urlEqualTo("/firstRequestFails")).willReturn(aResponse().withStatus(503)));
+    wm2.stubFor(post(urlEqualTo("/firstRequestFails")).willReturn(aResponse().withStatus(200)));
+
+    ClientResponse response =
+        client
+            .resource("http://localhost:" + wm.port() + "/firstRequestFails")
+            .type("text/plain")
+            .post(
+                ClientResponse.class,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(response.getStatus(), is(200));
+
+    wm.verify(postRequestedFor(urlEqualTo("/firstRequestFails")).withRequestBody(equalTo(body)));
+    wm2.verify(postRequestedFor(urlEqualTo("/firstRequestFails")).withRequestBody(equalTo(body)));
+  }
+
+  @Test
+  public void shouldReadJsonArrayOneElementAtATime() throws Exception {
+    stubGetWillReturn(
+        aResponse()
+            .withStatus(200)
+            .withHeader(CONTENT_TYPE, "application/json")
+            .withBody("[\"a\",\"b\"]"));
+
+    ResilientClient client = builder.build();
+    ClientResponse response = resource(client).get(ClientResponse.class);
+
+    try (JsonStreamIterator<String> ids = client.readJsonStream(response, String.class)) {
+      assertThat(Lists.newArrayList(ids), is((List<String>) Lists.newArrayList("a", "b")));
+    }
+  }
+
+  @Test
+  public void shouldRouteToNewNodesOnceReconfigured() {
+    ResilientClientBuilder reconfigurable =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting()).using(nodes(wm.port()));
+    Client client = reconfigurable.build();
+
+    wm.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(204)));
+
+    assertThat(
+        client
+            .resource("http://localhost:" + wm.port() + "/something")
+            .get(ClientResponse.class)
+            .getStatus(),
+        is(200));
+
+    reconfigurable.using(nodes(wm2.port())).reconfigure((ResilientClient) client);
+
+    assertThat(
+        client
+            .resource("http://localhost:" + wm2.port() + "/something")
+            .get(ClientResponse.class)
+            .getStatus(),
+        is(204));
+    try {
+      client.resource("http://localhost:" + wm.port() + "/something").get(ClientResponse.class);
+      Assert.fail("the old node should have been forgotten");
+    } catch (IllegalArgumentException expected) {
+      // as intended
+    }
+  }
+
+  @Test
+  public void shouldShedLowPriorityRequestsWhileSaturated() throws Exception {
+    HostAndPort node = HostAndPort.fromParts("localhost", wm.port());
+    final ResilientClient client =
+        ResilientClientBuilder.inTesting(node).sheddingLoadAbove(2).build();
+    wm.stubFor(
+        get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+    final URI uri = URI.create("http://" + node + "/something");
+
+    ExecutorService background = Executors.newSingleThreadExecutor();
+    try {
+      Future<ClientResponse> inFlight =
+          background.submit(
+              new Callable<ClientResponse>() {
+                @Override
+                public ClientResponse call() {
+                  return client.resource(uri).get(ClientResponse.class);
+                }
+              });
+      while (client.getLoadShedder().getInFlight() == 0) {
+        Thread.sleep(5);
+      }
+
+      WebResource lowPriority = client.resource(uri);
+      lowPriority.setProperty(RequestPriority.PROPERTY, RequestPriority.LOW);
+      try {
+        lowPriority.get(ClientResponse.class);
+        Assert.fail("the low priority request should have been shed");
+      } catch (LoadSheddingException expected) {
+        assertThat(expected.getPriority(), is(RequestPriority.LOW));
+      }
+
+      assertThat(client.resource(uri).get(ClientResponse.class).getStatus(), is(200));
+      assertThat(inFlight.get().getStatus(), is(200));
+    } finally {
+      background.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldTimeOutSoonerOnceANodeIsKnownToBeQuick() throws Exception {
+    Client client = builder.withAdaptiveTimeouts().build();
+    stubGetWillReturn(aResponse().withStatus(200));
+    for (int i = 0; i < AdaptiveTimeouts.MIN_SAMPLES; i++) {
+      resource(client).get(ClientResponse.class).close();
+    }
+    // let the timeout be recalculated
+    Thread.sleep(AdaptiveTimeouts.REFRESH_MILLIS + 100);
+    resource(client).get(ClientResponse.class).close();
+
+    stubGetWillReturn(aResponse().withStatus(200).withFixedDelay(400));
+    long start = System.currentTimeMillis();
+    try {
+      resource(client).get(ClientResponse.class);
+      Assert.fail("the hung node should have timed out");
+    } catch (ClientHandlerException e) {
+      assertThat(e.getCause(), instanceOf(SocketTimeoutException.class));
+    }
+    assertThat(System.currentTimeMillis() - start < 300, is(true));
+  }
+
+  @Test
+  public void shouldParkANodeForAsLongAsItsRetryAfterAsks() {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+    Client client =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(nodes(wm.port(), wm2.port()))
+            .withPrimary(new SimpleHostAndPortProvider(wmNode1, wmNode2))
+            .withSecondary(new NullHostAndPortProvider())
+            .build();
+
+    wm.stubFor(
+        get(urlEqualTo("/something"))
+            .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "30")));
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+
+    for (int i = 0; i < 3; i++) {
+      ClientResponse response = resource(client).get(ClientResponse.class);
+      assertThat(response.getStatus(), is(200));
+      response.close();
+    }
+
+    wm.verify(1, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldNotRetryANodeThatAskedForTime() {
+    Client client =
+        builder.withContinuationPolicy(new ExponentialBackoffContinuationPolicy(3, 10)).build();
+    stubGetWillReturn(aResponse().withStatus(503).withHeader("Retry-After", "30"));
+
+    ClientResponse response = resource(client).get(ClientResponse.class);
+
+    assertThat(response.getStatus(), is(503));
+    wm.verify(1, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldFailFastWhileEveryNodeIsParked() {
+    Client client = builder.build();
+    stubGetWillReturn(aResponse().withStatus(503).withHeader("Retry-After", "30"));
+    resource(client).get(ClientResponse.class).close();
+
+    try {
+      resource(client).get(ClientResponse.class);
+      Assert.fail("expected a BackpressureException");
+    } catch (BackpressureException e) {
+      assertThat(e.getNode(), is(HostAndPort.fromParts("localhost", wm.port())));
+      assertThat(e.getRetryAfterMillis() > 25000, is(true));
+    }
+
+    wm.verify(1, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldOfferParkedNodesLastFromAProviderSuppliedOnReconfiguring() {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+    ResilientClient client = builder.build();
+    client.getNodeAvailability().park(wmNode1, 30000);
+    client.reconfigure(
+        new SimpleHostAndPortProvider(wmNode1, wmNode2), client.getContinuationPolicy());
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+
+    ClientResponse response = resource(client).get(ClientResponse.class);
+
+    assertThat(response.getStatus(), is(200));
+    wm.verify(0, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldNotSendToAParkedNodeAfterAnAttemptFails() {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+    ResilientClient client =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(nodes(wm.port(), wm2.port()))
+            .withPrimary(new SimpleHostAndPortProvider(wmNode2, wmNode1))
+            .withSecondary(new NullHostAndPortProvider())
+            .build();
+    client.getNodeAvailability().park(wmNode1, 30000);
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withFault(EMPTY_RESPONSE)));
+
+    try {
+      resource(client).get(ClientResponse.class);
+      Assert.fail("expected the failed attempt to be reported");
+    } catch (ClientHandlerException e) {
+      assertThat(e, not(instanceOf(BackpressureException.class)));
+    }
+
+    wm.verify(0, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldOnlyFailOverOnTooManyRequestsWhenHonouringBackpressure() {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+    ResilientClient client =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(nodes(wm.port(), wm2.port()))
+            .withPrimary(new SimpleHostAndPortProvider(wmNode1, wmNode2))
+            .withSecondary(new NullHostAndPortProvider())
+            .build();
+    client.setNodeAvailability(null);
+    stubGetWillReturn(aResponse().withStatus(429));
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+
+    ClientResponse response = resource(client).get(ClientResponse.class);
+
+    assertThat(response.getStatus(), is(429));
+    wm2.verify(0, getRequestedFor(urlEqualTo("/something")));
+  }
+
+  @Test
+  public void shouldReadRetryAfterInSecondsOrAsADate() {
+    assertThat(ResilientClient.retryAfterMillis(withRetryAfter("120")), is(120000L));
+    assertThat(ResilientClient.retryAfterMillis(withRetryAfter("soon")), is(0L));
+    assertThat(
+        ResilientClient.retryAfterMillis(withRetryAfter("86400")),
+        is(ResilientClient.MAX_RETRY_AFTER_MILLIS));
+
+    String inAMinute = DateUtils.formatDate(new Date(System.currentTimeMillis() + 60000));
+    long millis = ResilientClient.retryAfterMillis(withRetryAfter(inAMinute));
+    assertThat(millis > 55000 && millis <= 60000, is(true));
+  }
+
+  @Test
+  public void shouldTraceTheRequestAndEachAttemptAtIt() {
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+    final List<Span> exported = new ArrayList<>();
+    ResilientClient client =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(nodes(wm.port(), wm2.port()))
+            .withPrimary(new SimpleHostAndPortProvider(wmNode1, wmNode2))
+            .withSecondary(new NullHostAndPortProvider())
+            .withTracing(
+                new SpanExporter() {
+                  @Override
+                  public void export(List<Span> spans) {
+                    exported.addAll(spans);
+                  }
+                })
+            .build();
+
+    wm.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(500)));
+    wm2.stubFor(get(urlEqualTo("/something")).willReturn(aResponse().withStatus(200)));
+
+    String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+    ClientResponse response =
+        resource(client)
+            .header(Tracer.TRACEPARENT, "00-" + traceId + "-00f067aa0ba902b7-01")
+            .get(ClientResponse.class);
+    response.close();
+    client.getTracer().flush();
+
+    assertThat(exported.size(), is(3));
+    Span first = exported.get(0);
+    Span second = exported.get(1);
+    Span request = exported.get(2);
+
+    assertThat(request.getName(), is(Span.REQUEST));
+    assertThat(request.getTraceId(), is(traceId));
+    assertThat(request.getParentSpanId(), is("00f067aa0ba902b7"));
+    assertThat(request.getStatus(), is(200));
+
+    assertThat(first.getNode(), is(wmNode1.toString()));
+    assertThat(first.getParentSpanId(), is(request.getSpanId()));
+    assertThat(first.getFailure(), is("status 500"));
+    assertThat(second.getNode(), is(wmNode2.toString()));
+    assertThat(second.getFailure(), is(nullValue()));
+
+    wm2.verify(
+        getRequestedFor(urlEqualTo("/something"))
+            .withHeader(
+                Tracer.TRACEPARENT, equalTo("00-" + traceId + "-" + second.getSpanId() + "-01")));
+  }
+
+  @Test
+  public void shouldStopScheduledTraceFlushesAndExportTheRestOnDestroy() {
+    final List<Span> exported = new ArrayList<>();
+    ResilientClient client =
+        builder
+            .withTracing(
+                new SpanExporter() {
+                  @Override
+                  public void export(List<Span> spans) {
+                    exported.addAll(spans);
+                  }
+                })
+            .build();
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ScheduledFuture<?> flushes =
+          scheduler.scheduleWithFixedDelay(
+              new Runnable() {
+                @Override
+                public void run() {}
+              },
+              1,
+              1,
+              TimeUnit.HOURS);
+      client.setTraceFlushes(flushes);
+
+      stubGetWillReturn(aResponse().withStatus(200));
+      resource(client).get(ClientResponse.class).close();
+      client.destroy();
+
+      assertThat(flushes.isCancelled(), is(true));
+      assertThat(exported.size(), is(2));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldStopScheduledPoolRefreshesOnDestroy() {
+    ResilientClient client = builder.sizingPoolToTopology().preferringWarmConnections().build();
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ScheduledFuture<?> refreshes = idleTask(scheduler);
+      client.setPoolTopologyRefreshes(refreshes);
+      ScheduledFuture<?> connectionRefreshes = idleTask(scheduler);
+      client.setPooledConnectionRefreshes(connectionRefreshes);
+
+      client.destroy();
+
+      assertThat(refreshes.isCancelled(), is(true));
+      assertThat(connectionRefreshes.isCancelled(), is(true));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
   @Test
   public void shouldNotRetryNonIdempotentMethodByDefaultWhenRemoteStateUncertain() {
 
@@ -414,6 +839,66 @@ public class ResilientClientTest {
     wm.verify(postRequestedFor(urlEqualTo("/timeout/3")));
   }
 
+  @Test
+  public void shouldFailOverWhenEveryPooledConnectionToANodeIsBusy() throws Exception {
+    final JerseyClientConfiguration jerseyClientConfiguration = new JerseyClientConfiguration();
+    jerseyClientConfiguration.setMaxConnectionsPerRoute(1);
+    jerseyClientConfiguration.setTimeout(Duration.seconds(5));
+
+    HostAndPort wmNode1 = HostAndPort.fromParts("localhost", wm.port());
+    HostAndPort wmNode2 = HostAndPort.fromParts("localhost", wm2.port());
+
+    final EndpointConfiguration endpointConfiguration =
+        new EndpointConfiguration(
+            Optional.<String>absent(),
+            Optional.of(jerseyClientConfiguration),
+            Optional.<String>absent(),
+            Lists.newArrayList(wmNode1.toString(), wmNode2.toString()),
+            Lists.<String>newArrayList());
+
+    final ResilientClient client =
+        ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+            .using(endpointConfiguration)
+            .withPrimary(new SimpleHostAndPortProvider(wmNode1, wmNode2))
+            .withSecondary(new NullHostAndPortProvider())
+            .withLeaseTimeout(Duration.milliseconds(100))
+            .build();
+
+    wm.stubFor(
+        post(urlEqualTo("/busy")).willReturn(aResponse().withStatus(201).withFixedDelay(1500)));
+    wm2.stubFor(post(urlEqualTo("/busy")).willReturn(aResponse().withStatus(201)));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // holds the only connection to the first node
+      Future<ClientResponse> slow =
+          executor.submit(
+              new Callable<ClientResponse>() {
+                @Override
+                public ClientResponse call() {
+                  return client
+                      .resource("http://localhost:" + wm.port() + "/busy")
+                      .post(ClientResponse.class);
+                }
+              });
+      Thread.sleep(300);
+
+      long start = System.currentTimeMillis();
+      ClientResponse response =
+          client.resource("http://localhost:" + wm.port() + "/busy").post(ClientResponse.class);
+
+      assertThat(response.getStatus(), is(201));
+      assertThat(System.currentTimeMillis() - start < 1000, is(true));
+      assertThat(slow.get().getStatus(), is(201));
+    } finally {
+      executor.shutdown();
+    }
+
+    wm.verify(1, postRequestedFor(urlEqualTo("/busy")));
+    wm2.verify(1, postRequestedFor(urlEqualTo("/busy")));
+    assertThat(client.getMetrics().leaseWaits().getCount(), is(3L));
+  }
+
   @Test
   public void shouldHonourLargeTimeOuts() {
     final JerseyClientConfiguration jerseyClientConfiguration = new JerseyClientConfiguration();
@@ -510,6 +995,36 @@ public class ResilientClientTest {
     }
   }
 
+  private static ScheduledFuture<?> idleTask(ScheduledExecutorService scheduler) {
+    return scheduler.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {}
+        },
+        1,
+        1,
+        TimeUnit.HOURS);
+  }
+
+  private static ClientResponse withRetryAfter(String value) {
+    InBoundHeaders headers = new InBoundHeaders();
+    headers.putSingle("Retry-After", value);
+    return new ClientResponse(503, headers, new ByteArrayInputStream(new byte[0]), null);
+  }
+
+  private EndpointConfiguration nodes(int... ports) {
+    List<String> nodes = Lists.newArrayList();
+    for (int port : ports) {
+      nodes.add(HostAndPort.fromParts("localhost", port).toString());
+    }
+    return new EndpointConfiguration(
+        Optional.<String>absent(),
+        Optional.of(new JerseyClientConfiguration()),
+        Optional.<String>absent(),
+        nodes,
+        Lists.<String>newArrayList());
+  }
+
   private void stubGetWillReturn(ResponseDefinitionBuilder response) {
     stubWillReturn(GET, response);
   }
@@ -0,0 +1,161 @@
+package com.ft.jerseyhttpwrapper;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.jerseyhttpwrapper.config.DummyClientEnvironment;
+import com.ft.jerseyhttpwrapper.config.EndpointConfiguration;
+import com.ft.jerseyhttpwrapper.providers.NullHostAndPortProvider;
+import com.ft.jerseyhttpwrapper.providers.SimpleHostAndPortProvider;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ResponseDrainerTest {
+
+  private static final String PREFIX = ResilientClient.class.getName();
+
+  @Rule public WireMockRule failing = new WireMockRule(wireMockConfig().port(0));
+
+  @Rule public WireMockRule healthy = new WireMockRule(wireMockConfig().port(0));
+
+  private final MetricRegistry registry = new MetricRegistry();
+
+  private final ResponseDrainer drainer = new ResponseDrainer(1024, 1000);
+
+  @Test
+  public void shouldReleaseAResponseThatEndsWithinTheLimit() throws Exception {
+    HttpGet request = mock(HttpGet.class);
+    drainer.process(request, null);
+
+    assertThat(drainer.discard(responseOf(1024)), is(true));
+    verify(request, never()).abort();
+  }
+
+  @Test
+  public void shouldAbortAResponseLargerThanTheLimit() throws Exception {
+    HttpGet request = mock(HttpGet.class);
+    drainer.process(request, null);
+
+    assertThat(drainer.discard(responseOf(1025)), is(false));
+    verify(request).abort();
+  }
+
+  @Test
+  public void shouldAbortAResponseWhoseReadBlocksPastTheDrainTime() throws Exception {
+    final CountDownLatch aborted = new CountDownLatch(1);
+    HttpGet request = mock(HttpGet.class);
+    doAnswer(
+            new Answer<Void>() {
+              @Override
+              public Void answer(InvocationOnMock invocation) {
+                aborted.countDown();
+                return null;
+              }
+            })
+        .when(request)
+        .abort();
+    InputStream slowBody =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            try {
+              // as a socket read would, until the connection is shut down under it
+              aborted.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            throw new SocketException("Socket closed");
+          }
+        };
+
+    ResponseDrainer drainer = new ResponseDrainer(1024, 100);
+    drainer.process(request, null);
+
+    long start = System.nanoTime();
+    assertThat(
+        drainer.discard(new ClientResponse(503, new InBoundHeaders(), slowBody, null)), is(false));
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000, is(true));
+  }
+
+  @Test
+  public void shouldCloseAResponseLargerThanTheLimitWhenUnableToAbort() throws Exception {
+    assertThat(drainer.discard(responseOf(4096)), is(true));
+  }
+
+  @Test
+  public void shouldCountReusedAndAbortedConnectionsWhenRetrying() {
+    ResilientClient client = client();
+    HostAndPort failingNode = HostAndPort.fromParts("localhost", failing.port());
+
+    failing.stubFor(get(urlEqualTo("/small")).willReturn(aResponse().withStatus(503)));
+    healthy.stubFor(get(urlEqualTo("/small")).willReturn(aResponse().withStatus(200)));
+    failing.stubFor(
+        get(urlEqualTo("/large")).willReturn(aResponse().withStatus(503).withBody(bytes(65536))));
+    healthy.stubFor(get(urlEqualTo("/large")).willReturn(aResponse().withStatus(200)));
+
+    assertThat(
+        client.resource("http://" + failingNode + "/small").get(ClientResponse.class).getStatus(),
+        is(200));
+    assertThat(
+        client.resource("http://" + failingNode + "/large").get(ClientResponse.class).getStatus(),
+        is(200));
+
+    assertThat(registry.counter(PREFIX + ".discards.drainer.reused").getCount(), is(1L));
+    assertThat(registry.counter(PREFIX + ".discards.drainer.aborted").getCount(), is(1L));
+  }
+
+  private ResilientClient client() {
+    HostAndPort failingNode = HostAndPort.fromParts("localhost", failing.port());
+    HostAndPort healthyNode = HostAndPort.fromParts("localhost", healthy.port());
+
+    return ResilientClientBuilder.in(
+            new DummyClientEnvironment(new ObjectMapper(), Executors.newSingleThreadExecutor()) {
+              @Override
+              public MetricRegistry getMetricsRegistry() {
+                return registry;
+              }
+            })
+        .using(EndpointConfiguration.forTesting("localhost", failing.port()))
+        .named("drainer")
+        .withPrimary(new SimpleHostAndPortProvider(failingNode, healthyNode))
+        .withSecondary(new NullHostAndPortProvider())
+        .drainingDiscardedResponses(1024, 1000)
+        .build();
+  }
+
+  private static ClientResponse responseOf(int length) {
+    return new ClientResponse(
+        503, new InBoundHeaders(), new ByteArrayInputStream(bytes(length)), null);
+  }
+
+  private static byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) 'x');
+    return bytes;
+  }
+}
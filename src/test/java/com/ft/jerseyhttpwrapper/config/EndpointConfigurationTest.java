@@ -11,6 +11,10 @@ import com.google.common.base.Optional;
 import io.dropwizard.client.JerseyClientConfiguration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -383,6 +387,28 @@ public class EndpointConfigurationTest {
     assertThat(configuration.getSecondaryNodes().get(0).getAdminPort(), equalTo(443));
   }
 
+  @Test
+  public void thatTheActiveHealthCheckIsValidatedWithTheEndpoint() {
+    EndpointConfiguration configuration =
+        new EndpointConfiguration(
+            Optional.<String>absent(),
+            Optional.<JerseyClientConfiguration>absent(),
+            Optional.<String>absent(),
+            Arrays.asList("host1"),
+            Collections.<String>emptyList());
+    HealthCheckConfiguration healthCheck = new HealthCheckConfiguration();
+    healthCheck.setHealthyThreshold(0);
+    configuration.setActiveHealthCheck(healthCheck);
+
+    Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    Set<ConstraintViolation<EndpointConfiguration>> violations = validator.validate(configuration);
+
+    assertThat(violations.size(), is(1));
+    assertThat(
+        violations.iterator().next().getPropertyPath().toString(),
+        is("activeHealthCheck.healthyThreshold"));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void thatMixedPrimaryAndSecondaryProtocolsAreNotAllowed() {
     new EndpointConfiguration(
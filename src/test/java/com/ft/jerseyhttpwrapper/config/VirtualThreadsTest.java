@@ -0,0 +1,45 @@
+package com.ft.jerseyhttpwrapper.config;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void shouldRunEachTaskOnANamedVirtualThread() throws Exception {
+    assumeTrue(VirtualThreads.isAvailable());
+
+    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+    try {
+      Thread thread =
+          executor
+              .submit(
+                  new Callable<Thread>() {
+                    @Override
+                    public Thread call() {
+                      return Thread.currentThread();
+                    }
+                  })
+              .get();
+
+      assertThat(thread.getName(), startsWith("test-"));
+      assertThat((Boolean) Thread.class.getMethod("isVirtual").invoke(thread), is(true));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldRefuseOnJvmsWithoutVirtualThreads() {
+    assumeFalse(VirtualThreads.isAvailable());
+
+    VirtualThreads.newThreadPerTaskExecutor("test-");
+  }
+}
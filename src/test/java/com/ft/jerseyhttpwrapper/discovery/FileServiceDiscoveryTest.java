@@ -0,0 +1,119 @@
+package com.ft.jerseyhttpwrapper.discovery;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.net.HostAndPort;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileServiceDiscoveryTest {
+
+  private static final HostAndPort NODE_A = HostAndPort.fromParts("a.example.com", 8080);
+  private static final HostAndPort NODE_B = HostAndPort.fromParts("b.example.com", 8080);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path file;
+  private FileServiceDiscovery discovery;
+  private final RecordingListener listener = new RecordingListener();
+
+  @Before
+  public void setUp() throws IOException {
+    file = folder.getRoot().toPath().resolve("members");
+    write("# content nodes", "a.example.com:8080");
+    discovery = new FileServiceDiscovery(file);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    discovery.close();
+  }
+
+  @Test
+  public void shouldTellNewSubscribersAboutCurrentMembers() {
+    discovery.reload();
+    discovery.subscribe(listener);
+
+    assertThat(listener.changes, contains(MembershipChange.added(NODE_A)));
+  }
+
+  @Test
+  public void shouldPushOnlyWhatChanged() throws IOException {
+    discovery.reload();
+    discovery.subscribe(listener);
+    listener.changes.clear();
+
+    write("a.example.com:8080 drained", "b.example.com:8080");
+    discovery.reload();
+
+    assertThat(
+        listener.changes,
+        contains(MembershipChange.drained(NODE_A), MembershipChange.added(NODE_B)));
+
+    listener.changes.clear();
+    write("b.example.com:8080");
+    discovery.reload();
+
+    assertThat(listener.changes, contains(MembershipChange.removed(NODE_A)));
+  }
+
+  @Test
+  public void shouldKeepMembersIfTheFileIsUnreadable() throws IOException {
+    discovery.reload();
+    discovery.subscribe(listener);
+    listener.changes.clear();
+
+    write("a.example.com:8080 maybe");
+    discovery.reload();
+    Files.delete(file);
+    discovery.reload();
+
+    assertThat(listener.changes, is(empty()));
+  }
+
+  @Test
+  public void shouldNoticeTheFileBeingReplaced() throws Exception {
+    discovery.start();
+    discovery.subscribe(listener);
+
+    write("a.example.com:8080", "b.example.com:8080");
+
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!listener.changes.contains(MembershipChange.added(NODE_B))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertThat(listener.changes.contains(MembershipChange.added(NODE_B)), is(true));
+  }
+
+  /** Writes a complete file and renames it into place, as the class expects. */
+  private void write(String... lines) throws IOException {
+    Path temp = Files.createTempFile(folder.getRoot().toPath(), "members", ".tmp");
+    Files.write(temp, Arrays.asList(lines), StandardCharsets.UTF_8);
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static class RecordingListener implements MembershipListener {
+    final List<MembershipChange> changes = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void membershipChanged(List<MembershipChange> changes) {
+      this.changes.addAll(new ArrayList<>(changes));
+    }
+  }
+}
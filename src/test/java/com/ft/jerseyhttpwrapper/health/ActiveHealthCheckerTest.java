@@ -0,0 +1,141 @@
+package com.ft.jerseyhttpwrapper.health;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.ft.jerseyhttpwrapper.config.HealthCheckConfiguration;
+import com.ft.jerseyhttpwrapper.config.SimpleEndpointConfiguration;
+import com.ft.jerseyhttpwrapper.providers.NodeAvailability;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.net.HostAndPort;
+import io.dropwizard.util.Duration;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ActiveHealthCheckerTest {
+
+  private static final long SETTLE_MILLIS = 500;
+
+  @Rule public WireMockRule adminPort = new WireMockRule(wireMockConfig().port(0));
+
+  private final NodeAvailability availability = new NodeAvailability();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  private HostAndPort node;
+  private ActiveHealthChecker checker;
+
+  @Before
+  public void setUp() {
+    HealthCheckConfiguration configuration = new HealthCheckConfiguration();
+    configuration.setInterval(Duration.milliseconds(10));
+    configuration.setJitter(Duration.milliseconds(5));
+    configuration.setTimeout(Duration.milliseconds(200));
+
+    node = HostAndPort.fromParts("localhost", 9999);
+    checker =
+        new ActiveHealthChecker(configuration, availability, scheduler)
+            .watch(
+                node, new SimpleEndpointConfiguration("http", "localhost", 9999, adminPort.port()));
+  }
+
+  @After
+  public void tearDown() {
+    checker.stop();
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void shouldKeepHealthyNodeInRotation() throws Exception {
+    adminPort.stubFor(get(urlEqualTo("/__health")).willReturn(aResponse().withStatus(200)));
+
+    checker.start();
+    Thread.sleep(SETTLE_MILLIS);
+
+    assertThat(availability.isAvailable(node), is(true));
+  }
+
+  @Test
+  public void shouldTakeFailingNodeOutOfRotation() throws Exception {
+    adminPort.stubFor(get(urlEqualTo("/__health")).willReturn(aResponse().withStatus(500)));
+
+    checker.start();
+    Thread.sleep(SETTLE_MILLIS);
+
+    assertThat(availability.isAvailable(node), is(false));
+  }
+
+  @Test
+  public void shouldReturnRecoveredNodeToRotation() throws Exception {
+    adminPort.stubFor(get(urlEqualTo("/__health")).willReturn(aResponse().withStatus(503)));
+
+    checker.start();
+    Thread.sleep(SETTLE_MILLIS);
+    assertThat(availability.isAvailable(node), is(false));
+
+    adminPort.stubFor(get(urlEqualTo("/__health")).willReturn(aResponse().withStatus(200)));
+    Thread.sleep(SETTLE_MILLIS);
+
+    assertThat(availability.isAvailable(node), is(true));
+  }
+
+  @Test
+  public void shouldKeepCheckingOtherNodesWhileOneProbeHangs() throws Exception {
+    final CountDownLatch released = new CountDownLatch(1);
+    final int hungPort = adminPort.port() + 1;
+    HealthProbe probe =
+        new HealthProbe() {
+          @Override
+          public boolean isHealthy(SimpleEndpointConfiguration node) throws Exception {
+            if (node.getAdminPort() == hungPort) {
+              released.await();
+            }
+            return false;
+          }
+        };
+    ExecutorService probes = Executors.newCachedThreadPool();
+    checker.stop();
+    checker =
+        new ActiveHealthChecker(checker.getConfiguration(), availability, scheduler, probes, probe)
+            .watch(
+                HostAndPort.fromParts("localhost", 9998),
+                new SimpleEndpointConfiguration("http", "localhost", 9998, hungPort))
+            .watch(node, new SimpleEndpointConfiguration("http", "localhost", 9999, 9));
+    try {
+      checker.start();
+      Thread.sleep(SETTLE_MILLIS);
+
+      assertThat(availability.isAvailable(node), is(false));
+    } finally {
+      released.countDown();
+      probes.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldTreatUnreachableAdminPortAsUnhealthy() throws Exception {
+    int closedPort;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      closedPort = socket.getLocalPort();
+    }
+    checker.stop();
+    checker =
+        new ActiveHealthChecker(checker.getConfiguration(), availability, scheduler)
+            .watch(node, new SimpleEndpointConfiguration("http", "localhost", 9999, closedPort));
+
+    checker.start();
+    Thread.sleep(SETTLE_MILLIS);
+
+    assertThat(availability.isAvailable(node), is(false));
+  }
+}
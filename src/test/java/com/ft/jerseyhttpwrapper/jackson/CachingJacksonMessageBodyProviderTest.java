@@ -0,0 +1,110 @@
+package com.ft.jerseyhttpwrapper.jackson;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.validation.Validation;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import org.junit.Test;
+
+public class CachingJacksonMessageBodyProviderTest {
+
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+  private final CachingJacksonMessageBodyProvider provider =
+      new CachingJacksonMessageBodyProvider(
+          new ObjectMapper().registerModule(new AfterburnerModule()),
+          Validation.buildDefaultValidatorFactory().getValidator());
+
+  @Test
+  public void shouldReadAndWriteABean() throws Exception {
+    String json = write(new Content("1234", "Hello"), Content.class);
+
+    assertThat(json, is("{\"uuid\":\"1234\",\"title\":\"Hello\"}"));
+    assertThat(read(json, Content.class, Content.class).getTitle(), is("Hello"));
+    // again, from the cache
+    assertThat(read(json, Content.class, Content.class).getUuid(), is("1234"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldReadAGenericType() throws Exception {
+    Type listOfContent =
+        new GenericEntity<List<Content>>(Lists.<Content>newArrayList()) {}.getType();
+
+    List<Content> contents =
+        (List<Content>)
+            read("[{\"uuid\":\"1\"},{\"uuid\":\"2\"}]", (Class) List.class, listOfContent);
+
+    assertThat(contents.get(1).getUuid(), is("2"));
+  }
+
+  @Test
+  public void shouldReadAnEmptyEntityAsNull() throws Exception {
+    assertThat(read("", Content.class, Content.class), is(nullValue()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T read(String json, Class<T> type, Type genericType) throws Exception {
+    return (T)
+        provider.readFrom(
+            (Class) type,
+            genericType,
+            NO_ANNOTATIONS,
+            MediaType.APPLICATION_JSON_TYPE,
+            null,
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private String write(Object value, Type genericType) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    provider.writeTo(
+        value,
+        value.getClass(),
+        genericType,
+        NO_ANNOTATIONS,
+        MediaType.APPLICATION_JSON_TYPE,
+        null,
+        out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  public static class Content {
+    private String uuid;
+    private String title;
+
+    public Content() {}
+
+    Content(String uuid, String title) {
+      this.uuid = uuid;
+      this.title = title;
+    }
+
+    public String getUuid() {
+      return uuid;
+    }
+
+    public void setUuid(String uuid) {
+      this.uuid = uuid;
+    }
+
+    public String getTitle() {
+      return title;
+    }
+
+    public void setTitle(String title) {
+      this.title = title;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.ft.jerseyhttpwrapper.jackson;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class JsonStreamIteratorTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void shouldIterateOverTheElementsOfAnArray() {
+    List<String> ids = Lists.newArrayList(iterate("[\"a\", \"b\", \"c\"]", String.class));
+
+    assertThat(ids, contains("a", "b", "c"));
+  }
+
+  @Test
+  public void shouldIterateOverNewlineDelimitedJson() {
+    List<Id> ids = Lists.newArrayList(iterate("{\"id\":1}\n{\"id\":2}\n", Id.class));
+
+    assertThat(ids.size(), is(2));
+    assertThat(ids.get(1).id, is(2));
+  }
+
+  @Test
+  public void shouldIterateOverNothing() {
+    assertThat(iterate("[]", String.class).hasNext(), is(false));
+    assertThat(iterate("", String.class).hasNext(), is(false));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void shouldBlowUpIfHasNextIsNotRespected() {
+    JsonStreamIterator<String> ids = iterate("[\"a\"]", String.class);
+    ids.next();
+    ids.next();
+  }
+
+  @Test
+  public void shouldCloseTheStreamAfterTheLastElement() {
+    TrackingInputStream in = new TrackingInputStream("[\"a\"]");
+    JsonStreamIterator<String> ids = new JsonStreamIterator<>(mapper.reader(String.class), in);
+
+    ids.next();
+    assertThat(in.closed.get(), is(false));
+
+    assertThat(ids.hasNext(), is(false));
+    assertThat(in.closed.get(), is(true));
+  }
+
+  @Test
+  public void shouldCloseTheStreamWhenAbandoned() throws Exception {
+    TrackingInputStream in = new TrackingInputStream("[\"a\", \"b\"]");
+    JsonStreamIterator<String> ids = new JsonStreamIterator<>(mapper.reader(String.class), in);
+
+    ids.next();
+    ids.close();
+
+    assertThat(in.closed.get(), is(true));
+    assertThat(ids.hasNext(), is(false));
+  }
+
+  private <T> JsonStreamIterator<T> iterate(String json, Class<T> type) {
+    return new JsonStreamIterator<>(mapper.reader(type), new TrackingInputStream(json));
+  }
+
+  public static class Id {
+    public int id;
+  }
+
+  private static class TrackingInputStream extends ByteArrayInputStream {
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    TrackingInputStream(String content) {
+      super(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+      closed.set(true);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.ft.jerseyhttpwrapper.metrics;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class HdrHistogramReservoirTest {
+
+  private final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(0, TimeUnit.SECONDS);
+
+  @Test
+  public void shouldReportExactTailOfEveryRecordedValue() {
+    for (int i = 1; i <= 100000; i++) {
+      reservoir.update(i);
+    }
+
+    Snapshot snapshot = reservoir.getSnapshot();
+
+    assertThat(snapshot.size(), is(100000));
+    assertThat(snapshot.getMax(), is(100031L)); // highest equivalent value at 3 significant digits
+    assertThat(snapshot.getMin(), is(1L));
+    assertThat(snapshot.get999thPercentile(), closeTo(99900, 100));
+    assertThat(snapshot.get99thPercentile(), closeTo(99000, 100));
+    assertThat(snapshot.getMedian(), closeTo(50000, 50));
+  }
+
+  @Test
+  public void shouldStartEachReportingIntervalAfresh() {
+    reservoir.update(1000);
+    assertThat(reservoir.getSnapshot().getMax(), is(1000L));
+
+    reservoir.update(10);
+
+    Snapshot snapshot = reservoir.getSnapshot();
+    assertThat(snapshot.size(), is(1));
+    assertThat(snapshot.getMax(), is(10L));
+  }
+
+  @Test
+  public void shouldServeTheSameIntervalUntilTheRefreshPeriodHasPassed() {
+    HdrHistogramReservoir slowRefresh = new HdrHistogramReservoir(1, TimeUnit.HOURS);
+    Snapshot first = slowRefresh.getSnapshot();
+
+    slowRefresh.update(10);
+
+    assertThat(slowRefresh.getSnapshot(), is(sameInstance(first)));
+  }
+
+  @Test
+  public void shouldReportZerosForAnEmptyInterval() {
+    Snapshot snapshot = reservoir.getSnapshot();
+
+    assertThat(snapshot.size(), is(0));
+    assertThat(snapshot.getMax(), is(0L));
+    assertThat(snapshot.getMean(), is(0.0));
+  }
+
+  @Test
+  public void shouldReuseTimerAlreadyRegisteredUnderTheSameName() {
+    MetricRegistry registry = new MetricRegistry();
+
+    Timer first = LatencyRecording.HDR_HISTOGRAM.timer(registry, "requests");
+    Timer second = LatencyRecording.HDR_HISTOGRAM.timer(registry, "requests");
+
+    assertThat(second, is(sameInstance(first)));
+  }
+}
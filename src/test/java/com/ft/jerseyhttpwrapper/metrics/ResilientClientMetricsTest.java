@@ -0,0 +1,133 @@
+package com.ft.jerseyhttpwrapper.metrics;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ft.jerseyhttpwrapper.PoolTopology;
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.ft.jerseyhttpwrapper.ResilientClientBuilder;
+import com.ft.jerseyhttpwrapper.config.DummyClientEnvironment;
+import com.ft.jerseyhttpwrapper.config.EndpointConfiguration;
+import com.ft.jerseyhttpwrapper.providers.NullHostAndPortProvider;
+import com.ft.jerseyhttpwrapper.providers.SimpleHostAndPortProvider;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.ClientResponse;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ResilientClientMetricsTest {
+
+  private static final String PREFIX = ResilientClient.class.getName();
+
+  @Rule public WireMockRule failing = new WireMockRule(wireMockConfig().port(0));
+
+  @Rule public WireMockRule healthy = new WireMockRule(wireMockConfig().port(0));
+
+  private final MetricRegistry registry = new MetricRegistry();
+
+  private HostAndPort failingNode;
+  private HostAndPort healthyNode;
+  private ResilientClient client;
+
+  @Before
+  public void setUp() {
+    failingNode = HostAndPort.fromParts("localhost", failing.port());
+    healthyNode = HostAndPort.fromParts("localhost", healthy.port());
+
+    client =
+        ResilientClientBuilder.in(
+                new DummyClientEnvironment(
+                    new ObjectMapper(), Executors.newSingleThreadExecutor()) {
+                  @Override
+                  public MetricRegistry getMetricsRegistry() {
+                    return registry;
+                  }
+                })
+            .using(EndpointConfiguration.forTesting("localhost", failing.port()))
+            .named("metrics")
+            .withPrimary(new SimpleHostAndPortProvider(failingNode, healthyNode))
+            .withSecondary(new NullHostAndPortProvider())
+            .build();
+
+    healthy.stubFor(get(urlEqualTo("/path")).willReturn(aResponse().withStatus(200)));
+  }
+
+  @Test
+  public void shouldRecordOutcomesPerStatusClassAndNode() {
+    failing.stubFor(get(urlEqualTo("/path")).willReturn(aResponse().withStatus(503)));
+
+    ClientResponse response = client.resource(uriOf(failingNode)).get(ClientResponse.class);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(registry.meter(PREFIX + ".responses.metrics.5xx").getCount(), is(1L));
+    assertThat(registry.meter(PREFIX + ".responses.metrics.2xx").getCount(), is(1L));
+    assertThat(registry.counter(PREFIX + ".failovers.metrics").getCount(), is(1L));
+    assertThat(registry.counter(PREFIX + ".retries.metrics").getCount(), is(0L));
+    assertThat(registry.timer(PREFIX + ".attempts.metrics").getCount(), is(2L));
+    assertThat(
+        registry.timer(PREFIX + ".attempts.metrics.localhost_" + failing.port()).getCount(),
+        is(1L));
+    assertThat(
+        registry.timer(PREFIX + ".attempts.metrics.localhost_" + healthy.port()).getCount(),
+        is(1L));
+  }
+
+  @Test
+  public void shouldCountFailedAttemptsByExceptionClass() {
+    failing.stubFor(
+        get(urlEqualTo("/path")).willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+
+    client.resource(uriOf(failingNode)).get(ClientResponse.class);
+
+    assertThat(
+        registry.counter(PREFIX + ".exceptions.metrics.NoHttpResponseException").getCount(),
+        is(1L));
+  }
+
+  @Test
+  public void shouldRemoveTheTimersOfNodesNoLongerInUse() {
+    final AtomicLong nanos = new AtomicLong();
+    ResilientClientMetrics metrics =
+        new ResilientClientMetrics(
+            registry,
+            "dynamic",
+            LatencyRecording.EXPONENTIALLY_DECAYING,
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos.get();
+              }
+            });
+    HostAndPort departed = HostAndPort.fromParts("10.0.0.1", 8080);
+    HostAndPort staying = HostAndPort.fromParts("10.0.0.2", 8080);
+    metrics.attempts(departed);
+    metrics.attempts(staying);
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(PoolTopology.STALE_MILLIS / 2));
+    metrics.attempts(staying);
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(PoolTopology.STALE_MILLIS / 2 + 1));
+    metrics.attempts(HostAndPort.fromParts("10.0.0.3", 8080));
+
+    String prefix = PREFIX + ".attempts.dynamic.";
+    assertThat(registry.getTimers().containsKey(prefix + "10_0_0_1_8080"), is(false));
+    assertThat(registry.getTimers().containsKey(prefix + "10_0_0_2_8080"), is(true));
+    assertThat(registry.getTimers().containsKey(prefix + "10_0_0_3_8080"), is(true));
+  }
+
+  private String uriOf(HostAndPort node) {
+    return "http://" + node + "/path";
+  }
+}
@@ -0,0 +1,59 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import org.junit.Test;
+
+public class AvailabilityFilteringHostAndPortProviderTest {
+
+  private static final HostAndPort A = HostAndPort.fromParts("a", 1);
+  private static final HostAndPort B = HostAndPort.fromParts("b", 2);
+  private static final HostAndPort C = HostAndPort.fromParts("c", 3);
+
+  private final NodeAvailability availability = new NodeAvailability();
+
+  private final AvailabilityFilteringHostAndPortProvider provider =
+      new AvailabilityFilteringHostAndPortProvider(
+          new SimpleHostAndPortProvider(A, B, C), availability);
+
+  @Test
+  public void shouldOfferAllNodesWhenAllAreAvailable() {
+    assertThat(Lists.newArrayList(provider.iterator(A)), contains(A, B, C));
+  }
+
+  @Test
+  public void shouldSkipNodesMarkedDown() {
+    availability.markDown(B);
+
+    assertThat(Lists.newArrayList(provider.iterator(A)), contains(A, C));
+  }
+
+  @Test
+  public void shouldOfferNodesMarkedUpAgain() {
+    availability.markDown(B);
+    availability.markUp(B);
+
+    assertThat(Lists.newArrayList(provider.iterator(A)), contains(A, B, C));
+  }
+
+  @Test
+  public void shouldOfferUnavailableNodesRatherThanNothing() {
+    availability.markDown(A);
+    availability.markDown(B);
+    availability.markDown(C);
+
+    assertThat(Lists.newArrayList(provider.iterator(A)), contains(A, B, C));
+  }
+
+  @Test
+  public void shouldOfferNodesMarkedDownBeforeParkedOnes() {
+    availability.park(A, 30000);
+    availability.markDown(B);
+    availability.park(C, 30000);
+
+    assertThat(Lists.newArrayList(provider.iterator(A)), contains(B, A, C));
+  }
+}
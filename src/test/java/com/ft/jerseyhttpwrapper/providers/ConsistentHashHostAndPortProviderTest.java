@@ -0,0 +1,85 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+
+public class ConsistentHashHostAndPortProviderTest {
+
+  private static final HostAndPort A = HostAndPort.fromParts("a", 1);
+  private static final HostAndPort B = HostAndPort.fromParts("b", 2);
+  private static final HostAndPort C = HostAndPort.fromParts("c", 3);
+  private static final HostAndPort D = HostAndPort.fromParts("d", 4);
+
+  private static final List<HostAndPort> HOSTS_ABCD = Lists.newArrayList(A, B, C, D);
+
+  private final ConsistentHashHostAndPortProvider provider =
+      new ConsistentHashHostAndPortProvider(HOSTS_ABCD);
+
+  @Test
+  public void shouldRouteTheSameKeyToTheSameNode() {
+    for (int i = 0; i < 100; i++) {
+      String key = "/content/" + i;
+      assertThat(provider.iterator(A, key).next(), is(provider.iterator(A, key).next()));
+    }
+  }
+
+  @Test
+  public void shouldOfferEveryNodeOnceWhenFailingOver() {
+    List<HostAndPort> offered = Lists.newArrayList(provider.iterator(A, "/content/1"));
+
+    assertThat(offered, containsInAnyOrder(A, B, C, D));
+  }
+
+  @Test
+  public void shouldOfferEveryNodeOnceWithoutAKey() {
+    List<HostAndPort> offered = Lists.newArrayList(provider.iterator(A));
+
+    assertThat(offered, containsInAnyOrder(A, B, C, D));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void shouldBlowUpIfHasNextIsNotRespected() {
+    Iterator<HostAndPort> hosts = provider.iterator(A, "/content/1");
+    for (int i = 0; i <= HOSTS_ABCD.size(); i++) {
+      hosts.next();
+    }
+  }
+
+  @Test
+  public void shouldSpreadKeysAcrossAllNodes() {
+    int[] owned = new int[HOSTS_ABCD.size()];
+    for (int i = 0; i < 4000; i++) {
+      owned[HOSTS_ABCD.indexOf(provider.iterator(A, "/content/" + i).next())]++;
+    }
+
+    for (int count : owned) {
+      assertThat(count, greaterThan(700));
+    }
+  }
+
+  @Test
+  public void shouldOnlyRemapTheKeysOfARemovedNode() {
+    List<HostAndPort> withoutD = new ArrayList<>(HOSTS_ABCD);
+    withoutD.remove(D);
+    ConsistentHashHostAndPortProvider smallerRing = new ConsistentHashHostAndPortProvider(withoutD);
+
+    for (int i = 0; i < 1000; i++) {
+      String key = "/content/" + i;
+      Iterator<HostAndPort> before = provider.iterator(A, key);
+      HostAndPort owner = before.next();
+      HostAndPort expected = owner.equals(D) ? before.next() : owner;
+
+      assertThat(smallerRing.iterator(A, key).next(), is(expected));
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.ft.jerseyhttpwrapper.ResilientClientBuilder;
+import com.ft.jerseyhttpwrapper.discovery.MembershipChange;
+import com.ft.jerseyhttpwrapper.discovery.MembershipListener;
+import com.ft.jerseyhttpwrapper.discovery.ServiceDiscovery;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DiscoveringHostAndPortProviderTest {
+
+  private static final HostAndPort SERVICE = HostAndPort.fromString("content");
+  private static final HostAndPort NODE_A = HostAndPort.fromParts("a.example.com", 8080);
+  private static final HostAndPort NODE_B = HostAndPort.fromParts("b.example.com", 8080);
+  private static final HostAndPort NODE_C = HostAndPort.fromParts("c.example.com", 8080);
+
+  @Rule public WireMockRule wm = new WireMockRule(wireMockConfig().port(0));
+
+  private final PushingDiscovery discovery = new PushingDiscovery();
+
+  @Test
+  public void shouldUseTheRequestedHostUntilAnythingIsDiscovered() {
+    DiscoveringHostAndPortProvider provider = new DiscoveringHostAndPortProvider(discovery);
+
+    assertThat(Lists.newArrayList(provider.iterator(SERVICE)), contains(SERVICE));
+  }
+
+  @Test
+  public void shouldOfferDrainedNodesLast() {
+    DiscoveringHostAndPortProvider provider = new DiscoveringHostAndPortProvider(discovery);
+
+    discovery.push(
+        MembershipChange.added(NODE_A),
+        MembershipChange.added(NODE_B),
+        MembershipChange.added(NODE_C));
+    discovery.push(MembershipChange.drained(NODE_A));
+
+    for (int i = 0; i < 20; i++) {
+      List<HostAndPort> offered = Lists.newArrayList(provider.iterator(SERVICE));
+      assertThat(offered.subList(0, 2), containsInAnyOrder(NODE_B, NODE_C));
+      assertThat(offered.get(2), is(NODE_A));
+    }
+  }
+
+  @Test
+  public void shouldMoveToANewVersionPerPush() {
+    DiscoveringHostAndPortProvider provider = new DiscoveringHostAndPortProvider(discovery);
+
+    discovery.push(MembershipChange.added(NODE_A), MembershipChange.added(NODE_B));
+    discovery.push(MembershipChange.removed(NODE_A));
+
+    assertThat(provider.getSnapshot().getVersion(), is(2L));
+    assertThat(provider.getSnapshot().getActive(), contains(NODE_B));
+  }
+
+  @Test
+  public void shouldRouteRequestsToDiscoveredNodes() {
+    wm.stubFor(get(urlEqualTo("/path")).willReturn(aResponse().withStatus(200).withBody("OK")));
+
+    ResilientClient client =
+        ResilientClientBuilder.inTesting().named("test").discoveringNodesFrom(discovery).build();
+    discovery.push(MembershipChange.added(HostAndPort.fromParts("localhost", wm.port())));
+
+    assertThat(client.resource("http://content/path").get(String.class), is("OK"));
+  }
+
+  private static class PushingDiscovery implements ServiceDiscovery {
+    private MembershipListener listener;
+
+    @Override
+    public void subscribe(MembershipListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void unsubscribe(MembershipListener listener) {
+      this.listener = null;
+    }
+
+    void push(MembershipChange... changes) {
+      listener.membershipChanged(Arrays.asList(changes));
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.ft.jerseyhttpwrapper.ResilientClientBuilder;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.naming.NamingException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DnsSrvHostAndPortProviderTest {
+
+  private static final HostAndPort SERVICE = HostAndPort.fromString("_content._tcp.example.com");
+
+  @Rule public WireMockRule wm = new WireMockRule(wireMockConfig().port(0));
+
+  private final StubResolver resolver = new StubResolver();
+  private final FakeTicker ticker = new FakeTicker();
+  private final List<Runnable> refreshes = new ArrayList<>();
+  private final DnsSrvHostAndPortProvider provider =
+      new DnsSrvHostAndPortProvider(
+          resolver,
+          new Random(42),
+          ticker,
+          new Executor() {
+            @Override
+            public void execute(Runnable refresh) {
+              refreshes.add(refresh);
+            }
+          });
+
+  @Test
+  public void shouldOfferLowerPriorityNumbersFirst() {
+    resolver.records =
+        Arrays.asList(
+            new SrvRecord(20, 0, 8080, "backup.example.com.", 60),
+            new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+
+    assertThat(
+        Lists.newArrayList(provider.iterator(SERVICE)),
+        contains(
+            HostAndPort.fromParts("main.example.com", 8080),
+            HostAndPort.fromParts("backup.example.com", 8080)));
+  }
+
+  @Test
+  public void shouldChooseInProportionToWeightWithinAPriority() {
+    resolver.records =
+        Arrays.asList(
+            new SrvRecord(10, 90, 8080, "big.example.com.", 60),
+            new SrvRecord(10, 10, 8080, "small.example.com.", 60));
+
+    int bigFirst = 0;
+    int attempts = 10000;
+    for (int i = 0; i < attempts; i++) {
+      if (provider.iterator(SERVICE).next().getHostText().equals("big.example.com")) {
+        bigFirst++;
+      }
+    }
+
+    assertThat(bigFirst / (double) attempts, closeTo(0.9, 0.02));
+  }
+
+  @Test
+  public void shouldOnlyLookUpAgainOnceTheTtlHasExpired() {
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+
+    provider.iterator(SERVICE);
+    ticker.advance(59, TimeUnit.SECONDS);
+    provider.iterator(SERVICE);
+    assertThat(resolver.lookups, is(1));
+
+    ticker.advance(1, TimeUnit.SECONDS);
+    provider.iterator(SERVICE);
+    provider.iterator(SERVICE);
+    runRefreshes();
+    assertThat(resolver.lookups, is(2));
+  }
+
+  @Test
+  public void shouldServeExpiredRecordsUntilTheBackgroundRefreshFinishes() {
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+    provider.iterator(SERVICE);
+
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "other.example.com.", 60));
+    ticker.advance(61, TimeUnit.SECONDS);
+    assertThat(
+        Lists.newArrayList(provider.iterator(SERVICE)),
+        contains(HostAndPort.fromParts("main.example.com", 8080)));
+    assertThat(resolver.lookups, is(1));
+
+    runRefreshes();
+    assertThat(
+        Lists.newArrayList(provider.iterator(SERVICE)),
+        contains(HostAndPort.fromParts("other.example.com", 8080)));
+  }
+
+  @Test
+  public void shouldShareTheFirstLookupBetweenConcurrentRequests() throws Exception {
+    final CountDownLatch looking = new CountDownLatch(1);
+    final CountDownLatch answer = new CountDownLatch(1);
+    final AtomicInteger lookups = new AtomicInteger();
+    final DnsSrvHostAndPortProvider slowProvider =
+        new DnsSrvHostAndPortProvider(
+            new SrvRecordResolver() {
+              @Override
+              public List<SrvRecord> lookup(String name) {
+                lookups.incrementAndGet();
+                looking.countDown();
+                Uninterruptibles.awaitUninterruptibly(answer);
+                return Arrays.asList(new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+              }
+            });
+    Callable<HostAndPort> request =
+        new Callable<HostAndPort>() {
+          @Override
+          public HostAndPort call() {
+            return slowProvider.iterator(SERVICE).next();
+          }
+        };
+
+    ExecutorService requests = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<HostAndPort>> answers = new ArrayList<>();
+      answers.add(requests.submit(request));
+      looking.await();
+      answers.add(requests.submit(request));
+      answers.add(requests.submit(request));
+      Thread.sleep(100);
+      answer.countDown();
+
+      for (Future<HostAndPort> first : answers) {
+        assertThat(first.get(), is(HostAndPort.fromParts("main.example.com", 8080)));
+      }
+      assertThat(lookups.get(), is(1));
+    } finally {
+      requests.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldKeepTheLastKnownRecordsWhenALookupFails() {
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+    provider.iterator(SERVICE);
+
+    resolver.failing = true;
+    ticker.advance(61, TimeUnit.SECONDS);
+
+    assertThat(
+        Lists.newArrayList(provider.iterator(SERVICE)),
+        contains(HostAndPort.fromParts("main.example.com", 8080)));
+  }
+
+  @Test
+  public void shouldRefreshAgainAfterALookupThrows() {
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "main.example.com.", 60));
+    provider.iterator(SERVICE);
+
+    resolver.throwing = true;
+    ticker.advance(61, TimeUnit.SECONDS);
+    provider.iterator(SERVICE);
+    runRefreshes();
+
+    resolver.throwing = false;
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, 8080, "other.example.com.", 60));
+    provider.iterator(SERVICE);
+    runRefreshes();
+    assertThat(
+        Lists.newArrayList(provider.iterator(SERVICE)),
+        contains(HostAndPort.fromParts("other.example.com", 8080)));
+  }
+
+  @Test
+  public void shouldFallBackToTheRequestedHostWithoutRecords() {
+    resolver.records = Arrays.asList(new SrvRecord(0, 0, 0, ".", 60));
+
+    assertThat(Lists.newArrayList(provider.iterator(SERVICE)), contains(SERVICE));
+  }
+
+  @Test
+  public void shouldParseTheJndiPresentationFormat() throws Exception {
+    SrvRecord record = SrvRecordResolver.parse("10 60 8080 node1.example.com.");
+
+    assertThat(record.getPriority(), is(10));
+    assertThat(record.getWeight(), is(60));
+    assertThat(record.toHostAndPort(), is(HostAndPort.fromParts("node1.example.com", 8080)));
+  }
+
+  @Test
+  public void shouldRouteRequestsToDiscoveredNodes() {
+    wm.stubFor(get(urlEqualTo("/path")).willReturn(aResponse().withStatus(200).withBody("OK")));
+    resolver.records = Arrays.asList(new SrvRecord(10, 0, wm.port(), "localhost.", 60));
+
+    ResilientClient client =
+        ResilientClientBuilder.inTesting()
+            .named("test")
+            .usingSrvRecords()
+            .withSrvRecordResolver(resolver)
+            .build();
+
+    assertThat(client.resource("http://" + SERVICE + "/path").get(String.class), is("OK"));
+  }
+
+  private void runRefreshes() {
+    List<Runnable> queued = new ArrayList<>(refreshes);
+    refreshes.clear();
+    for (Runnable refresh : queued) {
+      refresh.run();
+    }
+  }
+
+  private static class StubResolver extends SrvRecordResolver {
+    List<SrvRecord> records;
+    boolean failing;
+    boolean throwing;
+    int lookups;
+
+    @Override
+    public List<SrvRecord> lookup(String name) throws NamingException {
+      lookups++;
+      if (failing) {
+        throw new NamingException("no name servers");
+      }
+      if (throwing) {
+        throw new IllegalStateException("resolver broken");
+      }
+      return records;
+    }
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.Lists;
+import com.google.common.net.HostAndPort;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HappyEyeballsHostAndPortProviderTest {
+
+  private static final HostAndPort SUPPLIED = HostAndPort.fromParts("example.com", 80);
+
+  private final List<ServerSocket> servers = new ArrayList<>();
+  private final List<Socket> fillers = new ArrayList<>();
+
+  private HostAndPort listening;
+  private HostAndPort refusing;
+  private HostAndPort blackholed;
+
+  @Before
+  public void setUp() throws IOException {
+    listening = listen(50);
+
+    refusing = listen(1);
+    servers.remove(servers.size() - 1).close();
+
+    // a full accept queue makes the kernel drop further connection attempts unanswered
+    blackholed = listen(1);
+    for (int i = 0; i < 8; i++) {
+      Socket filler = new Socket();
+      fillers.add(filler);
+      try {
+        filler.connect(new InetSocketAddress("127.0.0.1", blackholed.getPort()), 200);
+      } catch (IOException e) {
+        break;
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Socket filler : fillers) {
+      filler.close();
+    }
+    for (ServerSocket server : servers) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void shouldOfferTheFirstNodeToConnectAndLeaveTheBlackholedOneUntilLast() {
+    HostAndPortProvider provider = provider(blackholed, listening);
+
+    long start = System.currentTimeMillis();
+    List<HostAndPort> offered = Lists.newArrayList(provider.iterator(SUPPLIED));
+
+    assertThat(offered, contains(listening, blackholed));
+    assertThat(System.currentTimeMillis() - start < 1000, is(true));
+  }
+
+  @Test
+  public void shouldNotOfferANodeThatRefusedTheConnection() {
+    HostAndPortProvider provider = provider(refusing, listening);
+
+    assertThat(Lists.newArrayList(provider.iterator(SUPPLIED)), contains(listening));
+  }
+
+  @Test
+  public void shouldOfferTheFirstNodeIfNoneConnect() {
+    HostAndPortProvider provider = provider(refusing);
+
+    assertThat(Lists.newArrayList(provider.iterator(SUPPLIED)), contains(refusing));
+  }
+
+  @Test
+  public void shouldStartTheNextNodeAtOnceWhenOneFails() {
+    HostAndPortProvider provider =
+        new HappyEyeballsHostAndPortProvider(
+            new SimpleHostAndPortProvider(blackholed, refusing, listening),
+            new ConnectRacer(1000, 5000));
+
+    long start = System.currentTimeMillis();
+    HostAndPort first = provider.iterator(SUPPLIED).next();
+
+    assertThat(first, is(listening));
+    assertThat(System.currentTimeMillis() - start < 1800, is(true));
+  }
+
+  @Test
+  public void shouldNotRaceANodeWithNoAlternates() {
+    ConnectRacer racer = new ConnectRacer(100, 2000);
+    HostAndPortProvider provider =
+        new HappyEyeballsHostAndPortProvider(new SimpleHostAndPortProvider(listening), racer);
+
+    assertThat(provider.iterator(SUPPLIED).next(), is(listening));
+    assertThat(racer.isWarm(listening), is(false));
+  }
+
+  @Test
+  public void shouldTrustAWinnerUntilItFails() {
+    ConnectRacer racer = new ConnectRacer(100, 2000);
+    HostAndPortProvider provider =
+        new HappyEyeballsHostAndPortProvider(
+            new SimpleHostAndPortProvider(listening, refusing), racer);
+
+    assertThat(provider.iterator(SUPPLIED).next(), is(listening));
+    assertThat(racer.isWarm(listening), is(true));
+
+    provider.handleFailedHost(listening);
+    assertThat(racer.isWarm(listening), is(false));
+  }
+
+  private HostAndPortProvider provider(HostAndPort... nodes) {
+    return new HappyEyeballsHostAndPortProvider(
+        new SimpleHostAndPortProvider(nodes), new ConnectRacer(100, 2000));
+  }
+
+  private HostAndPort listen(int backlog) throws IOException {
+    ServerSocket server = new ServerSocket();
+    server.bind(new InetSocketAddress("127.0.0.1", 0), backlog);
+    servers.add(server);
+    return HostAndPort.fromParts("127.0.0.1", server.getLocalPort());
+  }
+}
@@ -13,7 +13,9 @@ import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 @RunWith(MockitoJUnitRunner.class)
 public class HostAndPortIpResolverTest {
@@ -161,4 +163,113 @@ public class HostAndPortIpResolverTest {
                 HostAndPort.fromString("10.0.0.1:81"),
                 HostAndPort.fromString("10.0.0.2:81"))));
   }
+
+  @Test
+  public void should_look_up_hostnames_in_parallel() throws Exception {
+    when(hostToIpMapper.mapToIps("host1")).thenAnswer(slowly(300, host1Ip));
+    when(hostToIpMapper.mapToIps("host2")).thenAnswer(slowly(300, host2Ip));
+    when(hostToIpMapper.mapToIps("host3")).thenAnswer(slowly(300, host3Ip));
+
+    final HostAndPortIpResolver hostAndPortIpResolver = new HostAndPortIpResolver(hostToIpMapper);
+
+    long start = System.currentTimeMillis();
+    final List<HostAndPort> hostAndPorts =
+        hostAndPortIpResolver.resolveAll(
+            Arrays.asList(
+                HostAndPort.fromString("host1:80"),
+                HostAndPort.fromString("host2:80"),
+                HostAndPort.fromString("host3:80")));
+
+    assertThat(hostAndPorts.size(), equalTo(3));
+    assertThat(System.currentTimeMillis() - start < 800, equalTo(true));
+  }
+
+  @Test
+  public void should_fall_back_to_last_known_ips_for_a_host_that_misses_the_deadline()
+      throws Exception {
+    when(hostToIpMapper.mapToIps("host1"))
+        .thenReturn(new InetAddress[] {host1Ip})
+        .thenAnswer(slowly(2000, host3Ip));
+    when(hostToIpMapper.mapToIps("host2")).thenReturn(new InetAddress[] {host2Ip});
+
+    final HostAndPortIpResolver hostAndPortIpResolver =
+        new HostAndPortIpResolver(hostToIpMapper, 200);
+    final List<HostAndPort> configured =
+        Arrays.asList(HostAndPort.fromString("host1:80"), HostAndPort.fromString("host2:80"));
+    hostAndPortIpResolver.resolveAll(configured);
+
+    long start = System.currentTimeMillis();
+    final List<HostAndPort> hostAndPorts = hostAndPortIpResolver.resolveAll(configured);
+
+    assertThat(
+        hostAndPorts,
+        equalTo(
+            Arrays.asList(
+                HostAndPort.fromString("10.0.0.1:80"), HostAndPort.fromString("10.0.0.2:80"))));
+    assertThat(System.currentTimeMillis() - start < 1000, equalTo(true));
+  }
+
+  @Test
+  public void should_fall_back_to_last_known_ips_for_a_host_that_stops_resolving()
+      throws Exception {
+    when(hostToIpMapper.mapToIps("host1"))
+        .thenReturn(new InetAddress[] {host1Ip})
+        .thenThrow(new UnknownHostException("host1"));
+
+    final HostAndPortIpResolver hostAndPortIpResolver = new HostAndPortIpResolver(hostToIpMapper);
+    hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80"));
+
+    assertThat(
+        hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80")),
+        equalTo(Arrays.asList(HostAndPort.fromString("10.0.0.1:80"))));
+    assertThat(
+        hostAndPortIpResolver.resolve(HostAndPort.fromString("host2:80")),
+        equalTo(Arrays.asList(HostAndPort.fromString("host2:80"))));
+  }
+
+  @Test
+  public void should_serve_last_known_ips_while_refreshing_them_in_the_background()
+      throws Exception {
+    when(hostToIpMapper.mapToIps("host1"))
+        .thenReturn(new InetAddress[] {host1Ip})
+        .thenAnswer(slowly(300, host2Ip));
+
+    final HostAndPortIpResolver hostAndPortIpResolver =
+        new HostAndPortIpResolver(hostToIpMapper, 1000, 0);
+    hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80"));
+
+    long start = System.currentTimeMillis();
+    assertThat(
+        hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80")),
+        equalTo(Arrays.asList(HostAndPort.fromString("10.0.0.1:80"))));
+    assertThat(System.currentTimeMillis() - start < 200, equalTo(true));
+
+    Thread.sleep(600);
+    assertThat(
+        hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80")),
+        hasItem(HostAndPort.fromString("10.0.0.2:80")));
+  }
+
+  @Test
+  public void should_not_look_up_again_within_the_refresh_interval() throws Exception {
+    when(hostToIpMapper.mapToIps("host1")).thenReturn(new InetAddress[] {host1Ip});
+
+    final HostAndPortIpResolver hostAndPortIpResolver =
+        new HostAndPortIpResolver(hostToIpMapper, 1000, 60000);
+    for (int i = 0; i < 5; i++) {
+      hostAndPortIpResolver.resolve(HostAndPort.fromString("host1:80"));
+    }
+
+    verify(hostToIpMapper, times(1)).mapToIps("host1");
+  }
+
+  private static Answer<InetAddress[]> slowly(final long millis, final InetAddress address) {
+    return new Answer<InetAddress[]>() {
+      @Override
+      public InetAddress[] answer(InvocationOnMock invocation) throws Throwable {
+        Thread.sleep(millis);
+        return new InetAddress[] {address};
+      }
+    };
+  }
 }
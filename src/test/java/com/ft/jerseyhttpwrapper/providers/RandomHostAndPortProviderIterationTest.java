@@ -3,12 +3,16 @@ package com.ft.jerseyhttpwrapper.providers;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Lists;
 import com.google.common.net.HostAndPort;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import org.junit.Before;
@@ -77,4 +81,39 @@ public class RandomHostAndPortProviderIterationTest {
     hosts.next();
     hosts.next();
   }
+
+  @Test
+  public void shouldPreferASecondDrawWithAnIdleConnection() {
+    provider.setWarmConnections(warm(HOSTS_ABC.get(2)));
+    when(sequence.nextInt(anyInt())).thenReturn(0, 2);
+
+    assertThat(provider.iterator(EXAMPLE_ENDPOINT).next().getHostText(), is("c"));
+  }
+
+  @Test
+  public void shouldKeepTheFirstDrawWhenNeitherHasAnIdleConnection() {
+    provider.setWarmConnections(warm());
+    when(sequence.nextInt(anyInt())).thenReturn(0, 2);
+
+    assertThat(provider.iterator(EXAMPLE_ENDPOINT).next().getHostText(), is("a"));
+  }
+
+  @Test
+  public void shouldNotDrawAgainWhenTheFirstDrawHasAnIdleConnection() {
+    provider.setWarmConnections(warm(HOSTS_ABC.get(0)));
+    when(sequence.nextInt(anyInt())).thenReturn(0, 2);
+
+    assertThat(provider.iterator(EXAMPLE_ENDPOINT).next().getHostText(), is("a"));
+    verify(sequence, times(1)).nextInt(anyInt());
+  }
+
+  private static WarmConnections warm(HostAndPort... nodes) {
+    final List<HostAndPort> warm = Arrays.asList(nodes);
+    return new WarmConnections() {
+      @Override
+      public boolean hasIdleConnection(HostAndPort node) {
+        return warm.contains(node);
+      }
+    };
+  }
 }
@@ -0,0 +1,116 @@
+package com.ft.jerseyhttpwrapper.providers;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.base.Ticker;
+import com.google.common.net.HostAndPort;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SlowStartTest {
+
+  private static final HostAndPort NODE_A = HostAndPort.fromParts("a.example.com", 8080);
+  private static final HostAndPort NODE_B = HostAndPort.fromParts("b.example.com", 8080);
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final SlowStart slowStart = new SlowStart(60, TimeUnit.SECONDS, ticker);
+
+  @Test
+  public void shouldGiveNodesPresentFromTheStartTheirFullShare() {
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+
+    assertThat(slowStart.weight(NODE_A), is(1.0));
+    assertThat(slowStart.isRamping(), is(false));
+  }
+
+  @Test
+  public void shouldRampUpNodesThatJoinLater() {
+    slowStart.observe(Collections.singletonList(NODE_A));
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+
+    assertThat(slowStart.isRamping(), is(true));
+    assertThat(slowStart.weight(NODE_B), is(SlowStart.MIN_WEIGHT));
+
+    ticker.advance(30, TimeUnit.SECONDS);
+    assertThat(slowStart.weight(NODE_B), is(0.5));
+
+    ticker.advance(30, TimeUnit.SECONDS);
+    assertThat(slowStart.weight(NODE_B), is(1.0));
+    assertThat(slowStart.isRamping(), is(false));
+  }
+
+  @Test
+  public void shouldRampUpANodeThatLeavesAndComesBack() {
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+
+    slowStart.observe(Collections.singletonList(NODE_A));
+    assertThat(slowStart.weight(NODE_B), is(1.0));
+
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+    assertThat(slowStart.isRamping(), is(true));
+    assertThat(slowStart.weight(NODE_B), is(SlowStart.MIN_WEIGHT));
+    assertThat(slowStart.weight(NODE_A), is(1.0));
+  }
+
+  @Test
+  public void shouldKeepTheLongerRampWhenJoinsOverlap() {
+    slowStart.observe(Collections.singletonList(NODE_A));
+    ticker.advance(30, TimeUnit.SECONDS);
+    slowStart.markedUp(NODE_B);
+    ticker.advance(-30, TimeUnit.SECONDS);
+    slowStart.markedUp(NODE_A);
+    ticker.advance(75, TimeUnit.SECONDS);
+
+    // NODE_B's ramp runs until 90s, even though NODE_A's join was recorded after it
+    assertThat(slowStart.isRamping(), is(true));
+  }
+
+  @Test
+  public void shouldRampUpNodesMarkedUpAgain() {
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+
+    slowStart.markedUp(NODE_B);
+    ticker.advance(15, TimeUnit.SECONDS);
+
+    assertThat(slowStart.weight(NODE_B), is(0.25));
+  }
+
+  @Test
+  public void shouldChooseRampingNodesLessOften() {
+    slowStart.observe(Collections.singletonList(NODE_A));
+    slowStart.observe(Arrays.asList(NODE_A, NODE_B));
+    ticker.advance(30, TimeUnit.SECONDS);
+
+    Random random = new Random(42);
+    int bFirst = 0;
+    int attempts = 10000;
+    for (int i = 0; i < attempts; i++) {
+      if (new RandomisedHostsIterator(Arrays.asList(NODE_A, NODE_B), random, slowStart)
+          .next()
+          .equals(NODE_B)) {
+        bFirst++;
+      }
+    }
+
+    // weights of 1 and 0.5
+    assertThat(bFirst / (double) attempts, closeTo(1 / 3.0, 0.02));
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+}
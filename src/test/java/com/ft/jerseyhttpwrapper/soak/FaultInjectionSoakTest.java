@@ -0,0 +1,174 @@
+package com.ft.jerseyhttpwrapper.soak;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import com.ft.jerseyhttpwrapper.ResilienceStrategy;
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.ft.jerseyhttpwrapper.ResilientClientBuilder;
+import com.ft.jerseyhttpwrapper.config.DummyClientEnvironment;
+import com.ft.jerseyhttpwrapper.config.EndpointConfiguration;
+import com.ft.jerseyhttpwrapper.continuation.ContinuationPolicy;
+import com.ft.jerseyhttpwrapper.continuation.DefaultContinuationPolicy;
+import com.ft.jerseyhttpwrapper.continuation.ExponentialBackoffContinuationPolicy;
+import com.ft.jerseyhttpwrapper.soak.FaultyBackend.Behaviour;
+import com.google.common.base.Optional;
+import io.dropwizard.client.JerseyClientConfiguration;
+import io.dropwizard.util.Duration;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Soaks each combination of resilience strategy and continuation policy against a set of backends
+ * that each fail in a different way, at a fixed request rate, and reports throughput, latency
+ * percentiles and retry amplification side by side.
+ *
+ * <p>Not part of the normal build. Run with {@code mvn test -Psoak}, adding {@code -Dsoak.rate=}
+ * (requests per second, default 50) and {@code -Dsoak.seconds=} (per combination, default 10) as
+ * required.
+ */
+@RunWith(Parameterized.class)
+public class FaultInjectionSoakTest {
+
+  private static final int RATE = Integer.getInteger("soak.rate", 50);
+  private static final int SECONDS = Integer.getInteger("soak.seconds", 10);
+
+  private static final double MIN_SUCCESS_RATIO = 0.99;
+
+  /** Ordered worst first, so that fixed sequence strategies have to get past every fault. */
+  private static final List<FaultyBackend> BACKENDS =
+      Arrays.asList(
+          new FaultyBackend(Behaviour.BLACKHOLED),
+          new FaultyBackend(Behaviour.RESETTING),
+          new FaultyBackend(Behaviour.ERRORING),
+          new FaultyBackend(Behaviour.SLOW),
+          new FaultyBackend(Behaviour.HEALTHY));
+
+  private static final List<String> REPORT = new ArrayList<>();
+
+  /**
+   * Leaves out the strategies that cannot fail over between these backends: dynamic random IP only
+   * routes to the addresses of the requested hostname, and every backend here is on localhost, so
+   * it would only ever reach the first one; DNS SRV needs records no test resolver serves.
+   */
+  @Parameters(name = "{0} {2}")
+  public static Collection<Object[]> combinations() {
+    List<Object[]> combinations = new ArrayList<>();
+    for (ResilienceStrategy strategy :
+        Arrays.asList(
+            ResilienceStrategy.SIMPLE_FAILOVER_STRATEGY,
+            ResilienceStrategy.LOAD_BALANCED_STRATEGY,
+            ResilienceStrategy.LOAD_BALANCED_IP_STRATEGY,
+            ResilienceStrategy.CONSISTENT_HASH_STRATEGY)) {
+      combinations.add(
+          new Object[] {strategy, new DefaultContinuationPolicy(), "default continuation"});
+      combinations.add(
+          new Object[] {
+            strategy, new ExponentialBackoffContinuationPolicy(5, 10), "exponential backoff"
+          });
+    }
+    return combinations;
+  }
+
+  private final ResilienceStrategy strategy;
+  private final ContinuationPolicy continuationPolicy;
+  private final String continuationPolicyName;
+
+  public FaultInjectionSoakTest(
+      ResilienceStrategy strategy,
+      ContinuationPolicy continuationPolicy,
+      String continuationPolicyName) {
+    this.strategy = strategy;
+    this.continuationPolicy = continuationPolicy;
+    this.continuationPolicyName = continuationPolicyName;
+  }
+
+  @BeforeClass
+  public static void startBackends() {
+    for (FaultyBackend backend : BACKENDS) {
+      backend.start();
+    }
+  }
+
+  @AfterClass
+  public static void stopBackendsAndReport() {
+    for (FaultyBackend backend : BACKENDS) {
+      backend.stop();
+    }
+
+    System.out.println(
+        String.format(
+            "%n%-26s %-22s %8s %8s %8s %8s %8s %8s",
+            "strategy",
+            "continuation",
+            "req/s",
+            "success",
+            "p50 ms",
+            "p99 ms",
+            "p99.9 ms",
+            "attempts"));
+    for (String line : REPORT) {
+      System.out.println(line);
+    }
+  }
+
+  @Test
+  public void shouldRideOutEveryFault() throws Exception {
+    ResilientClient client = client();
+    try {
+      FixedRateLoad.Result result =
+          new FixedRateLoad(client, URI.create("http://" + BACKENDS.get(0).node()), RATE, SECONDS)
+              .run();
+
+      REPORT.add(
+          String.format(
+              "%-26s %-22s %8.1f %7.2f%% %8.1f %8.1f %8.1f %8.2f",
+              strategy.name(),
+              continuationPolicyName,
+              result.throughput(),
+              result.successRatio() * 100,
+              result.percentileMillis(50),
+              result.percentileMillis(99),
+              result.percentileMillis(99.9),
+              result.retryAmplification()));
+
+      assertThat(result.successRatio(), greaterThanOrEqualTo(MIN_SUCCESS_RATIO));
+    } finally {
+      client.destroy();
+    }
+  }
+
+  private ResilientClient client() {
+    JerseyClientConfiguration jerseyClientConfiguration = new JerseyClientConfiguration();
+    jerseyClientConfiguration.setTimeout(Duration.milliseconds(500));
+    jerseyClientConfiguration.setConnectionTimeout(Duration.milliseconds(250));
+
+    List<String> nodes = new ArrayList<>();
+    for (FaultyBackend backend : BACKENDS) {
+      nodes.add(backend.node().toString());
+    }
+
+    EndpointConfiguration configuration =
+        new EndpointConfiguration(
+            Optional.of("soak"),
+            Optional.of(jerseyClientConfiguration),
+            Optional.<String>absent(),
+            nodes,
+            new ArrayList<String>());
+
+    return ResilientClientBuilder.in(DummyClientEnvironment.inTesting())
+        .using(configuration)
+        .withResilienceStrategy(strategy)
+        .withContinuationPolicy(continuationPolicy)
+        .build();
+  }
+}
@@ -0,0 +1,75 @@
+package com.ft.jerseyhttpwrapper.soak;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.google.common.net.HostAndPort;
+
+/** An in-process stub backend that misbehaves in one particular way on every request. */
+class FaultyBackend {
+
+  enum Behaviour {
+    HEALTHY,
+    /** responds successfully, but slowly */
+    SLOW,
+    /** responds 503 */
+    ERRORING,
+    /** closes the connection without responding */
+    RESETTING,
+    /** accepts the connection, then says nothing until long after the client has timed out */
+    BLACKHOLED
+  }
+
+  static final int SLOW_MILLIS = 150;
+  static final int BLACKHOLE_MILLIS = 2000;
+
+  private final Behaviour behaviour;
+  private final WireMockServer server;
+
+  FaultyBackend(Behaviour behaviour) {
+    this.behaviour = behaviour;
+    this.server = new WireMockServer(wireMockConfig().port(0).disableRequestJournal());
+  }
+
+  void start() {
+    server.start();
+    new WireMock("localhost", server.port())
+        .register(get(urlMatching("/content/.*")).willReturn(response()));
+  }
+
+  void stop() {
+    server.stop();
+  }
+
+  HostAndPort node() {
+    return HostAndPort.fromParts("localhost", server.port());
+  }
+
+  Behaviour getBehaviour() {
+    return behaviour;
+  }
+
+  private ResponseDefinitionBuilder response() {
+    ResponseDefinitionBuilder ok = aResponse().withStatus(200).withBody("{\"ok\":true}");
+    switch (behaviour) {
+      case HEALTHY:
+        return ok;
+      case SLOW:
+        return ok.withFixedDelay(SLOW_MILLIS);
+      case ERRORING:
+        return aResponse().withStatus(503);
+      case RESETTING:
+        return aResponse().withFault(Fault.EMPTY_RESPONSE);
+      case BLACKHOLED:
+        return ok.withFixedDelay(BLACKHOLE_MILLIS);
+      default:
+        throw new IllegalArgumentException("Unknown behaviour " + behaviour);
+    }
+  }
+}
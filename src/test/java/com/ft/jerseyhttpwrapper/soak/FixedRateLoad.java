@@ -0,0 +1,144 @@
+package com.ft.jerseyhttpwrapper.soak;
+
+import com.ft.jerseyhttpwrapper.ResilientClient;
+import com.sun.jersey.api.client.ClientResponse;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives a client at a fixed request rate, whatever its latency, and records how it coped.
+ *
+ * <p>Each request's latency is measured from when it was scheduled to start rather than when it
+ * actually started, so a client that falls behind is charged for the queueing it causes instead of
+ * hiding it (coordinated omission).
+ */
+class FixedRateLoad {
+
+  private static final int MAX_CONCURRENCY = 512;
+  private static final int DISTINCT_PATHS = 100;
+
+  private final ResilientClient client;
+  private final URI baseUri;
+  private final int requestsPerSecond;
+  private final int seconds;
+
+  private final Histogram latencyMicros = new ConcurrentHistogram(3);
+  private final AtomicLong succeeded = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  FixedRateLoad(ResilientClient client, URI baseUri, int requestsPerSecond, int seconds) {
+    this.client = client;
+    this.baseUri = baseUri;
+    this.requestsPerSecond = requestsPerSecond;
+    this.seconds = seconds;
+  }
+
+  Result run() throws InterruptedException {
+    final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+    final ExecutorService workers = Executors.newFixedThreadPool(MAX_CONCURRENCY);
+    final long periodNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+    final long startNanos = System.nanoTime();
+    final AtomicLong sequence = new AtomicLong();
+
+    ticker.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            final long n = sequence.getAndIncrement();
+            final long intendedStartNanos = startNanos + n * periodNanos;
+            workers.execute(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    send(n, intendedStartNanos);
+                  }
+                });
+          }
+        },
+        0,
+        periodNanos,
+        TimeUnit.NANOSECONDS);
+
+    TimeUnit.SECONDS.sleep(seconds);
+    ticker.shutdown();
+    workers.shutdown();
+    workers.awaitTermination(1, TimeUnit.MINUTES);
+
+    long elapsedNanos = System.nanoTime() - startNanos;
+    return new Result(
+        succeeded.get(),
+        failed.get(),
+        elapsedNanos,
+        latencyMicros,
+        client.getMetrics().requests().getCount(),
+        client.getMetrics().attempts().getCount());
+  }
+
+  private void send(long n, long intendedStartNanos) {
+    URI uri = baseUri.resolve("/content/" + (n % DISTINCT_PATHS));
+    try {
+      ClientResponse response = client.resource(uri).get(ClientResponse.class);
+      try {
+        if (response.getStatus() < 300) {
+          succeeded.incrementAndGet();
+        } else {
+          failed.incrementAndGet();
+        }
+      } finally {
+        response.close();
+      }
+    } catch (RuntimeException e) {
+      failed.incrementAndGet();
+    } finally {
+      long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+      latencyMicros.recordValue(Math.max(micros, 0));
+    }
+  }
+
+  static class Result {
+    final long succeeded;
+    final long failed;
+    final long elapsedNanos;
+    final Histogram latencyMicros;
+    final long requests;
+    final long attempts;
+
+    Result(
+        long succeeded,
+        long failed,
+        long elapsedNanos,
+        Histogram latencyMicros,
+        long requests,
+        long attempts) {
+      this.succeeded = succeeded;
+      this.failed = failed;
+      this.elapsedNanos = elapsedNanos;
+      this.latencyMicros = latencyMicros;
+      this.requests = requests;
+      this.attempts = attempts;
+    }
+
+    double throughput() {
+      return (succeeded + failed) / (elapsedNanos / 1e9);
+    }
+
+    double successRatio() {
+      return succeeded / (double) Math.max(succeeded + failed, 1);
+    }
+
+    /** @return attempts sent to backends per request made by the application */
+    double retryAmplification() {
+      return attempts / (double) Math.max(requests, 1);
+    }
+
+    double percentileMillis(double percentile) {
+      return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+  }
+}
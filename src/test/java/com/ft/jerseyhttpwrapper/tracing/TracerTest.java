@@ -0,0 +1,133 @@
+package com.ft.jerseyhttpwrapper.tracing;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.net.HostAndPort;
+import com.sun.jersey.api.client.ClientRequest;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TracerTest {
+
+  private static final HostAndPort NODE = HostAndPort.fromParts("localhost", 8080);
+
+  private final List<Span> exported = new ArrayList<>();
+
+  private final SpanExporter exporter =
+      new SpanExporter() {
+        @Override
+        public void export(List<Span> spans) {
+          exported.addAll(spans);
+        }
+      };
+
+  @Test
+  public void shouldDrainSpansInTheOrderTheyWereRecorded() {
+    SpanRing ring = new SpanRing(4);
+    ring.record(span("a"));
+    ring.record(span("b"));
+
+    assertThat(spanIds(ring.drain()), contains("a", "b"));
+    assertThat(ring.drain().isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldDropTheOldestSpansWhenFull() {
+    SpanRing ring = new SpanRing(4);
+    for (String id : new String[] {"a", "b", "c", "d", "e", "f"}) {
+      ring.record(span(id));
+    }
+
+    assertThat(spanIds(ring.drain()), contains("c", "d", "e", "f"));
+    assertThat(ring.getDropped(), is(2L));
+  }
+
+  @Test
+  public void shouldJoinTheCallersTrace() {
+    Tracer tracer = new Tracer(exporter);
+    RequestTrace trace =
+        tracer.startRequest(
+            request("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"), "test", NODE);
+
+    String traceparent = trace.startAttempt(NODE);
+    trace.endAttempt(200, null);
+    trace.end(200, null);
+    tracer.flush();
+
+    assertThat(traceparent.startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"), is(true));
+    assertThat(traceparent.endsWith("-01"), is(true));
+    assertThat(exported.get(1).getParentSpanId(), is("00f067aa0ba902b7"));
+    assertThat(exported.get(0).getParentSpanId(), is(exported.get(1).getSpanId()));
+  }
+
+  @Test
+  public void shouldStartANewTraceWhenTheCallersIsMalformed() {
+    Tracer tracer = new Tracer(exporter);
+    RequestTrace trace =
+        tracer.startRequest(
+            request("00-00000000000000000000000000000000-00f067aa0ba902b7-01"), "test", NODE);
+
+    trace.end(503, null);
+    tracer.flush();
+
+    Span span = exported.get(0);
+    assertThat(span.getTraceId(), is(not("00000000000000000000000000000000")));
+    assertThat(span.getTraceId().length(), is(32));
+    assertThat(span.getParentSpanId(), is(nullValue()));
+    assertThat(span.getFailure(), is("status 503"));
+  }
+
+  @Test
+  public void shouldNotPropagateMalformedTraceFlags() {
+    Tracer tracer = new Tracer(exporter);
+    RequestTrace trace =
+        tracer.startRequest(
+            request("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-zz"), "test", NODE);
+
+    String traceparent = trace.startAttempt(NODE);
+
+    assertThat(traceparent.startsWith("00-4bf92f3577b34da6a3ce929d0e0e4736-"), is(false));
+    assertThat(traceparent.endsWith("-01"), is(true));
+  }
+
+  @Test
+  public void shouldSurviveAnExporterThatFails() {
+    Tracer tracer =
+        new Tracer(
+            new SpanExporter() {
+              @Override
+              public void export(List<Span> spans) {
+                throw new IllegalStateException("collector is down");
+              }
+            });
+    tracer.startRequest(request(null), "test", NODE).end(200, null);
+
+    tracer.flush();
+  }
+
+  private static ClientRequest request(String traceparent) {
+    ClientRequest.Builder builder = ClientRequest.create();
+    if (traceparent != null) {
+      builder.header(Tracer.TRACEPARENT, traceparent);
+    }
+    return builder.build(URI.create("http://localhost:8080/"), "GET");
+  }
+
+  private static Span span(String spanId) {
+    return new Span("trace", spanId, null, Span.ATTEMPT, "test", "node", 0, 0, 200, null);
+  }
+
+  private static List<String> spanIds(List<Span> spans) {
+    List<String> ids = new ArrayList<>();
+    for (Span span : spans) {
+      ids.add(span.getSpanId());
+    }
+    return ids;
+  }
+}